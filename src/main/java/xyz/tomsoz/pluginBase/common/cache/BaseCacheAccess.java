@@ -2,20 +2,45 @@ package xyz.tomsoz.pluginBase.common.cache;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import xyz.tomsoz.pluginBase.common.Tasks;
+import xyz.tomsoz.pluginBase.common.database.BaseDataService;
+import xyz.tomsoz.pluginBase.common.flavor.Flavor;
 import xyz.tomsoz.pluginBase.common.redis.BaseBroker;
 
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.UUID;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * A base class which communicates with cache layers
  * All you need to do is implement the addCaches function and call registerCache
+ * <p>
+ * {@link MemoryCache} is a bounded memory cache to use as the memoryCache factory.
+ * </p>
+ * <p>
+ * Every registered cache records its hits, misses, evictions, load and put latencies, see {@link #getStats(Class)}
+ * and {@link #scheduleStatsDump(Logger, Duration)}.
+ * </p>
+ * <p>
+ * Local caches can be kept between restarts, see {@link #enableSnapshots(Flavor, CacheSnapshot, Class[])}.
+ * </p>
  */
 public abstract class BaseCacheAccess {
-    private static final Map<Class<?>, Cache<?>> cacheMap = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Registration<?>> cacheMap = new ConcurrentHashMap<>();
+    /**
+     * How long closing waits for a snapshot which is still being restored, before writing the next one.
+     */
+    private static final long RESTORE_TIMEOUT = 5_000;
 
     static {
         addCaches();
@@ -31,16 +56,68 @@ public abstract class BaseCacheAccess {
         } else {
             cache = memoryCache.create();
         }
-        cacheMap.put(clazz, cache);
+        IndexedCache<T> indexed = new IndexedCache<>(cache);
+        cacheMap.put(clazz, new Registration<>(cache, indexed, new MeteredCache<>(clazz.getSimpleName(), indexed, cache)));
+    }
+
+    /**
+     * Registers secondary indexes of a registered cache, see {@link CacheIndex}.
+     * Objects already in the cache are indexed right away.
+     *
+     * @param keyMapper returns the key of an object
+     * @param indexes   the indexes, each declared for this cache only
+     * @throws IllegalArgumentException if an index of the same name is already registered
+     */
+    @SafeVarargs
+    protected static <T> void registerIndexes(Class<T> clazz, Function<? super T, UUID> keyMapper, CacheIndex<T, ?>... indexes) {
+        getRegistration(clazz).indexed().register(keyMapper, List.of(indexes));
+    }
+
+    /**
+     * Registers a cache which, while the broker is connected, keeps a local copy
+     * of the distributed cache in front of it, see {@link NearCache}.
+     * Without a connected broker only the memory cache is used.
+     *
+     * @param keyMapper        returns the key of an object
+     * @param localMaximumSize the maximum amount of objects kept locally
+     * @param maxStaleness     how long a local copy may be served before it is read again
+     */
+    protected static <T> void registerNearCache(Class<T> clazz, @Nullable BaseBroker redisBroker, Function<? super T, UUID> keyMapper,
+                                                CacheFactory<T> memoryCache, CacheFactory<T> distributedCache,
+                                                long localMaximumSize, Duration maxStaleness) {
+        registerCache(clazz, redisBroker, memoryCache, () -> NearCache.builder(clazz.getName(), keyMapper, distributedCache.create(), redisBroker)
+                .localMaximumSize(localMaximumSize)
+                .maxStaleness(maxStaleness)
+                .build());
+    }
+
+    /**
+     * Registers a cache which loads missing objects from the database and saves added ones in batches,
+     * see {@link DataBackedCache}. The memory or distributed cache holds the loaded objects.
+     *
+     * @param dataService   the data service to load and save through
+     * @param keyMapper     returns the key of an object
+     * @param flushInterval the time between saving the added objects
+     */
+    protected static <T> void registerDataBackedCache(Class<T> clazz, @Nullable BaseBroker redisBroker, BaseDataService dataService,
+                                                      Function<? super T, UUID> keyMapper, CacheFactory<T> memoryCache,
+                                                      CacheFactory<T> distributedCache, Duration flushInterval) {
+        registerCache(clazz, redisBroker,
+                () -> DataBackedCache.builder(clazz, keyMapper, memoryCache.create(), dataService).flushInterval(flushInterval).build(),
+                () -> DataBackedCache.builder(clazz, keyMapper, distributedCache.create(), dataService).flushInterval(flushInterval).build());
     }
 
     @SuppressWarnings("unchecked")
-    private static <T> Cache<T> getCacheForClass(Class<T> clazz) {
-        Cache<?> cache = cacheMap.get(clazz);
-        if (cache == null) {
+    private static <T> Registration<T> getRegistration(Class<T> clazz) {
+        Registration<?> registration = cacheMap.get(clazz);
+        if (registration == null) {
             throw new RuntimeException("No cache found for class '%s'".formatted(clazz.getName()));
         }
-        return (Cache<T>) cache;
+        return (Registration<T>) registration;
+    }
+
+    private static <T> Cache<T> getCacheForClass(Class<T> clazz) {
+        return getRegistration(clazz).cache();
     }
 
     public static <T> void add(Class<T> clazz, @Nullable T obj) {
@@ -51,6 +128,21 @@ public abstract class BaseCacheAccess {
         return Optional.ofNullable(getCacheForClass(clazz).get(uuid));
     }
 
+    /**
+     * Returns the cached object of a key. For a {@link DataBackedCache} a miss is loaded
+     * from the database without blocking, other caches complete right away.
+     */
+    public static <T> @NotNull CompletableFuture<Optional<T>> getAsync(Class<T> clazz, UUID uuid) {
+        Registration<T> registration = getRegistration(clazz);
+        if (registration.backing() instanceof DataBackedCache<T> dataBacked) {
+            return registration.cache().getAsync(dataBacked, uuid).thenApply(loaded -> {
+                if (loaded != null) registration.indexed().loaded(uuid, loaded);
+                return Optional.ofNullable(loaded);
+            });
+        }
+        return CompletableFuture.completedFuture(Optional.ofNullable(registration.cache().get(uuid)));
+    }
+
     public static <T> @Nullable T getNullable(Class<T> clazz, UUID uuid) {
         return getCacheForClass(clazz).get(uuid);
     }
@@ -75,10 +167,292 @@ public abstract class BaseCacheAccess {
         return getCacheForClass(clazz).getAll();
     }
 
+    /**
+     * Streams the cached objects without copying them into a list, see {@link Cache#spliterator()}.
+     */
+    public static <T> @NotNull Stream<T> stream(Class<T> clazz) {
+        return getCacheForClass(clazz).stream();
+    }
+
+    /**
+     * Runs the action for every cached object without copying them into a list, see {@link Cache#spliterator()}.
+     */
+    public static <T> void forEach(Class<T> clazz, @NotNull Consumer<? super T> action) {
+        getCacheForClass(clazz).forEach(action);
+    }
+
+    /**
+     * Returns up to limit cached objects after skipping offset of them, see {@link Cache#page(int, int)}.
+     */
+    public static <T> @NotNull List<T> page(Class<T> clazz, int offset, int limit) {
+        return getCacheForClass(clazz).page(offset, limit);
+    }
+
+    /**
+     * Returns up to limit cached objects, continuing where the page of the cursor ended, see {@link Cache#page(String, int)}.
+     *
+     * @param cursor the cursor of the previous page, or null for the first page
+     */
+    public static <T> @NotNull CachePage<T> page(Class<T> clazz, @Nullable String cursor, int limit) {
+        return getCacheForClass(clazz).page(cursor, limit);
+    }
+
+    /**
+     * Returns the cached objects of the specified keys, keys without an object are left out.
+     */
+    public static <T> @NotNull Map<UUID, T> getAll(Class<T> clazz, @NotNull Collection<UUID> uuids) {
+        return getCacheForClass(clazz).getAll(uuids);
+    }
+
+    public static <T> void addAll(Class<T> clazz, @NotNull Collection<? extends T> objs) {
+        getCacheForClass(clazz).addAll(objs);
+    }
+
+    public static <T> void invalidateAll(Class<T> clazz, @NotNull Collection<UUID> uuids) {
+        getCacheForClass(clazz).invalidateAll(uuids);
+    }
+
+    /**
+     * Returns the cached object of a key, loading and adding it when it is missing.
+     *
+     * @param loader loads the object of the key, may return null to add nothing
+     */
+    public static <T> @Nullable T computeIfAbsent(Class<T> clazz, @NotNull UUID uuid, @NotNull Function<? super UUID, ? extends T> loader) {
+        return getCacheForClass(clazz).computeIfAbsent(uuid, loader);
+    }
+
+    /**
+     * Saves the pending writes of a {@link DataBackedCache} now, blocking until done.
+     *
+     * @return whether every pending write was saved, true for other caches
+     */
+    public static <T> boolean flush(Class<T> clazz) {
+        return !(getRegistration(clazz).backing() instanceof DataBackedCache<T> dataBacked) || dataBacked.flush();
+    }
+
+    /**
+     * Finds the cached object indexed under a key by a {@link CacheIndex#unique unique} index.
+     *
+     * @param index the name of the index
+     * @throws IllegalArgumentException if the cache has no index of that name
+     */
+    public static <T> Optional<T> findBy(Class<T> clazz, @NotNull String index, @Nullable Object key) {
+        List<T> found = getRegistration(clazz).indexed().find(index, key);
+        return found.isEmpty() ? Optional.empty() : Optional.of(found.getFirst());
+    }
+
+    /**
+     * Finds every cached object indexed under a key.
+     *
+     * @param index the name of the index
+     * @throws IllegalArgumentException if the cache has no index of that name
+     */
+    public static <T> @NotNull List<T> findAllBy(Class<T> clazz, @NotNull String index, @Nullable Object key) {
+        return getRegistration(clazz).indexed().find(index, key);
+    }
+
+    /**
+     * Restores the caches of the classes from the snapshot of the previous run in the background,
+     * and writes a new snapshot when the flavor closes, see {@link CacheSnapshot}.
+     * <p>
+     * Only objects held on this server are kept, those of a {@link MemoryCache} or an {@link OffHeapCache},
+     * including one loaded into by a {@link DataBackedCache}. Distributed caches outlive restarts on their own and are skipped.
+     * Restored objects never replace ones which were added or loaded meanwhile.
+     * </p>
+     *
+     * @param flavor   the flavor to write the snapshot when closing
+     * @param snapshot the snapshot file
+     * @param classes  the classes of the registered caches to keep
+     */
+    public static void enableSnapshots(@NotNull Flavor flavor, @NotNull CacheSnapshot snapshot, @NotNull Class<?>... classes) {
+        Map<String, Class<?>> local = new LinkedHashMap<>();
+        for (Class<?> clazz : classes) {
+            if (localStore(getRegistration(clazz).backing()) != null) local.put(clazz.getName(), clazz);
+        }
+
+        Thread restore = Thread.ofVirtual().name("cache-snapshot-restore").start(() -> {
+            long start = System.nanoTime();
+            Map<String, CacheSnapshot.Target<?>> targets = new HashMap<>();
+            local.forEach((name, clazz) -> targets.put(name, snapshotTarget(clazz)));
+
+            int restored = snapshot.restore(targets);
+            if (restored > 0) {
+                snapshot.getLogger().info("[Cache] Restored %d objects of %d caches from the snapshot in %dms."
+                        .formatted(restored, local.size(), (System.nanoTime() - start) / 1_000_000L));
+            }
+        });
+
+        flavor.beforeClose(() -> {
+            try {
+                if (!restore.join(Duration.ofMillis(RESTORE_TIMEOUT))) {
+                    snapshot.getLogger().warning("[Cache] The cache snapshot is still being restored, writing the objects restored so far.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writeSnapshot(snapshot, local);
+        });
+    }
+
+    private static void writeSnapshot(CacheSnapshot snapshot, Map<String, Class<?>> local) {
+        long start = System.nanoTime();
+        Map<String, List<?>> sections = new LinkedHashMap<>();
+        local.forEach((name, clazz) -> {
+            Cache<?> store = localStore(getRegistration(clazz).backing());
+            if (store != null) sections.put(name, store.getAll());
+        });
+
+        try {
+            int written = snapshot.write(sections);
+            snapshot.getLogger().info("[Cache] Wrote %d objects of %d caches to the snapshot in %dms."
+                    .formatted(written, sections.size(), (System.nanoTime() - start) / 1_000_000L));
+        } catch (IOException e) {
+            snapshot.getLogger().log(Level.SEVERE, "[Cache] Failed to write the cache snapshot.", e);
+        }
+    }
+
+    private static <T> CacheSnapshot.Target<T> snapshotTarget(Class<T> clazz) {
+        Registration<T> registration = getRegistration(clazz);
+        Cache<T> store = localStore(registration.backing());
+        return new CacheSnapshot.Target<>(clazz, obj -> {
+            boolean added = store instanceof MemoryCache<T> memoryCache
+                    ? memoryCache.addIfAbsent(obj) == obj
+                    : store instanceof OffHeapCache<T> offHeapCache && offHeapCache.addIfAbsent(obj);
+            if (added) registration.indexed().loaded(obj);
+        });
+    }
+
+    /**
+     * Returns the cache holding the objects of a registered cache on this server, or null if they are distributed.
+     */
+    private static <T> @Nullable Cache<T> localStore(Cache<T> backing) {
+        if (backing instanceof DataBackedCache<T> dataBacked) return localStore(dataBacked.getCache());
+        if (backing instanceof MemoryCache<T> || backing instanceof OffHeapCache<T>) return backing;
+        return null;
+    }
+
     public static <T> int size(Class<T> clazz) {
         return getCacheForClass(clazz).size();
     }
 
+    /**
+     * Sheds the coldest objects held on this server's heap to free about an amount of it, see {@link HeapPressureMonitor}.
+     * Each cache frees a share proportional to its estimated heap use times the weight of its class,
+     * and at most a fraction of its local objects. Only caches whose objects are also kept elsewhere are shed,
+     * see {@link #isBacked(Cache)}.
+     *
+     * @param bytes       the heap to free
+     * @param weights     returns the weight of a class, 0 to never shed its objects
+     * @param maxFraction the largest share of a cache's local objects to shed
+     * @return the objects shed and the estimated heap freed
+     */
+    static @NotNull HeapPressureMonitor.Reclaim shed(long bytes, @NotNull ToDoubleFunction<Class<?>> weights, double maxFraction) {
+        record Candidate(MeteredCache<?> cache, int size, long entryBytes, double weightedBytes) {
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+        double totalWeightedBytes = 0;
+        for (Map.Entry<Class<?>, Registration<?>> entry : cacheMap.entrySet()) {
+            MeteredCache<?> cache = entry.getValue().cache();
+            MemoryCache<?> local = cache.localCache();
+            double weight = weights.applyAsDouble(entry.getKey());
+            if (local == null || weight <= 0 || local.size() == 0 || !isBacked(entry.getValue().backing())) continue;
+
+            long entryBytes = cache.estimatedEntryBytes();
+            Candidate candidate = new Candidate(cache, local.size(), entryBytes, weight * local.size() * entryBytes);
+            candidates.add(candidate);
+            totalWeightedBytes += candidate.weightedBytes();
+        }
+
+        int caches = 0;
+        long objects = 0;
+        long freed = 0;
+        for (Candidate candidate : candidates) {
+            double share = bytes * candidate.weightedBytes() / totalWeightedBytes;
+            long wanted = (long) Math.ceil(share / candidate.entryBytes());
+            int count = (int) Math.min(wanted, (long) (candidate.size() * maxFraction));
+
+            int shed = candidate.cache().shed(count, candidate.entryBytes());
+            if (shed == 0) continue;
+            caches++;
+            objects += shed;
+            freed += shed * candidate.entryBytes();
+        }
+        return new HeapPressureMonitor.Reclaim(caches, objects, freed);
+    }
+
+    /**
+     * Returns whether the objects on this server's heap are copies, so shedding them only costs a reload:
+     * Redis holds those of a {@link NearCache}, the slabs those of an {@link OffHeapCache}'s hot set
+     * and the database those of a {@link DataBackedCache}. A plain {@link MemoryCache} holds the only copy.
+     */
+    private static boolean isBacked(Cache<?> backing) {
+        return backing instanceof NearCache<?> || backing instanceof OffHeapCache<?> || backing instanceof DataBackedCache<?>;
+    }
+
+    /**
+     * Returns the metrics of the cache of a class.
+     */
+    public static <T> @NotNull CacheStats getStats(Class<T> clazz) {
+        return getRegistration(clazz).cache().stats();
+    }
+
+    /**
+     * Returns the metrics of every registered cache, with the worst hit rate first.
+     */
+    public static @NotNull List<CacheStats> getStats() {
+        List<CacheStats> stats = new ArrayList<>();
+        for (Registration<?> registration : cacheMap.values()) stats.add(registration.cache().stats());
+        stats.sort(Comparator.comparingDouble(CacheStats::hitRate));
+        return stats;
+    }
+
+    /**
+     * Logs the metrics of every registered cache periodically, on {@link Tasks#getLoopDeLoop()}.
+     * Caches which evict objects that are looked up again soon after are flagged.
+     *
+     * @param logger   the logger to write to
+     * @param interval the time between dumps
+     * @return the scheduled dump, cancel it to stop dumping
+     */
+    public static @NotNull ScheduledFuture<?> scheduleStatsDump(@NotNull Logger logger, @NotNull Duration interval) {
+        long millis = interval.toMillis();
+        return Tasks.getLoopDeLoop().scheduleAtFixedRate(() -> {
+            try {
+                getStats().forEach(stats -> logger.info(format(stats)));
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "[Cache] Failed to collect the cache metrics", e);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    private static String format(CacheStats stats) {
+        String line = "[Cache] [%s] %.1f%% hits (%d hits, %d misses), %d evictions, %d shared loads, %d objects (%d local, ~%.1fKB), loads %s, puts %s".formatted(
+                stats.name(),
+                stats.hitRate() * 100,
+                stats.hits(),
+                stats.misses(),
+                stats.evictions(),
+                stats.sharedLoads(),
+                stats.size(),
+                stats.localSize(),
+                stats.estimatedBytes() / 1024D,
+                stats.loadLatency(),
+                stats.putLatency()
+        );
+        if (stats.shedObjects() > 0) {
+            line += ", %d shed under heap pressure (~%.1fKB)".formatted(stats.shedObjects(), stats.shedBytes() / 1024D);
+        }
+        if (stats.isThrashing()) line += " - evicting objects which are looked up again, consider a larger maximum size";
+        return line;
+    }
+
+    /**
+     * A registered cache, the metrics wrap the indexes which wrap the created cache.
+     */
+    private record Registration<T>(Cache<T> backing, IndexedCache<T> indexed, MeteredCache<T> cache) {
+    }
+
     @FunctionalInterface
     protected interface CacheFactory<T> {
         Cache<T> create();
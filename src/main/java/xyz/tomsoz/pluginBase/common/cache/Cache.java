@@ -3,8 +3,11 @@ package xyz.tomsoz.pluginBase.common.cache;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public interface Cache<T> {
     void add(@Nullable T obj);
@@ -18,4 +21,116 @@ public interface Cache<T> {
     @NotNull List<T> getAll();
 
     int size();
+
+    /**
+     * Returns the cached objects of the specified keys, keys without an object are left out.
+     * Distributed caches fetch every key in a single round trip.
+     */
+    default @NotNull Map<UUID, T> getAll(@NotNull Collection<UUID> uuids) {
+        Map<UUID, T> result = new HashMap<>(Math.max(4, uuids.size() * 2));
+        for (UUID uuid : uuids) {
+            T value = get(uuid);
+            if (value != null) result.put(uuid, value);
+        }
+        return result;
+    }
+
+    /**
+     * Adds every object, null objects are skipped.
+     * Distributed caches write every object in a single round trip.
+     */
+    default void addAll(@NotNull Collection<? extends T> objs) {
+        for (T obj : objs) add(obj);
+    }
+
+    /**
+     * Removes the objects of every key.
+     * Distributed caches remove every key in a single round trip.
+     */
+    default void invalidateAll(@NotNull Collection<UUID> uuids) {
+        for (UUID uuid : uuids) invalidate(uuid);
+    }
+
+    /**
+     * Returns the cached object of a key, loading and adding it when it is missing.
+     * <p>
+     * If another object is added for the key while loading, implementations may return that object instead.
+     * By default concurrent calls for the same key may each run the loader,
+     * {@link MemoryCache} and {@link NearCache} share a single load between them.
+     * </p>
+     *
+     * @param loader loads the object of the key, may return null to add nothing
+     * @return the cached or loaded object, or null if the loader returned null
+     */
+    default @Nullable T computeIfAbsent(@NotNull UUID uuid, @NotNull Function<? super UUID, ? extends T> loader) {
+        T value = get(uuid);
+        if (value != null) return value;
+
+        value = loader.apply(uuid);
+        add(value);
+        return value;
+    }
+
+    /**
+     * Returns a spliterator of the cached objects.
+     * <p>
+     * By default this splits a copy from {@link #getAll()}. {@link MemoryCache} and {@link OffHeapCache} walk their
+     * tables in place instead and split by segment, and {@link RedisCache} scans the hash in batches.
+     * These are weakly consistent: objects added or removed while iterating may or may not be seen.
+     * </p>
+     */
+    default @NotNull Spliterator<T> spliterator() {
+        return getAll().spliterator();
+    }
+
+    /**
+     * Returns a stream of the cached objects, see {@link #spliterator()}. Use {@link Stream#parallel()} to split it.
+     */
+    default @NotNull Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns an iterator of the cached objects, see {@link #spliterator()}.
+     */
+    default @NotNull Iterator<T> iterator() {
+        return Spliterators.iterator(spliterator());
+    }
+
+    /**
+     * Runs the action for every cached object, see {@link #spliterator()}.
+     */
+    default void forEach(@NotNull Consumer<? super T> action) {
+        spliterator().forEachRemaining(action);
+    }
+
+    /**
+     * Returns up to limit cached objects, after skipping offset of them.
+     * Later pages skip through the earlier ones, prefer {@link #page(String, int)} to walk every page.
+     */
+    default @NotNull List<T> page(int offset, int limit) {
+        if (offset < 0) throw new IllegalArgumentException("offset must not be negative");
+        if (limit <= 0) throw new IllegalArgumentException("limit must be positive");
+        return stream().skip(offset).limit(limit).toList();
+    }
+
+    /**
+     * Returns up to limit cached objects, continuing where the page of the cursor ended.
+     * <p>
+     * By default the cursor is an offset. {@link MemoryCache} and {@link OffHeapCache} use a position in their
+     * tables instead, so a page costs only its own objects. Pages are weakly consistent, see {@link #spliterator()}.
+     * </p>
+     *
+     * @param cursor the {@link CachePage#nextCursor() cursor} of the previous page, or null for the first page
+     * @throws IllegalArgumentException if the cursor was not returned by this cache
+     */
+    default @NotNull CachePage<T> page(@Nullable String cursor, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be positive");
+        long offset = CachePage.parse(cursor);
+        if (offset > Integer.MAX_VALUE) throw new IllegalArgumentException("Invalid cursor '%s'".formatted(cursor));
+
+        List<T> items = stream().skip(offset).limit(limit + 1L).toList();
+        if (items.size() <= limit) return new CachePage<>(items, null);
+        return new CachePage<>(items.subList(0, limit), Long.toString(offset + limit));
+    }
 }
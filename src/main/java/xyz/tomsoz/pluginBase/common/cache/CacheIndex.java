@@ -0,0 +1,189 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A secondary index of a cache, finding cached objects by another key than their UUID, such as a name or a clan tag.
+ * <p>
+ * Indexes are declared once and registered through {@link BaseCacheAccess#registerIndexes}, which keeps them
+ * consistent with every add and invalidation of the cache. A unique index maps a key to a single object,
+ * the object added last wins. Other indexes map a key to every object with that key.
+ * Objects with a null key are not indexed.
+ * </p>
+ * <pre>
+ * registerIndexes(Profile.class, Profile::getUniqueId,
+ *         CacheIndex.unique("name", Profile::getName).ignoreCase(),
+ *         CacheIndex.of("clan", Profile::getClanTag));
+ *
+ * Optional&lt;Profile&gt; profile = findBy(Profile.class, "name", "Notch");
+ * </pre>
+ *
+ * @param <T> the type of cached object
+ * @param <K> the type of index key
+ */
+@SuppressWarnings("unused")
+public final class CacheIndex<T, K> {
+    private final String name;
+    private final Function<? super T, ? extends K> extractor;
+    private final boolean unique;
+    private boolean ignoreCase;
+
+    /**
+     * Index key to a UUID when unique, otherwise to a concurrent set of UUIDs.
+     */
+    private final ConcurrentHashMap<Object, Object> entries = new ConcurrentHashMap<>();
+    /**
+     * The key each object is currently indexed under, to remove it once the object changes or leaves the cache.
+     * Entries of an object are only changed while computing its key here, so concurrent updates of it are applied in turn.
+     */
+    private final UuidMap<Object> indexed = new UuidMap<>();
+
+    private CacheIndex(String name, Function<? super T, ? extends K> extractor, boolean unique) {
+        this.name = name;
+        this.extractor = extractor;
+        this.unique = unique;
+    }
+
+    /**
+     * Declares an index mapping every key to at most one object.
+     *
+     * @param name      the name to look the index up by
+     * @param extractor returns the index key of an object, or null to leave it out
+     */
+    public static <T, K> @NotNull CacheIndex<T, K> unique(@NotNull String name, @NotNull Function<? super T, ? extends K> extractor) {
+        return new CacheIndex<>(name, extractor, true);
+    }
+
+    /**
+     * Declares an index mapping every key to any amount of objects.
+     *
+     * @param name      the name to look the index up by
+     * @param extractor returns the index key of an object, or null to leave it out
+     */
+    public static <T, K> @NotNull CacheIndex<T, K> of(@NotNull String name, @NotNull Function<? super T, ? extends K> extractor) {
+        return new CacheIndex<>(name, extractor, false);
+    }
+
+    /**
+     * Compares string keys regardless of case, such as player names.
+     */
+    public @NotNull CacheIndex<T, K> ignoreCase() {
+        this.ignoreCase = true;
+        return this;
+    }
+
+    public @NotNull String getName() {
+        return name;
+    }
+
+    public boolean isUnique() {
+        return unique;
+    }
+
+    /**
+     * Returns the amount of distinct keys in the index.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Indexes an object added to or read from the cache, moving it if its key changed.
+     */
+    void index(@NotNull UUID uuid, @NotNull T obj) {
+        Object key = keyOf(obj);
+        if (Objects.equals(indexed.get(uuid), key)) return;
+
+        indexed.compute(uuid, (id, previous) -> {
+            if (Objects.equals(previous, key)) return previous;
+
+            if (previous != null) removeEntry(previous, uuid);
+            if (key != null) addEntry(key, uuid);
+            return key;
+        });
+    }
+
+    /**
+     * Removes an object which left the cache.
+     */
+    void unindex(@NotNull UUID uuid) {
+        if (indexed.get(uuid) == null) return;
+
+        indexed.compute(uuid, (id, previous) -> {
+            if (previous != null) removeEntry(previous, uuid);
+            return null;
+        });
+    }
+
+    /**
+     * Returns the UUIDs indexed under a key, which the caller still has to check against the cache.
+     */
+    @NotNull Collection<UUID> lookup(@Nullable Object key) {
+        Object normalized = normalize(key);
+        if (normalized == null) return List.of();
+
+        Object entry = entries.get(normalized);
+        if (entry == null) return List.of();
+        if (unique) return List.of((UUID) entry);
+
+        @SuppressWarnings("unchecked")
+        Set<UUID> uuids = (Set<UUID>) entry;
+        return List.copyOf(uuids);
+    }
+
+    /**
+     * Returns whether an object is still indexed under a key, objects may change after being added.
+     */
+    boolean matches(@NotNull T obj, @Nullable Object key) {
+        Object normalized = normalize(key);
+        return normalized != null && normalized.equals(keyOf(obj));
+    }
+
+    void clear() {
+        entries.clear();
+        indexed.clear();
+    }
+
+    private @Nullable Object keyOf(T obj) {
+        return normalize(extractor.apply(obj));
+    }
+
+    private @Nullable Object normalize(@Nullable Object key) {
+        if (ignoreCase && key instanceof String string) return string.toLowerCase(Locale.ROOT);
+        return key;
+    }
+
+    private void addEntry(Object key, UUID uuid) {
+        if (unique) {
+            entries.put(key, uuid);
+            return;
+        }
+
+        entries.compute(key, (k, entry) -> {
+            @SuppressWarnings("unchecked")
+            Set<UUID> uuids = entry != null ? (Set<UUID>) entry : ConcurrentHashMap.newKeySet();
+            uuids.add(uuid);
+            return uuids;
+        });
+    }
+
+    private void removeEntry(Object key, UUID uuid) {
+        if (unique) {
+            // another object may have taken the key meanwhile
+            entries.remove(key, uuid);
+            return;
+        }
+
+        entries.computeIfPresent(key, (k, entry) -> {
+            @SuppressWarnings("unchecked")
+            Set<UUID> uuids = (Set<UUID>) entry;
+            uuids.remove(uuid);
+            return uuids.isEmpty() ? null : uuids;
+        });
+    }
+}
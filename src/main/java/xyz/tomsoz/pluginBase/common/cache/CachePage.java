@@ -0,0 +1,49 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A page of cached objects, see {@link Cache#page(String, int)}.
+ *
+ * @param items      the objects of this page
+ * @param nextCursor the cursor of the next page, or null if this was the last one
+ * @param <T>        the type of cached object
+ */
+public record CachePage<T>(@NotNull List<T> items, @Nullable String nextCursor) {
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Reads a page of a {@link UuidMap}, using its positions as cursors.
+     *
+     * @param mapper returns the object of a value, or null to skip it
+     */
+    static <V, T> @NotNull CachePage<T> of(@NotNull UuidMap<V> map, @Nullable String cursor, int limit,
+                                           @NotNull Function<? super V, ? extends T> mapper) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be positive");
+
+        List<T> items = new ArrayList<>(Math.min(limit, 256));
+        long next = map.forEachValueFrom(parse(cursor), value -> {
+            T item = mapper.apply(value);
+            if (item != null) items.add(item);
+            return items.size() < limit;
+        });
+        return new CachePage<>(items, next < 0 ? null : Long.toString(next));
+    }
+
+    static long parse(@Nullable String cursor) {
+        if (cursor == null) return 0;
+        try {
+            long position = Long.parseLong(cursor);
+            if (position >= 0) return position;
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Invalid cursor '%s'".formatted(cursor));
+    }
+}
@@ -0,0 +1,284 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import com.google.gson.Gson;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import xyz.tomsoz.pluginBase.common.flavor.Flavor;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A file holding the contents of local caches between restarts, so they do not start empty.
+ * <p>
+ * The snapshot is written when the {@link Flavor} closes and restored in the background on the next boot,
+ * see {@link BaseCacheAccess#enableSnapshots(Flavor, CacheSnapshot, Class[])}. Restoring never replaces
+ * an object which was added or loaded meanwhile, and the file is deleted once restored, so it is only used once.
+ * </p>
+ * <p>
+ * A snapshot is discarded if its checksum does not match, if it is older than the maximum age,
+ * or if it was written with another version, such as before the cached classes changed.
+ * Objects are stored as JSON, serialized by the given Gson.
+ * </p>
+ * <pre>
+ * CacheSnapshot snapshot = CacheSnapshot.builder(getDataFolder().toPath().resolve("caches.snapshot"), codec.getGson())
+ *         .maxAge(Duration.ofMinutes(10))
+ *         .version(getPluginMeta().getVersion())
+ *         .build();
+ * </pre>
+ */
+@SuppressWarnings("unused")
+public final class CacheSnapshot {
+    private static final int MAGIC = 0x50424353;
+    private static final int FORMAT = 1;
+    /**
+     * How far in the future a snapshot may have been written, for clocks adjusted between restarts.
+     */
+    private static final long CLOCK_SKEW = Duration.ofMinutes(1).toMillis();
+
+    private final Path file;
+    private final Gson gson;
+    private final Duration maxAge;
+    private final String version;
+    private final Logger logger;
+
+    private CacheSnapshot(Builder builder) {
+        this.file = builder.file;
+        this.gson = builder.gson;
+        this.maxAge = builder.maxAge;
+        this.version = builder.version;
+        this.logger = builder.logger;
+    }
+
+    /**
+     * Creates a builder for a snapshot.
+     *
+     * @param file the file to write the snapshot to
+     * @param gson serializes the cached objects, usually the one of the codec used for Redis
+     */
+    public static @NotNull Builder builder(@NotNull Path file, @NotNull Gson gson) {
+        return new Builder(file, gson);
+    }
+
+    public @NotNull Path getFile() {
+        return file;
+    }
+
+    @NotNull Logger getLogger() {
+        return logger;
+    }
+
+    /**
+     * Writes the objects of every section, replacing the previous snapshot atomically.
+     * A section which fails to serialize is left out.
+     *
+     * @param sections the cached objects by section name
+     * @return the amount of objects written
+     */
+    int write(@NotNull Map<String, ? extends Collection<?>> sections) throws IOException {
+        List<String> names = new ArrayList<>();
+        List<List<byte[]>> contents = new ArrayList<>();
+        int total = 0;
+        for (Map.Entry<String, ? extends Collection<?>> section : sections.entrySet()) {
+            try {
+                List<byte[]> entries = new ArrayList<>(section.getValue().size());
+                for (Object obj : section.getValue()) {
+                    if (obj != null) entries.add(gson.toJson(obj).getBytes(StandardCharsets.UTF_8));
+                }
+                names.add(section.getKey());
+                contents.add(entries);
+                total += entries.size();
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "[Cache] [%s] Failed to serialize the snapshot, leaving it out.".formatted(section.getKey()), e);
+            }
+        }
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(Files.newOutputStream(temp), crc)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeLong(System.currentTimeMillis());
+            writeBytes(out, version.getBytes(StandardCharsets.UTF_8));
+            out.writeInt(names.size());
+            for (int i = 0; i < names.size(); i++) {
+                writeBytes(out, names.get(i).getBytes(StandardCharsets.UTF_8));
+                out.writeInt(contents.get(i).size());
+                for (byte[] json : contents.get(i)) writeBytes(out, json);
+            }
+            out.flush();
+            // the checksum covers everything before it
+            out.writeLong(crc.getValue());
+        }
+
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return total;
+    }
+
+    /**
+     * Reads the snapshot, passing the objects of every section with a target to it, then deletes the file.
+     * Sections without a target are skipped, a snapshot which fails validation is deleted without reading it.
+     *
+     * @param targets the consumers of the restored objects by section name
+     * @return the amount of objects restored, 0 if there was no valid snapshot
+     */
+    int restore(@NotNull Map<String, Target<?>> targets) {
+        if (!Files.exists(file)) return 0;
+
+        try {
+            // read onto the heap rather than mapped, a mapped file can neither be deleted nor replaced on Windows
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            String invalid = validate(buffer);
+            if (invalid != null) {
+                logger.info("[Cache] Discarding the cache snapshot, " + invalid + ".");
+                return 0;
+            }
+            return read(buffer, targets);
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "[Cache] Failed to restore the cache snapshot, discarding it.", e);
+            return 0;
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "[Cache] Failed to delete the restored cache snapshot.", e);
+            }
+        }
+    }
+
+    /**
+     * Checks the header and checksum of a snapshot, leaving the buffer positioned after the version.
+     *
+     * @return why the snapshot is invalid, or null if it is valid
+     */
+    private @Nullable String validate(ByteBuffer buffer) {
+        int end = buffer.limit() - Long.BYTES;
+        if (end < Integer.BYTES * 2 + Long.BYTES + Integer.BYTES) return "it is truncated";
+        if (buffer.getInt() != MAGIC) return "it is not a cache snapshot";
+        if (buffer.getInt() != FORMAT) return "it was written in another format";
+
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().position(0).limit(end));
+        if (crc.getValue() != buffer.getLong(end)) return "its checksum does not match";
+
+        long age = System.currentTimeMillis() - buffer.getLong();
+        if (age > maxAge.toMillis()) return "it is %ss old".formatted(age / 1000);
+        if (age < -CLOCK_SKEW) return "it was written in the future";
+
+        String written = new String(readBytes(buffer), StandardCharsets.UTF_8);
+        if (!written.equals(version)) return "it was written by version '%s'".formatted(written);
+        return null;
+    }
+
+    private int read(ByteBuffer buffer, Map<String, Target<?>> targets) {
+        int restored = 0;
+        int sections = buffer.getInt();
+        for (int i = 0; i < sections; i++) {
+            String name = new String(readBytes(buffer), StandardCharsets.UTF_8);
+            int count = buffer.getInt();
+
+            Target<?> target = targets.get(name);
+            if (target == null) {
+                for (int j = 0; j < count; j++) {
+                    int length = buffer.getInt();
+                    buffer.position(buffer.position() + length);
+                }
+                continue;
+            }
+            for (int j = 0; j < count; j++) {
+                if (target.restore(gson, readBytes(buffer))) restored++;
+            }
+        }
+        return restored;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Receives the restored objects of a section.
+     *
+     * @param type     the class to deserialize the objects as
+     * @param consumer adds a restored object to its cache
+     * @param <T>      the type of restored object
+     */
+    record Target<T>(@NotNull Class<T> type, @NotNull Consumer<T> consumer) {
+        private boolean restore(Gson gson, byte[] json) {
+            T obj = gson.fromJson(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8), type);
+            if (obj == null) return false;
+
+            consumer.accept(obj);
+            return true;
+        }
+    }
+
+    /**
+     * Configures a {@link CacheSnapshot}.
+     */
+    public static final class Builder {
+        private final Path file;
+        private final Gson gson;
+        private Duration maxAge = Duration.ofMinutes(10);
+        private String version = "";
+        private Logger logger = Logger.getLogger(CacheSnapshot.class.getName());
+
+        private Builder(Path file, Gson gson) {
+            this.file = file;
+            this.gson = gson;
+        }
+
+        /**
+         * Sets how old a snapshot may be to be restored, 10 minutes by default.
+         * Objects may have changed in the database while the server was down, keep this short.
+         */
+        public Builder maxAge(@NotNull Duration maxAge) {
+            this.maxAge = maxAge;
+            return this;
+        }
+
+        /**
+         * Sets the version snapshots must have been written with to be restored, such as the plugin version.
+         */
+        public Builder version(@NotNull String version) {
+            this.version = version;
+            return this;
+        }
+
+        /**
+         * Sets the logger restores and failures are reported to.
+         */
+        public Builder logger(@NotNull Logger logger) {
+            this.logger = logger;
+            return this;
+        }
+
+        public @NotNull CacheSnapshot build() {
+            return new CacheSnapshot(this);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The metrics of a cache registered through {@link BaseCacheAccess} at one point in time, counted since registration.
+ *
+ * @param name           the name of the cached class
+ * @param hits           lookups which found an object
+ * @param misses         lookups which found nothing
+ * @param evictions      objects removed to respect a bound or an expiry, rather than invalidated
+ * @param shedObjects    objects evicted from this server's heap to free it under memory pressure, see {@link HeapPressureMonitor}
+ * @param shedBytes      the estimated heap freed by shedding those objects
+ * @param puts           objects added
+ * @param loads          objects loaded by {@link Cache#computeIfAbsent}
+ * @param loadFailures   loads which threw
+ * @param sharedLoads    misses which shared a load of the same key in flight instead of starting their own
+ * @param size           the amount of cached objects
+ * @param localSize      the amount of objects held on this server's heap
+ * @param estimatedBytes the estimated heap used by the local objects, including their entries
+ * @param loadLatency    the durations of the loads
+ * @param putLatency     the durations of the adds
+ */
+public record CacheStats(@NotNull String name, long hits, long misses, long evictions, long shedObjects, long shedBytes, long puts,
+                         long loads, long loadFailures, long sharedLoads, int size, int localSize, long estimatedBytes,
+                         @NotNull LatencyHistogram.Snapshot loadLatency, @NotNull LatencyHistogram.Snapshot putLatency) {
+    public long requests() {
+        return hits + misses;
+    }
+
+    /**
+     * Returns the share of lookups which found an object, 1 if there were none.
+     */
+    public double hitRate() {
+        long requests = requests();
+        return requests == 0 ? 1 : (double) hits / requests;
+    }
+
+    /**
+     * Returns whether the cache evicts objects which are looked up again soon after,
+     * meaning its maximum size is likely too small for its working set.
+     */
+    public boolean isThrashing() {
+        return requests() >= 100 && hitRate() < 0.8 && evictions > misses / 4;
+    }
+}
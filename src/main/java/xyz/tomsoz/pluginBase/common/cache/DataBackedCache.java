@@ -0,0 +1,374 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import xyz.tomsoz.pluginBase.common.Tasks;
+import xyz.tomsoz.pluginBase.common.database.BaseDataService;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.logging.Level;
+
+/**
+ * A {@link Cache} which loads missing objects from the database and writes changes back in batches.
+ * <p>
+ * A miss is loaded through {@link BaseDataService#get(Class, UUID)} and added to the wrapped cache,
+ * concurrent misses of the same key share a single load.
+ * Added objects are marked dirty rather than saved, repeated writes of a key are coalesced into one,
+ * and dirty objects are saved through {@link BaseDataService#saveAll(Class, Collection)} periodically,
+ * whenever enough of them are pending, and before the data service shuts down.
+ * </p>
+ * <p>
+ * Invalidating only evicts the cached copy, a pending write of the key is still saved.
+ * Reads blocking on the database should not happen on the main thread, use {@link #getAsync(UUID)} there.
+ * </p>
+ *
+ * @param <T> the type of cached object
+ */
+@SuppressWarnings("unused")
+public final class DataBackedCache<T> implements Cache<T> {
+    private final Class<T> clazz;
+    private final Function<? super T, UUID> keyMapper;
+    private final Cache<T> cache;
+    private final BaseDataService dataService;
+    private final int maxBatchSize;
+
+    private final ConcurrentHashMap<UUID, Dirty<T>> dirty = new ConcurrentHashMap<>();
+    private final SingleFlight<T> flights = new SingleFlight<>();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledFuture<?> schedule;
+
+    private DataBackedCache(Builder<T> builder) {
+        this.clazz = builder.clazz;
+        this.keyMapper = builder.keyMapper;
+        this.cache = builder.cache;
+        this.dataService = builder.dataService;
+        this.maxBatchSize = builder.maxBatchSize;
+
+        long interval = builder.flushInterval.toMillis();
+        this.schedule = Tasks.getLoopDeLoop().scheduleWithFixedDelay(this::flushAsync, interval, interval, TimeUnit.MILLISECONDS);
+        dataService.beforeShutdown(this::close);
+    }
+
+    /**
+     * Creates a builder for a database backed cache.
+     *
+     * @param clazz       the class of the cached objects, which the data service has a dao for
+     * @param keyMapper   returns the key of an object
+     * @param cache       the cache holding the loaded objects, such as a {@link MemoryCache}
+     * @param dataService the data service to load and save through
+     */
+    public static <T> @NotNull Builder<T> builder(@NotNull Class<T> clazz, @NotNull Function<? super T, UUID> keyMapper,
+                                                  @NotNull Cache<T> cache, @NotNull BaseDataService dataService) {
+        return new Builder<>(clazz, keyMapper, cache, dataService);
+    }
+
+    /**
+     * Adds the object and marks it to be saved with the next flush.
+     */
+    @Override
+    public void add(@Nullable T obj) {
+        if (obj == null) return;
+
+        cache.add(obj);
+        markDirty(obj);
+    }
+
+    @Override
+    public void addAll(@NotNull Collection<? extends T> objs) {
+        cache.addAll(objs);
+        for (T obj : objs) {
+            if (obj != null) markDirty(obj);
+        }
+    }
+
+    /**
+     * Returns the object of a key, loading it from the database on a miss. This blocks while loading.
+     */
+    @Override
+    public @Nullable T get(UUID uuid) {
+        T value = cached(uuid);
+        if (value != null) return value;
+        return load(uuid).join();
+    }
+
+    /**
+     * Returns the object of a key, loading it from the database on a miss without blocking.
+     *
+     * @return a future completed with the object, or null if the database has none either
+     */
+    public @NotNull CompletableFuture<T> getAsync(@NotNull UUID uuid) {
+        T value = cached(uuid);
+        if (value != null) return CompletableFuture.completedFuture(value);
+        return load(uuid);
+    }
+
+    /**
+     * Returns the cached or pending object of a key without loading it.
+     */
+    @Nullable T getIfPresent(@NotNull UUID uuid) {
+        return cached(uuid);
+    }
+
+    /**
+     * Returns the objects of the keys, loading every miss from the database concurrently. This blocks while loading.
+     */
+    @Override
+    public @NotNull Map<UUID, T> getAll(@NotNull Collection<UUID> uuids) {
+        Map<UUID, T> result = new HashMap<>(cache.getAll(uuids));
+        Map<UUID, CompletableFuture<T>> loading = new HashMap<>();
+        for (UUID uuid : uuids) {
+            if (result.containsKey(uuid) || loading.containsKey(uuid)) continue;
+
+            T value = cached(uuid);
+            if (value != null) result.put(uuid, value);
+            else loading.put(uuid, load(uuid));
+        }
+
+        loading.forEach((uuid, future) -> {
+            T value = future.join();
+            if (value != null) result.put(uuid, value);
+        });
+        return result;
+    }
+
+    /**
+     * Evicts the cached copy of a key, a pending write of it is still saved.
+     */
+    @Override
+    public void invalidate(@NotNull UUID uuid) {
+        cache.invalidate(uuid);
+    }
+
+    @Override
+    public void invalidate(@NotNull T obj) {
+        invalidate(keyMapper.apply(obj));
+    }
+
+    @Override
+    public void invalidateAll(@NotNull Collection<UUID> uuids) {
+        cache.invalidateAll(uuids);
+    }
+
+    /**
+     * Returns every cached object, this does not load anything from the database.
+     */
+    @Override
+    public @NotNull List<T> getAll() {
+        return cache.getAll();
+    }
+
+    @Override
+    public @NotNull Spliterator<T> spliterator() {
+        return cache.spliterator();
+    }
+
+    @Override
+    public @NotNull Stream<T> stream() {
+        return cache.stream();
+    }
+
+    @Override
+    public @NotNull CachePage<T> page(@Nullable String cursor, int limit) {
+        return cache.page(cursor, limit);
+    }
+
+    @Override
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Returns the amount of objects waiting to be saved.
+     */
+    public int dirtySize() {
+        return dirty.size();
+    }
+
+    /**
+     * Returns the cache holding the loaded objects.
+     */
+    @NotNull Cache<T> getCache() {
+        return cache;
+    }
+
+    /**
+     * Returns the amount of misses which shared a database load in flight instead of starting their own.
+     */
+    public long deduplicatedLoads() {
+        return flights.deduplicated();
+    }
+
+    /**
+     * Saves every dirty object now, in batches, blocking until done. Objects which fail to save stay dirty.
+     *
+     * @return whether every object which was dirty when called has been saved
+     */
+    public boolean flush() {
+        // not synchronized, flushes run on virtual threads which must not pin their carrier while saving
+        flushLock.lock();
+        try {
+            return flushDirty();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private boolean flushDirty() {
+        flushQueued.set(false);
+        if (dirty.isEmpty()) return true;
+        if (!dataService.isConnected()) return false;
+
+        List<Map.Entry<UUID, Dirty<T>>> pending = new ArrayList<>(dirty.entrySet());
+        for (int from = 0; from < pending.size(); from += maxBatchSize) {
+            List<Map.Entry<UUID, Dirty<T>>> batch = pending.subList(from, Math.min(pending.size(), from + maxBatchSize));
+            List<T> values = new ArrayList<>(batch.size());
+            for (Map.Entry<UUID, Dirty<T>> entry : batch) values.add(entry.getValue().value());
+
+            try {
+                dataService.saveAll(clazz, values).join();
+            } catch (Exception e) {
+                dataService.logger.log(Level.WARNING, "[Cache] [%s] Failed to save %d objects, retrying with the next flush."
+                        .formatted(clazz.getSimpleName(), pending.size() - from), e);
+                return false;
+            }
+
+            // a key written again meanwhile holds a new marker and stays dirty
+            for (Map.Entry<UUID, Dirty<T>> entry : batch) dirty.remove(entry.getKey(), entry.getValue());
+        }
+        return true;
+    }
+
+    /**
+     * Stops the scheduled flushes and saves the remaining dirty objects.
+     */
+    private void close() {
+        schedule.cancel(false);
+        if (!flush()) {
+            dataService.logger.severe("[Cache] [%s] Lost %d unsaved objects on shutdown."
+                    .formatted(clazz.getSimpleName(), dirty.size()));
+        }
+    }
+
+    private void markDirty(T obj) {
+        UUID key = Objects.requireNonNull(keyMapper.apply(obj), "key");
+        dirty.put(key, new Dirty<>(obj));
+        if (dirty.size() >= maxBatchSize) flushAsync();
+    }
+
+    /**
+     * Flushes on a virtual thread, unless a flush is already queued.
+     */
+    private void flushAsync() {
+        if (dirty.isEmpty() || !flushQueued.compareAndSet(false, true)) return;
+        Thread.startVirtualThread(this::flush);
+    }
+
+    /**
+     * Returns the cached object of a key, or its pending write if it was evicted before being saved.
+     */
+    private @Nullable T cached(UUID uuid) {
+        T value = cache.get(uuid);
+        if (value != null) return value;
+
+        Dirty<T> pending = dirty.get(uuid);
+        if (pending == null) return null;
+
+        cache.add(pending.value());
+        return pending.value();
+    }
+
+    /**
+     * Loads a key from the database, sharing the load with concurrent misses of the same key.
+     */
+    private CompletableFuture<T> load(UUID uuid) {
+        return load(uuid, UnaryOperator.identity());
+    }
+
+    /**
+     * Loads a key from the database without blocking, sharing the load with concurrent misses of the same key.
+     *
+     * @param started wraps the load if this call starts it rather than sharing one in flight, for example to time it
+     */
+    @NotNull CompletableFuture<T> load(@NotNull UUID uuid, @NotNull UnaryOperator<CompletableFuture<T>> started) {
+        return flights.load(uuid, key -> started.apply(dataService.get(clazz, key).thenApply(loaded -> {
+            // a write during the load is newer than the database
+            Dirty<T> pending = dirty.get(uuid);
+            if (pending != null) return pending.value();
+            if (loaded.isEmpty()) return null;
+
+            // keep an object added meanwhile
+            T value = loaded.get();
+            return cache.computeIfAbsent(uuid, k -> value);
+        })));
+    }
+
+    /**
+     * Marks a pending write, every write creates a new marker so a flush can tell whether the key was written again.
+     */
+    private record Dirty<T>(T value) {
+        @Override
+        public boolean equals(Object obj) {
+            return this == obj;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    /**
+     * Configures a {@link DataBackedCache}.
+     *
+     * @param <T> the type of cached object
+     */
+    public static final class Builder<T> {
+        private final Class<T> clazz;
+        private final Function<? super T, UUID> keyMapper;
+        private final Cache<T> cache;
+        private final BaseDataService dataService;
+        private Duration flushInterval = Duration.ofSeconds(30);
+        private int maxBatchSize = 500;
+
+        private Builder(Class<T> clazz, Function<? super T, UUID> keyMapper, Cache<T> cache, BaseDataService dataService) {
+            this.clazz = clazz;
+            this.keyMapper = keyMapper;
+            this.cache = cache;
+            this.dataService = dataService;
+        }
+
+        /**
+         * Sets the time between flushes, 30 seconds by default.
+         */
+        public Builder<T> flushInterval(@NotNull Duration flushInterval) {
+            if (flushInterval.isNegative() || flushInterval.isZero()) throw new IllegalArgumentException("flushInterval must be positive");
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
+        /**
+         * Sets the most objects saved in a single batch, 500 by default.
+         * A flush also starts early once this many objects are dirty.
+         */
+        public Builder<T> maxBatchSize(int maxBatchSize) {
+            if (maxBatchSize <= 0) throw new IllegalArgumentException("maxBatchSize must be positive");
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        public @NotNull DataBackedCache<T> build() {
+            return new DataBackedCache<>(this);
+        }
+    }
+}
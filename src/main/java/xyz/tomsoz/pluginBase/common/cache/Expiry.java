@@ -0,0 +1,28 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Decides how long each object of a {@link MemoryCache} may stay cached, see {@link MemoryCache.Builder#expireAfter(Expiry)}.
+ * <pre>
+ * MemoryCache.builder(Session::getUniqueId)
+ *         .expireAfter((key, session) -&gt; session.isPremium() ? Duration.ofHours(1) : Duration.ofMinutes(10))
+ *         .removalListener(RemovalListener.saveOnEviction(dataService, Session.class))
+ *         .build();
+ * </pre>
+ *
+ * @param <T> the type of cached object
+ */
+@FunctionalInterface
+public interface Expiry<T> {
+    /**
+     * Returns how long an object may stay cached after it was added or replaced.
+     *
+     * @return the duration, or null to keep the object until it is evicted otherwise
+     */
+    @Nullable Duration expireAfterWrite(@NotNull UUID key, @NotNull T value);
+}
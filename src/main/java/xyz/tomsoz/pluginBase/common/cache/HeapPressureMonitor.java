@@ -0,0 +1,290 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+import xyz.tomsoz.pluginBase.common.Tasks;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sheds cold cache entries when the heap runs low, before the collector is left thrashing.
+ * <p>
+ * The monitor sets the collection usage threshold of every heap pool to the high watermark, and listens
+ * to those notifications as well as to every garbage collection. After a collection it reads how full each
+ * pool still is; once one is past the high watermark it sheds the coldest objects of the caches registered in
+ * {@link BaseCacheAccess} to bring it back to the low watermark. Each cache frees a share in proportion to
+ * its estimated heap use times the weight of its class, see {@link BaseCacheAccess#getStats()} for what was shed.
+ * </p>
+ * <p>
+ * Only copies on this server's heap of objects kept elsewhere are shed: the local copies of a {@link NearCache},
+ * the hot set of an {@link OffHeapCache} and the objects a {@link DataBackedCache} loaded. A plain {@link MemoryCache}
+ * is never shed, as it holds the only copy of its objects.
+ * </p>
+ * <pre>
+ * HeapPressureMonitor monitor = HeapPressureMonitor.builder()
+ *         .watermarks(0.85, 0.70)
+ *         .weight(Profile.class, 0.5)
+ *         .weight(Punishment.class, 0)
+ *         .logger(getLogger())
+ *         .build()
+ *         .start();
+ * </pre>
+ */
+@SuppressWarnings("unused")
+public final class HeapPressureMonitor implements AutoCloseable {
+    /**
+     * The type of the notifications of a {@link GarbageCollectorMXBean}, as in {@code GarbageCollectionNotificationInfo}.
+     */
+    private static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+
+    private final double highWatermark;
+    private final double lowWatermark;
+    private final double maxShedFraction;
+    private final long minIntervalNanos;
+    private final Map<Class<?>, Double> weights;
+    private final double defaultWeight;
+    private final Logger logger;
+
+    private final NotificationListener listener = this::onNotification;
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final Map<MemoryPoolMXBean, Long> previousThresholds = new HashMap<>();
+    private final AtomicBoolean checkQueued = new AtomicBoolean();
+    private final LongAdder pressureEvents = new LongAdder();
+    private final LongAdder shedObjects = new LongAdder();
+    private final LongAdder reclaimedBytes = new LongAdder();
+    private volatile long lastShed;
+    private volatile double lastUsage;
+    private boolean started;
+
+    private HeapPressureMonitor(Builder builder) {
+        this.highWatermark = builder.highWatermark;
+        this.lowWatermark = builder.lowWatermark;
+        this.maxShedFraction = builder.maxShedFraction;
+        this.minIntervalNanos = builder.minInterval.toNanos();
+        this.weights = Map.copyOf(builder.weights);
+        this.defaultWeight = builder.defaultWeight;
+        this.logger = builder.logger;
+        this.lastShed = System.nanoTime() - minIntervalNanos;
+    }
+
+    public static @NotNull Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Sets the thresholds of the heap pools and starts listening to their notifications and to collections.
+     *
+     * @return this monitor
+     */
+    public synchronized @NotNull HeapPressureMonitor start() {
+        if (started) return this;
+        started = true;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP || !pool.isCollectionUsageThresholdSupported()) continue;
+
+            long max = pool.getUsage().getMax();
+            if (max <= 0) continue;
+            previousThresholds.put(pool, pool.getCollectionUsageThreshold());
+            pool.setCollectionUsageThreshold((long) (max * highWatermark));
+        }
+
+        if (ManagementFactory.getMemoryMXBean() instanceof NotificationEmitter emitter) {
+            emitter.addNotificationListener(listener,
+                    notification -> MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType()), null);
+            emitters.add(emitter);
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (!(collector instanceof NotificationEmitter emitter)) continue;
+
+            emitter.addNotificationListener(listener, notification -> GC_NOTIFICATION.equals(notification.getType()), null);
+            emitters.add(emitter);
+        }
+        return this;
+    }
+
+    /**
+     * Stops listening and restores the thresholds of the heap pools.
+     */
+    @Override
+    public synchronized void close() {
+        if (!started) return;
+        started = false;
+
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (ListenerNotFoundException ignored) {
+            }
+        }
+        emitters.clear();
+        previousThresholds.forEach(MemoryPoolMXBean::setCollectionUsageThreshold);
+        previousThresholds.clear();
+    }
+
+    /**
+     * Returns how many times objects were shed.
+     */
+    public long pressureEvents() {
+        return pressureEvents.sum();
+    }
+
+    /**
+     * Returns the amount of objects shed across every cache.
+     */
+    public long shedObjects() {
+        return shedObjects.sum();
+    }
+
+    /**
+     * Returns the estimated heap freed by shedding objects.
+     */
+    public long reclaimedBytes() {
+        return reclaimedBytes.sum();
+    }
+
+    /**
+     * Returns how full the fullest heap pool was after the last collection, between 0 and 1.
+     */
+    public double lastUsage() {
+        return lastUsage;
+    }
+
+    private void onNotification(Notification notification, Object handback) {
+        // collections come in bursts, they are coalesced into a single check off the notification thread
+        if (checkQueued.compareAndSet(false, true)) {
+            Tasks.getLoopDeLoop().execute(this::check);
+        }
+    }
+
+    /**
+     * Reads the usage of the heap pools after the last collection, shedding objects if one is past the high watermark.
+     */
+    void check() {
+        checkQueued.set(false);
+        try {
+            double usage = 0;
+            long excess = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() != MemoryType.HEAP) continue;
+
+                MemoryUsage afterCollection = pool.getCollectionUsage();
+                long max = pool.getUsage().getMax();
+                if (afterCollection == null || max <= 0) continue;
+
+                double poolUsage = (double) afterCollection.getUsed() / max;
+                usage = Math.max(usage, poolUsage);
+                if (poolUsage >= highWatermark) excess += afterCollection.getUsed() - (long) (max * lowWatermark);
+            }
+            lastUsage = usage;
+
+            long now = System.nanoTime();
+            // shed objects only become free with the next collection, give it time to run
+            if (excess <= 0 || now - lastShed < minIntervalNanos) return;
+            lastShed = now;
+
+            Reclaim reclaim = BaseCacheAccess.shed(excess, clazz -> weights.getOrDefault(clazz, defaultWeight), maxShedFraction);
+            pressureEvents.increment();
+            shedObjects.add(reclaim.objects());
+            reclaimedBytes.add(reclaim.bytes());
+            logger.warning("[Cache] Heap at %.1f%% after collection, shed %d objects of %d caches (~%.1fMB of %.1fMB over the low watermark)."
+                    .formatted(usage * 100, reclaim.objects(), reclaim.caches(), reclaim.bytes() / 1048576D, excess / 1048576D));
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "[Cache] Failed to shed objects under heap pressure", e);
+        }
+    }
+
+    /**
+     * What shedding objects once reclaimed.
+     *
+     * @param caches  the caches which shed objects
+     * @param objects the objects shed
+     * @param bytes   the estimated heap freed
+     */
+    public record Reclaim(int caches, long objects, long bytes) {
+    }
+
+    /**
+     * Configures a {@link HeapPressureMonitor}.
+     */
+    public static final class Builder {
+        private final Map<Class<?>, Double> weights = new ConcurrentHashMap<>();
+        private double highWatermark = 0.85;
+        private double lowWatermark = 0.70;
+        private double maxShedFraction = 0.5;
+        private double defaultWeight = 1;
+        private Duration minInterval = Duration.ofSeconds(5);
+        private Logger logger = Logger.getLogger(HeapPressureMonitor.class.getName());
+
+        private Builder() {
+        }
+
+        /**
+         * Sets how full a heap pool may be after a collection before objects are shed, and how full it should be after,
+         * 0.85 and 0.70 by default.
+         */
+        public Builder watermarks(double high, double low) {
+            if (!(high > 0 && high < 1)) throw new IllegalArgumentException("The high watermark must be between 0 and 1");
+            if (!(low > 0 && low < high)) throw new IllegalArgumentException("The low watermark must be between 0 and the high watermark");
+            this.highWatermark = high;
+            this.lowWatermark = low;
+            return this;
+        }
+
+        /**
+         * Sets the weight of a class, its cache sheds in proportion to its heap use times its weight.
+         * Classes default to 1, a weight of 0 never sheds the class.
+         */
+        public Builder weight(@NotNull Class<?> clazz, double weight) {
+            if (weight < 0) throw new IllegalArgumentException("Negative weight: " + weight);
+            weights.put(clazz, weight);
+            return this;
+        }
+
+        /**
+         * Sets the weight of classes without their own, 1 by default.
+         */
+        public Builder defaultWeight(double weight) {
+            if (weight < 0) throw new IllegalArgumentException("Negative weight: " + weight);
+            this.defaultWeight = weight;
+            return this;
+        }
+
+        /**
+         * Sets the largest share of a cache's local objects shed at once, 0.5 by default.
+         */
+        public Builder maxShedFraction(double fraction) {
+            if (!(fraction > 0 && fraction <= 1)) throw new IllegalArgumentException("The fraction must be between 0 and 1");
+            this.maxShedFraction = fraction;
+            return this;
+        }
+
+        /**
+         * Sets the least time between shedding objects, 5 seconds by default.
+         * Shed objects are only freed by the next collection, until then the heap still looks full.
+         */
+        public Builder minInterval(@NotNull Duration minInterval) {
+            this.minInterval = minInterval;
+            return this;
+        }
+
+        public Builder logger(@NotNull Logger logger) {
+            this.logger = logger;
+            return this;
+        }
+
+        public @NotNull HeapPressureMonitor build() {
+            return new HeapPressureMonitor(this);
+        }
+    }
+}
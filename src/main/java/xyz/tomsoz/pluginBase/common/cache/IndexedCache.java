@@ -0,0 +1,204 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the {@link CacheIndex}es of a cache registered through {@link BaseCacheAccess} up to date.
+ * <p>
+ * Every add, invalidation and read of an object updates its index entries, and lookups check every
+ * match against the cache, dropping entries of objects which left it or changed their key.
+ * Objects evicted from the store on this server, such as the {@link MemoryCache} of a {@link NearCache}
+ * or the slabs of an {@link OffHeapCache}, are unindexed right away.
+ * </p>
+ *
+ * @param <T> the type of cached object
+ */
+final class IndexedCache<T> implements Cache<T> {
+    private final Cache<T> delegate;
+    private final List<CacheIndex<T, ?>> indexes = new CopyOnWriteArrayList<>();
+    private volatile @Nullable Function<? super T, UUID> keyMapper;
+
+    IndexedCache(@NotNull Cache<T> delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Adds indexes, indexing the objects already in the cache.
+     *
+     * @param keyMapper returns the key of an object
+     */
+    synchronized void register(@NotNull Function<? super T, UUID> keyMapper, @NotNull Collection<CacheIndex<T, ?>> added) {
+        if (this.keyMapper == null) unindexEvictions(delegate);
+        this.keyMapper = keyMapper;
+
+        for (CacheIndex<T, ?> index : added) {
+            for (CacheIndex<T, ?> existing : indexes) {
+                if (existing.getName().equals(index.getName())) {
+                    throw new IllegalArgumentException("An index named '%s' is already registered".formatted(index.getName()));
+                }
+            }
+            delegate.forEach(obj -> index.index(keyMapper.apply(obj), obj));
+            indexes.add(index);
+        }
+    }
+
+    /**
+     * Listens for evictions from the store on this server beneath the cache, the same one {@link MeteredCache#localCache()} finds.
+     */
+    private void unindexEvictions(Cache<T> cache) {
+        if (cache instanceof MemoryCache<T> memoryCache) {
+            memoryCache.addRemovalListener((key, value, cause) -> {
+                if (cause.wasEvicted()) unindex(key);
+            });
+        } else if (cache instanceof NearCache<T> nearCache) {
+            unindexEvictions(nearCache.getLocal());
+        } else if (cache instanceof OffHeapCache<T> offHeapCache) {
+            // the hot set only drops decoded copies, objects leave once their slab is recycled
+            offHeapCache.addEvictionListener(this::unindex);
+        } else if (cache instanceof DataBackedCache<T> dataBacked) {
+            unindexEvictions(dataBacked.getCache());
+        }
+    }
+
+    /**
+     * Returns the cached objects indexed under a key.
+     *
+     * @throws IllegalArgumentException if there is no index of that name
+     */
+    @NotNull List<T> find(@NotNull String name, @Nullable Object key) {
+        CacheIndex<T, ?> index = index(name);
+        List<T> result = new ArrayList<>();
+        for (UUID uuid : index.lookup(key)) {
+            T obj = delegate.get(uuid);
+            if (obj == null) {
+                unindex(uuid);
+            } else if (!index.matches(obj, key)) {
+                reindex(uuid, obj);
+            } else {
+                result.add(obj);
+            }
+        }
+        return result;
+    }
+
+    @NotNull CacheIndex<T, ?> index(@NotNull String name) {
+        for (CacheIndex<T, ?> index : indexes) {
+            if (index.getName().equals(name)) return index;
+        }
+        throw new IllegalArgumentException("No index named '%s' is registered".formatted(name));
+    }
+
+    @Override
+    public void add(@Nullable T obj) {
+        delegate.add(obj);
+        if (obj != null) reindex(obj);
+    }
+
+    @Override
+    public @Nullable T get(UUID uuid) {
+        T obj = delegate.get(uuid);
+        // objects may also enter the cache through loads and other servers
+        if (obj != null) reindex(uuid, obj);
+        return obj;
+    }
+
+    @Override
+    public void invalidate(@NotNull UUID uuid) {
+        delegate.invalidate(uuid);
+        unindex(uuid);
+    }
+
+    @Override
+    public void invalidate(@NotNull T obj) {
+        delegate.invalidate(obj);
+        Function<? super T, UUID> keyMapper = this.keyMapper;
+        if (keyMapper != null) unindex(keyMapper.apply(obj));
+    }
+
+    @Override
+    public @NotNull List<T> getAll() {
+        return delegate.getAll();
+    }
+
+    @Override
+    public @NotNull Spliterator<T> spliterator() {
+        return delegate.spliterator();
+    }
+
+    @Override
+    public @NotNull Stream<T> stream() {
+        return delegate.stream();
+    }
+
+    @Override
+    public @NotNull CachePage<T> page(@Nullable String cursor, int limit) {
+        return delegate.page(cursor, limit);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public @NotNull Map<UUID, T> getAll(@NotNull Collection<UUID> uuids) {
+        Map<UUID, T> result = delegate.getAll(uuids);
+        if (!indexes.isEmpty()) result.forEach(this::reindex);
+        return result;
+    }
+
+    @Override
+    public void addAll(@NotNull Collection<? extends T> objs) {
+        delegate.addAll(objs);
+        if (indexes.isEmpty()) return;
+
+        for (T obj : objs) {
+            if (obj != null) reindex(obj);
+        }
+    }
+
+    @Override
+    public void invalidateAll(@NotNull Collection<UUID> uuids) {
+        delegate.invalidateAll(uuids);
+        if (indexes.isEmpty()) return;
+
+        for (UUID uuid : uuids) unindex(uuid);
+    }
+
+    @Override
+    public @Nullable T computeIfAbsent(@NotNull UUID uuid, @NotNull Function<? super UUID, ? extends T> loader) {
+        T obj = delegate.computeIfAbsent(uuid, loader);
+        if (obj != null) reindex(uuid, obj);
+        return obj;
+    }
+
+    /**
+     * Indexes an object which entered the cache without passing through this one.
+     */
+    void loaded(@NotNull UUID uuid, @NotNull T obj) {
+        reindex(uuid, obj);
+    }
+
+    void loaded(@NotNull T obj) {
+        reindex(obj);
+    }
+
+    private void reindex(T obj) {
+        Function<? super T, UUID> keyMapper = this.keyMapper;
+        if (keyMapper != null) reindex(keyMapper.apply(obj), obj);
+    }
+
+    private void reindex(UUID uuid, T obj) {
+        for (CacheIndex<T, ?> index : indexes) index.index(uuid, obj);
+    }
+
+    private void unindex(UUID uuid) {
+        for (CacheIndex<T, ?> index : indexes) index.unindex(uuid);
+    }
+}
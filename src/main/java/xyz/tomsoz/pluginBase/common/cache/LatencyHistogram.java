@@ -0,0 +1,88 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of durations in power of two buckets, bucket {@code i} counting durations below {@code 2^i} nanoseconds.
+ * <p>
+ * Recording is a single striped increment, so it may be called on every cache operation.
+ * Percentiles are reported as the upper bound of their bucket, so they are accurate to a factor of two.
+ * </p>
+ */
+public final class LatencyHistogram {
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder total = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder();
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos))].increment();
+        total.add(nanos);
+    }
+
+    /**
+     * Returns the recorded durations so far.
+     */
+    public @NotNull Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+
+        long mean = count == 0 ? 0 : total.sum() / count;
+        return new Snapshot(count, mean, percentile(counts, count, 0.5), percentile(counts, count, 0.99), percentile(counts, count, 1));
+    }
+
+    private static long percentile(long[] counts, long count, double percentile) {
+        if (count == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(count * percentile));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return i == 0 ? 0 : i >= 63 ? Long.MAX_VALUE : 1L << i;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * The recorded durations at one point in time, in nanoseconds.
+     *
+     * @param count the amount of recorded durations
+     * @param mean  the mean duration
+     * @param p50   the upper bound of the median
+     * @param p99   the upper bound of the 99th percentile
+     * @param max   the upper bound of the longest duration
+     */
+    public record Snapshot(long count, long mean, long p50, long p99, long max) {
+        /**
+         * Formats a duration in nanoseconds with the most readable unit.
+         */
+        public static @NotNull String format(long nanos) {
+            if (nanos < 1_000) return nanos + "ns";
+            if (nanos < 1_000_000) return "%.1fus".formatted(nanos / 1_000D);
+            if (nanos < 1_000_000_000) return "%.1fms".formatted(nanos / 1_000_000D);
+            return "%.2fs".formatted(nanos / 1_000_000_000D);
+        }
+
+        @Override
+        public @NotNull String toString() {
+            if (count == 0) return "none";
+            return "p50 %s, p99 %s".formatted(format(p50), format(p99));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Maps the values of a spliterator to cached objects, skipping values mapped to null, and splits like it.
+ *
+ * @param <V> the type of value
+ * @param <T> the type of cached object
+ */
+final class MappingSpliterator<V, T> implements Spliterator<T> {
+    private final Spliterator<V> source;
+    private final Function<? super V, ? extends T> mapper;
+    private final Consumer<V> sink = this::map;
+    private @Nullable T next;
+
+    /**
+     * @param mapper returns the object of a value, or null to skip it
+     */
+    MappingSpliterator(@NotNull Spliterator<V> source, @NotNull Function<? super V, ? extends T> mapper) {
+        this.source = source;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        while (source.tryAdvance(sink)) {
+            T value = next;
+            if (value == null) continue;
+
+            next = null;
+            action.accept(value);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        source.forEachRemaining(value -> {
+            T mapped = mapper.apply(value);
+            if (mapped != null) action.accept(mapped);
+        });
+    }
+
+    private void map(V value) {
+        next = mapper.apply(value);
+    }
+
+    @Override
+    public @Nullable Spliterator<T> trySplit() {
+        Spliterator<V> prefix = source.trySplit();
+        return prefix != null ? new MappingSpliterator<>(prefix, mapper) : null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return source.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+        // skipped values make the size an estimate
+        return source.characteristics() & (NONNULL | CONCURRENT | DISTINCT);
+    }
+}
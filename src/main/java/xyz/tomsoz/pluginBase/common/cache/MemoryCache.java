@@ -0,0 +1,944 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import xyz.tomsoz.pluginBase.common.Tasks;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * A bounded in-memory {@link Cache}, keyed by the {@link UUID} of each object.
+ * <p>
+ * Entries are evicted with W-TinyLFU: new entries enter a small LRU window (1% of the bound),
+ * entries leaving the window are only admitted into the main segmented LRU if they were used more
+ * often recently than the entry they would replace, as estimated by a {@link FrequencySketch}.
+ * This keeps frequently used entries, such as online players, while one-off lookups pass through.
+ * </p>
+ * <p>
+ * Reads never lock, they are recorded in a lossy {@link ReadBuffer} which is replayed against
+ * the eviction policy in batches. Writes and invalidations take a lock.
+ * Entries are stored in a {@link UuidMap}, and neither the map nor the entries retain a {@link UUID} object,
+ * keys are kept as their two halves.
+ * </p>
+ * <p>
+ * Objects may expire a fixed time after their last access or write, or after a time chosen per object
+ * by an {@link Expiry}, which are tracked in a {@link TimingWheel}. A single task on {@link Tasks#getLoopDeLoop()}
+ * removes expired objects every {@link Builder#expiryResolution(Duration) resolution}, notifying the removal listener,
+ * rather than waiting for the next write.
+ * </p>
+ * <pre>
+ * registerCache(Profile.class, broker,
+ *         () -&gt; MemoryCache.builder(Profile::getUniqueId)
+ *                 .maximumSize(10_000)
+ *                 .expireAfterAccess(Duration.ofMinutes(30))
+ *                 .build(),
+ *         () -&gt; RedisCache.create(redisson, "profiles", codec, Profile::getUniqueId));
+ * </pre>
+ *
+ * @param <T> the type of cached object
+ */
+@SuppressWarnings("unused")
+public final class MemoryCache<T> implements Cache<T> {
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int DEAD = 3;
+
+    /**
+     * Above this estimated frequency a candidate is occasionally admitted even though it is not used
+     * more than the victim, so that a flood of colliding keys can not pin the victim in place.
+     */
+    private static final int ADMIT_THRESHOLD = 6;
+
+    private static final long NEVER = 0;
+    private static final long USE_EXPIRY = -1;
+    private static final Duration MAXIMUM_TTL = Duration.ofDays(365L * 100);
+
+    private final Function<? super T, UUID> keyMapper;
+    private final long maximum;
+    private final @Nullable ToIntFunction<? super T> weigher;
+    private final long expireAfterAccessNanos;
+    private final long expireAfterWriteNanos;
+    private final @Nullable Expiry<? super T> expiry;
+    private final boolean expiring;
+    private volatile @Nullable RemovalListener<? super T> removalListener;
+
+    private final UuidMap<Node<T>> data = new UuidMap<>();
+    private final ReadBuffer<Node<T>> readBuffer = new ReadBuffer<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final SingleFlight<T> flights = new SingleFlight<>();
+
+    // guarded by the eviction lock
+    private final @Nullable FrequencySketch sketch;
+    private final LinkedDeque<T> window = new LinkedDeque<>(false);
+    private final LinkedDeque<T> probation = new LinkedDeque<>(false);
+    private final LinkedDeque<T> protectedDeque = new LinkedDeque<>(false);
+    private final LinkedDeque<T> writeOrder = new LinkedDeque<>(true);
+    private final @Nullable TimingWheel<Node<T>> wheel;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private long windowWeight;
+    private long protectedWeight;
+    private long totalWeight;
+    private List<Removal<T>> removals = new ArrayList<>();
+    // written under the eviction lock, read without it
+    private volatile long evictionCount;
+
+    private MemoryCache(Builder<T> builder) {
+        this.keyMapper = builder.keyMapper;
+        this.maximum = builder.maximum;
+        this.weigher = builder.weigher;
+        this.expireAfterAccessNanos = builder.expireAfterAccess;
+        this.expireAfterWriteNanos = builder.expireAfterWrite;
+        this.expiry = builder.expiry;
+        this.expiring = expireAfterAccessNanos > 0 || expireAfterWriteNanos > 0 || expiry != null;
+        this.removalListener = builder.removalListener;
+        this.wheel = expiry != null ? new TimingWheel<>(builder.expiryResolution, System.nanoTime()) : null;
+
+        if (maximum >= 0) {
+            this.windowMaximum = maximum - (long) (maximum * 0.99D);
+            this.protectedMaximum = (long) ((maximum - windowMaximum) * 0.8D);
+            this.sketch = new FrequencySketch(weigher == null ? maximum : Math.min(maximum, 1 << 20));
+        } else {
+            this.windowMaximum = Long.MAX_VALUE;
+            this.protectedMaximum = Long.MAX_VALUE;
+            this.sketch = null;
+        }
+
+        if (expiring) Ticker.start(this, builder.expiryResolution);
+    }
+
+    /**
+     * Creates a builder for a cache.
+     *
+     * @param keyMapper returns the key of an object, for example {@code Profile::getUniqueId}
+     */
+    public static <T> @NotNull Builder<T> builder(@NotNull Function<? super T, UUID> keyMapper) {
+        return new Builder<>(keyMapper);
+    }
+
+    @Override
+    public void add(@Nullable T obj) {
+        write(obj, USE_EXPIRY);
+    }
+
+    /**
+     * Adds an object which expires after the duration, instead of the duration chosen by the {@link Expiry}.
+     *
+     * @param ttl how long the object may stay cached, or null to keep it until it is evicted otherwise
+     * @throws IllegalStateException if the cache was not built with {@link Builder#expireAfter(Expiry)}
+     */
+    public void add(@Nullable T obj, @Nullable Duration ttl) {
+        if (wheel == null) throw new IllegalStateException("Expiry per object requires a cache built with expireAfter");
+        write(obj, ttl == null ? NEVER : ttlNanos(ttl));
+    }
+
+    private void write(@Nullable T obj, long ttl) {
+        if (obj == null) return;
+
+        UUID key = Objects.requireNonNull(keyMapper.apply(obj), "key");
+        int weight = weigh(obj);
+        long now = System.nanoTime();
+
+        List<Removal<T>> removed;
+        evictionLock.lock();
+        try {
+            drainReads();
+            write(key, obj, weight, now, false, ttl);
+            maintain(now);
+        } finally {
+            removed = takeRemovals();
+            evictionLock.unlock();
+        }
+        notifyRemovals(removed);
+    }
+
+    /**
+     * Adds every object while taking the lock once.
+     */
+    @Override
+    public void addAll(@NotNull Collection<? extends T> objs) {
+        List<T> values = new ArrayList<>(objs.size());
+        List<UUID> keys = new ArrayList<>(objs.size());
+        int[] weights = new int[objs.size()];
+        for (T obj : objs) {
+            if (obj == null) continue;
+            weights[values.size()] = weigh(obj);
+            keys.add(Objects.requireNonNull(keyMapper.apply(obj), "key"));
+            values.add(obj);
+        }
+        if (values.isEmpty()) return;
+
+        long now = System.nanoTime();
+        List<Removal<T>> removed;
+        evictionLock.lock();
+        try {
+            drainReads();
+            for (int i = 0; i < values.size(); i++) {
+                write(keys.get(i), values.get(i), weights[i], now, false, USE_EXPIRY);
+            }
+            maintain(now);
+        } finally {
+            removed = takeRemovals();
+            evictionLock.unlock();
+        }
+        notifyRemovals(removed);
+    }
+
+    /**
+     * Loads a missing object outside the lock, if another object was added for the key meanwhile that one is kept and returned.
+     * Concurrent calls for the same missing key share a single load.
+     */
+    @Override
+    public @Nullable T computeIfAbsent(@NotNull UUID uuid, @NotNull Function<? super UUID, ? extends T> loader) {
+        T value = get(uuid);
+        if (value != null) return value;
+        return flights.loadNow(uuid, key -> addIfAbsent(loader.apply(key)));
+    }
+
+    /**
+     * Returns the amount of {@link #computeIfAbsent} calls which shared a load in flight instead of starting their own.
+     */
+    public long deduplicatedLoads() {
+        return flights.deduplicated();
+    }
+
+    /**
+     * Adds an object unless another one is cached under its key.
+     *
+     * @return the cached object, the added one or the one which was kept
+     */
+    @Nullable T addIfAbsent(@Nullable T value) {
+        if (value == null) return null;
+
+        UUID key = Objects.requireNonNull(keyMapper.apply(value), "key");
+        int weight = weigh(value);
+        long now = System.nanoTime();
+
+        T result;
+        List<Removal<T>> removed;
+        evictionLock.lock();
+        try {
+            drainReads();
+            result = write(key, value, weight, now, true, USE_EXPIRY);
+            maintain(now);
+        } finally {
+            removed = takeRemovals();
+            evictionLock.unlock();
+        }
+        notifyRemovals(removed);
+        return result;
+    }
+
+    /**
+     * Inserts or replaces the node of a key, guarded by the eviction lock.
+     *
+     * @param onlyIfAbsent whether to keep an existing, unexpired object
+     * @param ttl          the nanoseconds until the object expires, {@link #NEVER} or {@link #USE_EXPIRY}
+     * @return the object now associated with the key
+     */
+    private T write(UUID key, T obj, int weight, long now, boolean onlyIfAbsent, long ttl) {
+        Node<T> existing = data.get(key);
+        if (existing != null) {
+            if (onlyIfAbsent && !isExpired(existing, now)) {
+                onAccess(existing);
+                return existing.value;
+            }
+
+            T previous = existing.value;
+            existing.value = obj;
+            existing.accessTime = now;
+            existing.writeTime = now;
+            reweigh(existing, weight);
+            onAccess(existing);
+            if (expireAfterWriteNanos > 0) writeOrder.moveToBack(existing);
+            if (wheel != null) scheduleExpiry(existing, now, ttl);
+            if (previous != obj) removed(key, previous, RemovalCause.REPLACED);
+        } else {
+            Node<T> node = new Node<>(key, obj, weight, now);
+            data.put(key, node);
+            window.addLast(node);
+            windowWeight += weight;
+            totalWeight += weight;
+            if (expireAfterWriteNanos > 0) writeOrder.addLast(node);
+            if (wheel != null) scheduleExpiry(node, now, ttl);
+            if (sketch != null) sketch.increment(key.hashCode());
+        }
+        return obj;
+    }
+
+    @Override
+    public @Nullable T get(UUID uuid) {
+        Node<T> node = data.get(uuid);
+        if (node == null) return null;
+
+        long now = expiring ? System.nanoTime() : 0L;
+        if (expiring && isExpired(node, now)) {
+            tryMaintain();
+            return null;
+        }
+
+        T value = node.value;
+        if (expireAfterAccessNanos > 0) node.accessTime = now;
+        if ((sketch != null || expireAfterAccessNanos > 0) && readBuffer.offer(node)) tryMaintain();
+        return value;
+    }
+
+    @Override
+    public void invalidate(@NotNull UUID uuid) {
+        List<Removal<T>> removed;
+        evictionLock.lock();
+        try {
+            Node<T> node = data.remove(uuid);
+            if (node != null) {
+                unlink(node);
+                removed(uuid, node.value, RemovalCause.EXPLICIT);
+            }
+        } finally {
+            removed = takeRemovals();
+            evictionLock.unlock();
+        }
+        notifyRemovals(removed);
+    }
+
+    @Override
+    public void invalidate(@NotNull T obj) {
+        invalidate(keyMapper.apply(obj));
+    }
+
+    /**
+     * Removes the objects of every key while taking the lock once.
+     */
+    @Override
+    public void invalidateAll(@NotNull Collection<UUID> uuids) {
+        if (uuids.isEmpty()) return;
+
+        List<Removal<T>> removed;
+        evictionLock.lock();
+        try {
+            for (UUID uuid : uuids) {
+                Node<T> node = data.remove(uuid);
+                if (node != null) {
+                    unlink(node);
+                    removed(uuid, node.value, RemovalCause.EXPLICIT);
+                }
+            }
+        } finally {
+            removed = takeRemovals();
+            evictionLock.unlock();
+        }
+        notifyRemovals(removed);
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public void invalidateAll() {
+        List<Removal<T>> removed;
+        evictionLock.lock();
+        try {
+            for (Node<T> node : data.values()) {
+                evict(node, RemovalCause.EXPLICIT);
+            }
+        } finally {
+            removed = takeRemovals();
+            evictionLock.unlock();
+        }
+        notifyRemovals(removed);
+    }
+
+    /**
+     * Returns every cached object which has not expired, in no particular order.
+     */
+    @Override
+    public @NotNull List<T> getAll() {
+        long now = System.nanoTime();
+        List<T> result = new ArrayList<>(data.size());
+        data.forEachValue(node -> {
+            if (!isExpired(node, now)) result.add(node.value);
+        });
+        return result;
+    }
+
+    /**
+     * Returns a spliterator of the cached objects which have not expired, walking the table in place.
+     */
+    @Override
+    public @NotNull Spliterator<T> spliterator() {
+        long now = System.nanoTime();
+        return new MappingSpliterator<>(data.spliterator(), node -> isExpired(node, now) ? null : node.value);
+    }
+
+    @Override
+    public @NotNull CachePage<T> page(@Nullable String cursor, int limit) {
+        long now = System.nanoTime();
+        return CachePage.of(data, cursor, limit, node -> isExpired(node, now) ? null : node.value);
+    }
+
+    /**
+     * Returns the amount of cached objects, including any which expired but were not yet removed.
+     */
+    @Override
+    public int size() {
+        return data.size();
+    }
+
+    /**
+     * Returns the summed weight of every cached object, or the amount of objects without a weigher.
+     */
+    public long weightedSize() {
+        evictionLock.lock();
+        try {
+            return totalWeight;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the amount of objects evicted for the size bound or expiry since the cache was created.
+     */
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Evicts up to an amount of the coldest objects, those least likely to be used again first:
+     * the probation segment from its least recently used end, then the window, then the protected segment.
+     *
+     * @return the amount of objects evicted
+     */
+    public int shed(int count) {
+        if (count <= 0) return 0;
+
+        int shed = 0;
+        List<Removal<T>> removed;
+        evictionLock.lock();
+        try {
+            drainReads();
+            for (LinkedDeque<T> deque : List.of(probation, window, protectedDeque)) {
+                Node<T> node;
+                while (shed < count && (node = deque.peekFirst()) != null) {
+                    evict(node, RemovalCause.PRESSURE);
+                    shed++;
+                }
+            }
+        } finally {
+            removed = takeRemovals();
+            evictionLock.unlock();
+        }
+        notifyRemovals(removed);
+        return shed;
+    }
+
+    /**
+     * Replays pending reads and removes expired entries right away, rather than on the next write.
+     */
+    public void cleanUp() {
+        List<Removal<T>> removed;
+        evictionLock.lock();
+        try {
+            maintain(System.nanoTime());
+        } finally {
+            removed = takeRemovals();
+            evictionLock.unlock();
+        }
+        notifyRemovals(removed);
+    }
+
+    private void tryMaintain() {
+        if (!evictionLock.tryLock()) return;
+
+        List<Removal<T>> removed;
+        try {
+            maintain(System.nanoTime());
+        } finally {
+            removed = takeRemovals();
+            evictionLock.unlock();
+        }
+        notifyRemovals(removed);
+    }
+
+    private int weigh(T obj) {
+        if (weigher == null) return 1;
+
+        int weight = weigher.applyAsInt(obj);
+        if (weight < 0) throw new IllegalArgumentException("Negative weight %s for %s".formatted(weight, obj));
+        return weight;
+    }
+
+    private boolean isExpired(Node<T> node, long now) {
+        return (expireAfterAccessNanos > 0 && now - node.accessTime >= expireAfterAccessNanos)
+                || (expireAfterWriteNanos > 0 && now - node.writeTime >= expireAfterWriteNanos)
+                || (node.expiresAt != NEVER && now - node.expiresAt >= 0);
+    }
+
+    private static long ttlNanos(Duration ttl) {
+        // saturated far below overflow, so adding it to the current time stays positive
+        long nanos = ttl.compareTo(MAXIMUM_TTL) >= 0 ? MAXIMUM_TTL.toNanos() : ttl.toNanos();
+        return Math.max(1, nanos);
+    }
+
+    // everything below is guarded by the eviction lock
+
+    private void maintain(long now) {
+        drainReads();
+        expire(now);
+        evictBySize();
+    }
+
+    private void drainReads() {
+        readBuffer.drainTo(node -> {
+            if (node.queue != DEAD) onAccess(node);
+        });
+    }
+
+    private void onAccess(Node<T> node) {
+        if (sketch != null) sketch.increment(node.hash());
+
+        switch (node.queue) {
+            case WINDOW -> window.moveToBack(node);
+            case PROBATION -> {
+                // a second use promotes the entry into the protected segment
+                probation.remove(node);
+                protectedDeque.addLast(node);
+                node.queue = PROTECTED;
+                protectedWeight += node.weight;
+                demoteProtected();
+            }
+            case PROTECTED -> protectedDeque.moveToBack(node);
+            default -> {
+            }
+        }
+    }
+
+    private void demoteProtected() {
+        while (protectedWeight > protectedMaximum) {
+            Node<T> demoted = protectedDeque.peekFirst();
+            if (demoted == null) return;
+
+            protectedDeque.remove(demoted);
+            protectedWeight -= demoted.weight;
+            probation.addLast(demoted);
+            demoted.queue = PROBATION;
+        }
+    }
+
+    private void reweigh(Node<T> node, int weight) {
+        int difference = weight - node.weight;
+        node.weight = weight;
+        totalWeight += difference;
+        if (node.queue == WINDOW) windowWeight += difference;
+        else if (node.queue == PROTECTED) protectedWeight += difference;
+    }
+
+    private void expire(long now) {
+        if (wheel != null) wheel.advance(now, node -> evict(node, RemovalCause.EXPIRED));
+        if (expireAfterAccessNanos > 0) {
+            for (LinkedDeque<T> deque : List.of(window, probation, protectedDeque)) {
+                Node<T> node;
+                while ((node = deque.peekFirst()) != null && isExpired(node, now)) {
+                    evict(node, RemovalCause.EXPIRED);
+                }
+            }
+        }
+        if (expireAfterWriteNanos > 0) {
+            Node<T> node;
+            while ((node = writeOrder.peekFirst()) != null && isExpired(node, now)) {
+                evict(node, RemovalCause.EXPIRED);
+            }
+        }
+    }
+
+    private void evictBySize() {
+        if (maximum < 0) return;
+
+        // entries leaving the window become candidates at the back of probation
+        int candidates = 0;
+        while (windowWeight > windowMaximum) {
+            Node<T> node = window.peekFirst();
+            if (node == null) break;
+
+            window.remove(node);
+            windowWeight -= node.weight;
+            probation.addLast(node);
+            node.queue = PROBATION;
+            candidates++;
+        }
+
+        while (totalWeight > maximum) {
+            candidates = Math.min(candidates, probation.size);
+            Node<T> victim = probation.peekFirst();
+            Node<T> candidate = candidates > 0 ? probation.peekLast() : null;
+
+            if (victim == null) {
+                Node<T> fallback = protectedDeque.peekFirst();
+                if (fallback == null) fallback = window.peekFirst();
+                if (fallback == null) return;
+                evict(fallback, RemovalCause.SIZE);
+            } else if (candidate == null || candidate == victim) {
+                evict(victim, RemovalCause.SIZE);
+            } else if (admit(candidate, victim)) {
+                evict(victim, RemovalCause.SIZE);
+            } else {
+                evict(candidate, RemovalCause.SIZE);
+                candidates--;
+            }
+        }
+    }
+
+    private boolean admit(Node<T> candidate, Node<T> victim) {
+        int candidateFrequency = sketch.frequency(candidate.hash());
+        int victimFrequency = sketch.frequency(victim.hash());
+        if (candidateFrequency > victimFrequency) return true;
+        return candidateFrequency >= ADMIT_THRESHOLD && (ThreadLocalRandom.current().nextInt() & 127) == 0;
+    }
+
+    private void evict(Node<T> node, RemovalCause cause) {
+        UUID key = node.key();
+        data.remove(key, node);
+        unlink(node);
+        removed(key, node.value, cause);
+    }
+
+    private void unlink(Node<T> node) {
+        switch (node.queue) {
+            case WINDOW -> {
+                window.remove(node);
+                windowWeight -= node.weight;
+            }
+            case PROBATION -> probation.remove(node);
+            case PROTECTED -> {
+                protectedDeque.remove(node);
+                protectedWeight -= node.weight;
+            }
+            default -> {
+                return;
+            }
+        }
+        if (expireAfterWriteNanos > 0) writeOrder.remove(node);
+        if (wheel != null) wheel.cancel(node);
+        totalWeight -= node.weight;
+        node.queue = DEAD;
+    }
+
+    private void removed(UUID key, T value, RemovalCause cause) {
+        // shed objects are counted apart, by the metrics of the cache which shed them
+        if (cause == RemovalCause.SIZE || cause == RemovalCause.EXPIRED) evictionCount++;
+        if (removalListener != null) removals.add(new Removal<>(key, value, cause));
+    }
+
+    private List<Removal<T>> takeRemovals() {
+        if (removals.isEmpty()) return List.of();
+
+        List<Removal<T>> taken = removals;
+        removals = new ArrayList<>();
+        return taken;
+    }
+
+    private void notifyRemovals(List<Removal<T>> removed) {
+        RemovalListener<? super T> listener = removalListener;
+        if (listener == null) return;
+        for (Removal<T> removal : removed) {
+            listener.onRemoval(removal.key, removal.value, removal.cause);
+        }
+    }
+
+    /**
+     * Adds a listener after the configured one, for the caches wrapping this one.
+     */
+    void addRemovalListener(@NotNull RemovalListener<? super T> listener) {
+        evictionLock.lock();
+        try {
+            RemovalListener<? super T> current = removalListener;
+            removalListener = current == null ? listener : (RemovalListener<T>) (key, value, cause) -> {
+                current.onRemoval(key, value, cause);
+                listener.onRemoval(key, value, cause);
+            };
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Sets when an object expires and schedules its timer, guarded by the eviction lock.
+     */
+    private void scheduleExpiry(Node<T> node, long now, long ttl) {
+        if (ttl == USE_EXPIRY) {
+            Duration duration = expiry.expireAfterWrite(node.key(), node.value);
+            ttl = duration == null ? NEVER : ttlNanos(duration);
+        }
+        if (ttl == NEVER) {
+            node.expiresAt = NEVER;
+            wheel.cancel(node);
+            return;
+        }
+
+        long expiresAt = now + ttl;
+        node.expiresAt = expiresAt == NEVER ? 1 : expiresAt;
+        wheel.schedule(node, node.expiresAt);
+    }
+
+    private record Removal<T>(UUID key, T value, RemovalCause cause) {
+    }
+
+    /**
+     * Removes expired objects on time, a single task per cache however many objects expire.
+     * It holds the cache weakly, so a cache which is no longer used is still collected and its task stops.
+     */
+    private static final class Ticker implements Runnable {
+        private final WeakReference<MemoryCache<?>> cache;
+        private volatile @Nullable ScheduledFuture<?> future;
+
+        private Ticker(MemoryCache<?> cache) {
+            this.cache = new WeakReference<>(cache);
+        }
+
+        private static void start(MemoryCache<?> cache, long periodNanos) {
+            Ticker ticker = new Ticker(cache);
+            ticker.future = Tasks.getLoopDeLoop().scheduleAtFixedRate(ticker, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void run() {
+            MemoryCache<?> cache = this.cache.get();
+            if (cache == null) {
+                ScheduledFuture<?> future = this.future;
+                if (future != null) future.cancel(false);
+                return;
+            }
+
+            try {
+                cache.tryMaintain();
+            } catch (RuntimeException e) {
+                // a failing removal listener must not stop expiry for good
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+
+    /**
+     * An entry, keeping its key as the two halves so no {@link UUID} is retained per entry.
+     */
+    private static final class Node<T> extends TimingWheel.Timer {
+        private final long mostSignificantBits;
+        private final long leastSignificantBits;
+        private volatile T value;
+        private volatile long accessTime;
+        private volatile long writeTime;
+        /**
+         * When the object expires by its {@link Expiry}, or {@link #NEVER}.
+         */
+        private volatile long expiresAt = NEVER;
+
+        // guarded by the eviction lock
+        private int weight;
+        private int queue = WINDOW;
+        private @Nullable Node<T> previous;
+        private @Nullable Node<T> next;
+        private @Nullable Node<T> previousWrite;
+        private @Nullable Node<T> nextWrite;
+
+        private Node(UUID key, T value, int weight, long now) {
+            this.mostSignificantBits = key.getMostSignificantBits();
+            this.leastSignificantBits = key.getLeastSignificantBits();
+            this.value = value;
+            this.weight = weight;
+            this.accessTime = now;
+            this.writeTime = now;
+        }
+
+        private UUID key() {
+            return new UUID(mostSignificantBits, leastSignificantBits);
+        }
+
+        /**
+         * Returns the hash code of the key, the same as {@link UUID#hashCode()}.
+         */
+        private int hash() {
+            return Long.hashCode(mostSignificantBits ^ leastSignificantBits);
+        }
+    }
+
+    /**
+     * A doubly linked list threaded through the nodes themselves, either in access or in write order.
+     */
+    private static final class LinkedDeque<T> {
+        private final boolean writeOrder;
+        private @Nullable Node<T> first;
+        private @Nullable Node<T> last;
+        private int size;
+
+        private LinkedDeque(boolean writeOrder) {
+            this.writeOrder = writeOrder;
+        }
+
+        private @Nullable Node<T> peekFirst() {
+            return first;
+        }
+
+        private @Nullable Node<T> peekLast() {
+            return last;
+        }
+
+        private void addLast(Node<T> node) {
+            setPrevious(node, last);
+            setNext(node, null);
+            if (last == null) first = node;
+            else setNext(last, node);
+            last = node;
+            size++;
+        }
+
+        private void remove(Node<T> node) {
+            Node<T> previous = getPrevious(node);
+            Node<T> next = getNext(node);
+            if (previous == null) {
+                if (first != node) return;
+                first = next;
+            } else {
+                setNext(previous, next);
+            }
+            if (next == null) last = previous;
+            else setPrevious(next, previous);
+
+            setPrevious(node, null);
+            setNext(node, null);
+            size--;
+        }
+
+        private void moveToBack(Node<T> node) {
+            if (last == node) return;
+            remove(node);
+            addLast(node);
+        }
+
+        private @Nullable Node<T> getPrevious(Node<T> node) {
+            return writeOrder ? node.previousWrite : node.previous;
+        }
+
+        private @Nullable Node<T> getNext(Node<T> node) {
+            return writeOrder ? node.nextWrite : node.next;
+        }
+
+        private void setPrevious(Node<T> node, @Nullable Node<T> previous) {
+            if (writeOrder) node.previousWrite = previous;
+            else node.previous = previous;
+        }
+
+        private void setNext(Node<T> node, @Nullable Node<T> next) {
+            if (writeOrder) node.nextWrite = next;
+            else node.next = next;
+        }
+    }
+
+    /**
+     * Configures a {@link MemoryCache}, every bound is optional.
+     *
+     * @param <T> the type of cached object
+     */
+    public static final class Builder<T> {
+        private final Function<? super T, UUID> keyMapper;
+        private long maximum = -1;
+        private @Nullable ToIntFunction<? super T> weigher;
+        private long expireAfterAccess;
+        private long expireAfterWrite;
+        private @Nullable Expiry<? super T> expiry;
+        private long expiryResolution = TimeUnit.SECONDS.toNanos(1);
+        private @Nullable RemovalListener<? super T> removalListener;
+
+        private Builder(Function<? super T, UUID> keyMapper) {
+            this.keyMapper = keyMapper;
+        }
+
+        /**
+         * Bounds the cache to an amount of objects.
+         */
+        public Builder<T> maximumSize(long maximumSize) {
+            if (maximumSize < 0) throw new IllegalArgumentException("Negative maximum size: " + maximumSize);
+            if (weigher != null) throw new IllegalStateException("A maximum weight was already set");
+            this.maximum = maximumSize;
+            return this;
+        }
+
+        /**
+         * Bounds the cache to a summed weight of its objects.
+         *
+         * @param maximumWeight the maximum summed weight
+         * @param weigher       returns the weight of an object, for example its approximate size in bytes
+         */
+        public Builder<T> maximumWeight(long maximumWeight, @NotNull ToIntFunction<? super T> weigher) {
+            if (maximumWeight < 0) throw new IllegalArgumentException("Negative maximum weight: " + maximumWeight);
+            this.maximum = maximumWeight;
+            this.weigher = weigher;
+            return this;
+        }
+
+        /**
+         * Expires objects which were not read or written for the duration.
+         */
+        public Builder<T> expireAfterAccess(@NotNull Duration duration) {
+            this.expireAfterAccess = positive(duration);
+            return this;
+        }
+
+        /**
+         * Expires objects the duration after they were last written.
+         */
+        public Builder<T> expireAfterWrite(@NotNull Duration duration) {
+            this.expireAfterWrite = positive(duration);
+            return this;
+        }
+
+        /**
+         * Expires every object after a duration chosen for it when it is added or replaced.
+         * Objects may also be added with their own duration, see {@link MemoryCache#add(Object, Duration)}.
+         */
+        public Builder<T> expireAfter(@NotNull Expiry<? super T> expiry) {
+            this.expiry = expiry;
+            return this;
+        }
+
+        /**
+         * Sets how often expired objects are removed, 1 second by default. Objects expire at most this late,
+         * though reads never return an expired object.
+         */
+        public Builder<T> expiryResolution(@NotNull Duration resolution) {
+            this.expiryResolution = positive(resolution);
+            return this;
+        }
+
+        /**
+         * Notifies the listener of every removed object.
+         */
+        public Builder<T> removalListener(@NotNull RemovalListener<? super T> removalListener) {
+            this.removalListener = removalListener;
+            return this;
+        }
+
+        public @NotNull MemoryCache<T> build() {
+            return new MemoryCache<>(this);
+        }
+
+        private static long positive(Duration duration) {
+            if (duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException("Expiry must be positive: " + duration);
+            }
+            return duration.toNanos();
+        }
+    }
+}
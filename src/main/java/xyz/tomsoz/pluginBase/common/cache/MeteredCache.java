@@ -0,0 +1,301 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Wraps every cache registered through {@link BaseCacheAccess}, counting its hits, misses and writes.
+ * <p>
+ * Counters are {@link LongAdder}s so concurrent callers do not contend on them. Evictions are read
+ * from the wrapped cache, and the memory use is estimated from a few recently added objects
+ * when a {@link #stats() snapshot} is taken.
+ * </p>
+ *
+ * @param <T> the type of cached object
+ */
+final class MeteredCache<T> implements Cache<T> {
+    /**
+     * The approximate heap used by an entry of a {@link MemoryCache} besides its object,
+     * its node, its key and its slot in the {@link UuidMap}.
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+    private static final int SAMPLES = 8;
+
+    private final String name;
+    private final Cache<T> delegate;
+    private final Cache<T> backing;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder shedObjects = new LongAdder();
+    private final LongAdder shedBytes = new LongAdder();
+    private final LatencyHistogram loadLatency = new LatencyHistogram();
+    private final LatencyHistogram putLatency = new LatencyHistogram();
+    private final AtomicReferenceArray<Object> samples = new AtomicReferenceArray<>(SAMPLES);
+
+    /**
+     * @param delegate the cache to forward calls to
+     * @param backing  the registered cache beneath any other wrappers, to read evictions and the local size from
+     */
+    MeteredCache(@NotNull String name, @NotNull Cache<T> delegate, @NotNull Cache<T> backing) {
+        this.name = name;
+        this.delegate = delegate;
+        this.backing = backing;
+    }
+
+    @Override
+    public void add(@Nullable T obj) {
+        long start = System.nanoTime();
+        delegate.add(obj);
+        putLatency.record(System.nanoTime() - start);
+        if (obj == null) return;
+
+        puts.increment();
+        sample(obj);
+    }
+
+    /**
+     * Returns the object of a key. A database backed cache loads a miss, blocking until loaded,
+     * which is counted as a miss and a load as by {@link #getAsync(DataBackedCache, UUID)}.
+     */
+    @Override
+    public @Nullable T get(UUID uuid) {
+        if (backing instanceof DataBackedCache<T> dataBacked) {
+            T value = getAsync(dataBacked, uuid).join();
+            // a loaded object did not pass through the index
+            if (value != null && delegate instanceof IndexedCache<T> indexed) indexed.loaded(uuid, value);
+            return value;
+        }
+
+        T value = delegate.get(uuid);
+        (value != null ? hits : misses).increment();
+        return value;
+    }
+
+    @Override
+    public void invalidate(@NotNull UUID uuid) {
+        delegate.invalidate(uuid);
+    }
+
+    @Override
+    public void invalidate(@NotNull T obj) {
+        delegate.invalidate(obj);
+    }
+
+    @Override
+    public @NotNull List<T> getAll() {
+        return delegate.getAll();
+    }
+
+    @Override
+    public @NotNull Spliterator<T> spliterator() {
+        return delegate.spliterator();
+    }
+
+    @Override
+    public @NotNull Stream<T> stream() {
+        return delegate.stream();
+    }
+
+    @Override
+    public @NotNull CachePage<T> page(@Nullable String cursor, int limit) {
+        return delegate.page(cursor, limit);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public @NotNull Map<UUID, T> getAll(@NotNull Collection<UUID> uuids) {
+        Map<UUID, T> result = delegate.getAll(uuids);
+        hits.add(result.size());
+        misses.add(Math.max(0, uuids.size() - result.size()));
+        return result;
+    }
+
+    @Override
+    public void addAll(@NotNull Collection<? extends T> objs) {
+        long start = System.nanoTime();
+        delegate.addAll(objs);
+        putLatency.record(System.nanoTime() - start);
+
+        for (T obj : objs) {
+            if (obj == null) continue;
+            puts.increment();
+            sample(obj);
+        }
+    }
+
+    @Override
+    public void invalidateAll(@NotNull Collection<UUID> uuids) {
+        delegate.invalidateAll(uuids);
+    }
+
+    @Override
+    public @Nullable T computeIfAbsent(@NotNull UUID uuid, @NotNull Function<? super UUID, ? extends T> loader) {
+        boolean[] loaded = new boolean[1];
+        T value = delegate.computeIfAbsent(uuid, key -> {
+            loaded[0] = true;
+            long start = System.nanoTime();
+            try {
+                T result = loader.apply(key);
+                loads.increment();
+                if (result != null) sample(result);
+                return result;
+            } catch (RuntimeException | Error e) {
+                loadFailures.increment();
+                throw e;
+            } finally {
+                loadLatency.record(System.nanoTime() - start);
+            }
+        });
+
+        (loaded[0] ? misses : hits).increment();
+        return value;
+    }
+
+    /**
+     * Returns the object of a key from a database backed cache, loading a miss without blocking.
+     * Hits, misses and loads are counted as by {@link #computeIfAbsent(UUID, Function)}.
+     *
+     * @param dataBacked the database backed cache beneath this one
+     */
+    @NotNull CompletableFuture<T> getAsync(@NotNull DataBackedCache<T> dataBacked, @NotNull UUID uuid) {
+        T cached = dataBacked.getIfPresent(uuid);
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        misses.increment();
+        return dataBacked.load(uuid, load -> {
+            long start = System.nanoTime();
+            return load.whenComplete((result, error) -> {
+                loadLatency.record(System.nanoTime() - start);
+                if (error == null) {
+                    loads.increment();
+                    if (result != null) sample(result);
+                } else if (!(error instanceof CancellationException)) {
+                    loadFailures.increment();
+                }
+            });
+        });
+    }
+
+    /**
+     * Keeps the object as a sample to estimate the memory use from, the first objects always and later ones occasionally.
+     */
+    private void sample(Object obj) {
+        int slot = ThreadLocalRandom.current().nextInt(SAMPLES * 8);
+        if (slot < SAMPLES) {
+            samples.lazySet(slot, obj);
+        } else if (samples.get(slot % SAMPLES) == null) {
+            samples.compareAndSet(slot % SAMPLES, null, obj);
+        }
+    }
+
+    /**
+     * Returns the metrics so far. This reads the size of the wrapped cache, a round trip for a distributed cache.
+     */
+    @NotNull CacheStats stats() {
+        MemoryCache<T> local = localCache();
+        int localSize = local != null ? local.size() : 0;
+        long evictions = backing instanceof OffHeapCache<T> offHeapCache
+                ? offHeapCache.evictionCount()
+                : local != null ? local.evictionCount() : 0;
+
+        return new CacheStats(
+                name,
+                hits.sum(),
+                misses.sum(),
+                evictions,
+                shedObjects.sum(),
+                shedBytes.sum(),
+                puts.sum(),
+                loads.sum(),
+                loadFailures.sum(),
+                sharedLoads(),
+                delegate.size(),
+                localSize,
+                localSize * estimatedEntryBytes(),
+                loadLatency.snapshot(),
+                putLatency.snapshot()
+        );
+    }
+
+    /**
+     * Returns the estimated heap used by a local entry, including its object.
+     */
+    long estimatedEntryBytes() {
+        return ENTRY_OVERHEAD + averageSampleSize();
+    }
+
+    /**
+     * Evicts up to an amount of the coldest local objects to free heap, counting them in the metrics.
+     *
+     * @param entryBytes the {@link #estimatedEntryBytes() estimated heap} of an entry
+     * @return the amount of objects evicted
+     */
+    int shed(int count, long entryBytes) {
+        MemoryCache<T> local = localCache();
+        if (local == null) return 0;
+
+        int shed = local.shed(count);
+        shedObjects.add(shed);
+        shedBytes.add(shed * entryBytes);
+        return shed;
+    }
+
+    private long averageSampleSize() {
+        long total = 0;
+        int count = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            Object sample = samples.get(i);
+            if (sample == null) continue;
+
+            try {
+                total += ObjectSizes.estimate(sample);
+                count++;
+            } catch (RuntimeException ignored) {
+                // the sample was modified while walked, such as a ConcurrentModificationException from a collection
+            }
+        }
+        return count == 0 ? 0 : total / count;
+    }
+
+    private long sharedLoads() {
+        if (backing instanceof MemoryCache<T> memoryCache) return memoryCache.deduplicatedLoads();
+        if (backing instanceof NearCache<T> nearCache) return nearCache.deduplicatedLoads();
+        if (backing instanceof DataBackedCache<T> dataBacked) return dataBacked.deduplicatedLoads();
+        return 0;
+    }
+
+    /**
+     * Returns the cache holding objects on this server's heap, if any.
+     */
+    @Nullable MemoryCache<T> localCache() {
+        return localCache(backing);
+    }
+
+    private static <T> @Nullable MemoryCache<T> localCache(Cache<T> cache) {
+        if (cache instanceof MemoryCache<T> memoryCache) return memoryCache;
+        if (cache instanceof NearCache<T> nearCache) return nearCache.getLocal();
+        if (cache instanceof OffHeapCache<T> offHeapCache) return offHeapCache.getHot();
+        if (cache instanceof DataBackedCache<T> dataBacked) return localCache(dataBacked.getCache());
+        return null;
+    }
+}
@@ -0,0 +1,380 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import xyz.tomsoz.pluginBase.common.redis.BaseBroker;
+import xyz.tomsoz.pluginBase.common.redis.CacheInvalidation;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * A {@link Cache} keeping a local {@link MemoryCache} (L1) in front of a shared remote cache (L2), such as a {@link RedisCache}.
+ * <p>
+ * Reads are served from L1 when possible and fill it from L2 on a miss. Writes go to L2 first,
+ * then L1, and are announced through the {@link BaseBroker} so the other servers evict their L1 copy.
+ * An L1 entry is never older than the staleness bound, even if an invalidation is lost.
+ * </p>
+ * <p>
+ * To stop a slow L2 read from putting an outdated object back into L1 after an invalidation,
+ * every invalidation leaves a tombstone stamped with the time it was applied, a read only fills L1 if
+ * no tombstone of its key is newer than the read itself.
+ * </p>
+ * <p>
+ * Every server stamps its invalidations with a version which only increases. The tombstone of a key also
+ * remembers the last version applied from the server which sent it, an invalidation of that key from the same
+ * server with a version no higher is a late or duplicate delivery and is skipped, so it does not evict
+ * a copy read after the newer invalidation. Tombstones are kept for at least the staleness bound.
+ * </p>
+ * <p>
+ * Bulk operations read or write every L1 miss in one L2 call and announce their keys in a single message.
+ * </p>
+ *
+ * @param <T> the type of cached object
+ */
+@SuppressWarnings("unused")
+public final class NearCache<T> implements Cache<T> {
+    /**
+     * Tombstones are swept once this many invalidations have been applied since the last sweep.
+     */
+    private static final int SWEEP_INTERVAL = 1024;
+
+    private final String name;
+    private final Function<? super T, UUID> keyMapper;
+    private final MemoryCache<T> local;
+    private final Cache<T> remote;
+    private final BaseBroker broker;
+    private final long tombstoneNanos;
+
+    private final ConcurrentHashMap<UUID, Tombstone> tombstones = new ConcurrentHashMap<>();
+    private final SingleFlight<T> flights = new SingleFlight<>();
+    private final AtomicInteger sinceSweep = new AtomicInteger();
+    private final AtomicLong version = new AtomicLong();
+    private volatile long clearedAt = System.nanoTime();
+
+    private NearCache(Builder<T> builder) {
+        this.name = builder.name;
+        this.keyMapper = builder.keyMapper;
+        this.remote = builder.remote;
+        this.broker = builder.broker;
+        this.local = MemoryCache.<T>builder(builder.keyMapper)
+                .maximumSize(builder.localMaximumSize)
+                .expireAfterWrite(builder.maxStaleness)
+                .build();
+        // a read in flight for longer than this is assumed to have failed
+        this.tombstoneNanos = Math.max(builder.maxStaleness.toNanos(), Duration.ofSeconds(30).toNanos());
+
+        broker.onCacheInvalidation(name, this::onInvalidation);
+    }
+
+    /**
+     * Creates a builder for a near cache.
+     *
+     * @param name      the name of the cache, identical on every server, usually the name of the cached class
+     * @param keyMapper returns the key of an object
+     * @param remote    the shared cache
+     * @param broker    the broker invalidations are sent and received through
+     */
+    public static <T> @NotNull Builder<T> builder(@NotNull String name, @NotNull Function<? super T, UUID> keyMapper,
+                                                  @NotNull Cache<T> remote, @NotNull BaseBroker broker) {
+        return new Builder<>(name, keyMapper, remote, broker);
+    }
+
+    @Override
+    public void add(@Nullable T obj) {
+        if (obj == null) return;
+
+        UUID key = Objects.requireNonNull(keyMapper.apply(obj), "key");
+        remote.add(obj);
+        tombstone(key);
+        local.add(obj);
+        broker.invalidateCache(name, key, nextVersion());
+    }
+
+    @Override
+    public @Nullable T get(UUID uuid) {
+        T value = local.get(uuid);
+        if (value != null) return value;
+
+        long readStart = System.nanoTime();
+        value = remote.get(uuid);
+        if (value == null || invalidatedSince(uuid, readStart)) return value;
+
+        local.add(value);
+        // an invalidation may have landed between the check and the add
+        if (invalidatedSince(uuid, readStart)) local.invalidate(uuid);
+        return value;
+    }
+
+    @Override
+    public void invalidate(@NotNull UUID uuid) {
+        remote.invalidate(uuid);
+        tombstone(uuid);
+        local.invalidate(uuid);
+        broker.invalidateCache(name, uuid, nextVersion());
+    }
+
+    @Override
+    public void invalidate(@NotNull T obj) {
+        invalidate(keyMapper.apply(obj));
+    }
+
+    @Override
+    public @NotNull Map<UUID, T> getAll(@NotNull Collection<UUID> uuids) {
+        Map<UUID, T> result = new HashMap<>(Math.max(4, uuids.size() * 2));
+        List<UUID> misses = new ArrayList<>();
+        for (UUID uuid : uuids) {
+            T value = local.get(uuid);
+            if (value != null) result.put(uuid, value);
+            else misses.add(uuid);
+        }
+        if (misses.isEmpty()) return result;
+
+        long readStart = System.nanoTime();
+        Map<UUID, T> loaded = remote.getAll(misses);
+        result.putAll(loaded);
+
+        List<T> fresh = new ArrayList<>(loaded.size());
+        loaded.forEach((uuid, value) -> {
+            if (!invalidatedSince(uuid, readStart)) fresh.add(value);
+        });
+        local.addAll(fresh);
+        // invalidations may have landed between the checks and the add
+        for (UUID uuid : loaded.keySet()) {
+            if (invalidatedSince(uuid, readStart)) local.invalidate(uuid);
+        }
+        return result;
+    }
+
+    @Override
+    public void addAll(@NotNull Collection<? extends T> objs) {
+        List<UUID> keys = new ArrayList<>(objs.size());
+        for (T obj : objs) {
+            if (obj != null) keys.add(Objects.requireNonNull(keyMapper.apply(obj), "key"));
+        }
+        if (keys.isEmpty()) return;
+
+        remote.addAll(objs);
+        keys.forEach(this::tombstone);
+        local.addAll(objs);
+        broker.invalidateCacheKeys(name, keys, nextVersion());
+    }
+
+    @Override
+    public void invalidateAll(@NotNull Collection<UUID> uuids) {
+        if (uuids.isEmpty()) return;
+
+        remote.invalidateAll(uuids);
+        uuids.forEach(this::tombstone);
+        local.invalidateAll(uuids);
+        broker.invalidateCacheKeys(name, uuids, nextVersion());
+    }
+
+    /**
+     * Loads a missing object through the shared cache, so the other servers do not load it again.
+     * Concurrent calls on this server for the same missing key share a single load.
+     */
+    @Override
+    public @Nullable T computeIfAbsent(@NotNull UUID uuid, @NotNull Function<? super UUID, ? extends T> loader) {
+        T value = local.get(uuid);
+        if (value != null) return value;
+
+        return flights.loadNow(uuid, key -> {
+            long readStart = System.nanoTime();
+            T loaded = remote.computeIfAbsent(key, loader);
+            if (loaded == null || invalidatedSince(key, readStart)) return loaded;
+
+            local.add(loaded);
+            if (invalidatedSince(key, readStart)) local.invalidate(key);
+            return loaded;
+        });
+    }
+
+    /**
+     * Returns the amount of {@link #computeIfAbsent} calls which shared a load in flight instead of starting their own.
+     */
+    public long deduplicatedLoads() {
+        return flights.deduplicated();
+    }
+
+    /**
+     * Returns every object of the shared cache.
+     */
+    @Override
+    public @NotNull List<T> getAll() {
+        return remote.getAll();
+    }
+
+    /**
+     * Streams the objects of the shared cache, without copying them locally.
+     */
+    @Override
+    public @NotNull Spliterator<T> spliterator() {
+        return remote.spliterator();
+    }
+
+    @Override
+    public @NotNull Stream<T> stream() {
+        return remote.stream();
+    }
+
+    @Override
+    public @NotNull CachePage<T> page(@Nullable String cursor, int limit) {
+        return remote.page(cursor, limit);
+    }
+
+    /**
+     * Returns the amount of objects in the shared cache.
+     */
+    @Override
+    public int size() {
+        return remote.size();
+    }
+
+    /**
+     * Returns the local cache in front of the shared one.
+     */
+    public @NotNull MemoryCache<T> getLocal() {
+        return local;
+    }
+
+    private void onInvalidation(CacheInvalidation invalidation) {
+        String origin = invalidation.getOrigin();
+        long version = invalidation.getVersion();
+
+        List<UUID> keys = invalidation.getKeys();
+        if (keys != null) {
+            List<UUID> applied = new ArrayList<>(keys.size());
+            for (UUID key : keys) {
+                if (tombstone(key, origin, version)) applied.add(key);
+            }
+            local.invalidateAll(applied);
+            return;
+        }
+
+        UUID key = invalidation.getKey();
+        if (key == null) {
+            clearedAt = System.nanoTime();
+            local.invalidateAll();
+            return;
+        }
+
+        if (tombstone(key, origin, version)) local.invalidate(key);
+    }
+
+    private boolean invalidatedSince(UUID key, long readStart) {
+        if (clearedAt - readStart >= 0) return true;
+
+        Tombstone tombstone = tombstones.get(key);
+        return tombstone != null && tombstone.appliedAt() - readStart >= 0;
+    }
+
+    /**
+     * Leaves the tombstone of an invalidation made on this server.
+     */
+    private void tombstone(UUID key) {
+        tombstones.put(key, new Tombstone(System.nanoTime(), null, 0));
+        if (sinceSweep.incrementAndGet() >= SWEEP_INTERVAL) sweep();
+    }
+
+    /**
+     * Leaves the tombstone of an invalidation sent by another server, unless a newer one of the key was already applied from it.
+     *
+     * @return whether the invalidation is applied
+     */
+    private boolean tombstone(UUID key, String origin, long version) {
+        boolean[] applied = {true};
+        tombstones.compute(key, (it, current) -> {
+            if (current != null && origin.equals(current.origin()) && current.version() >= version) {
+                applied[0] = false;
+                return current;
+            }
+            return new Tombstone(System.nanoTime(), origin, version);
+        });
+        if (applied[0] && sinceSweep.incrementAndGet() >= SWEEP_INTERVAL) sweep();
+        return applied[0];
+    }
+
+    private void sweep() {
+        sweep(System.nanoTime());
+    }
+
+    /**
+     * Drops the tombstones applied longer ago than the staleness bound, as of a time relative to {@link System#nanoTime()}.
+     */
+    void sweep(long now) {
+        sinceSweep.set(0);
+        tombstones.values().removeIf(it -> now - it.appliedAt() > tombstoneNanos);
+    }
+
+    /**
+     * Returns the amount of keys with a tombstone.
+     */
+    int tombstoneCount() {
+        return tombstones.size();
+    }
+
+    /**
+     * Returns a version stamp which is higher than any this cache sent before,
+     * based on the wall clock so stamps keep increasing across restarts.
+     */
+    private long nextVersion() {
+        long now = System.currentTimeMillis();
+        return version.updateAndGet(it -> Math.max(it + 1, now));
+    }
+
+    /**
+     * When an invalidation of a key was applied, and which server sent it with which version.
+     *
+     * @param origin the origin of the sender, null for invalidations made on this server
+     */
+    private record Tombstone(long appliedAt, @Nullable String origin, long version) {
+    }
+
+    /**
+     * Configures a {@link NearCache}.
+     *
+     * @param <T> the type of cached object
+     */
+    public static final class Builder<T> {
+        private final String name;
+        private final Function<? super T, UUID> keyMapper;
+        private final Cache<T> remote;
+        private final BaseBroker broker;
+        private long localMaximumSize = 10_000;
+        private Duration maxStaleness = Duration.ofMinutes(5);
+
+        private Builder(String name, Function<? super T, UUID> keyMapper, Cache<T> remote, BaseBroker broker) {
+            this.name = name;
+            this.keyMapper = keyMapper;
+            this.remote = remote;
+            this.broker = broker;
+        }
+
+        /**
+         * Bounds the local cache to an amount of objects, 10,000 by default.
+         */
+        public Builder<T> localMaximumSize(long localMaximumSize) {
+            this.localMaximumSize = localMaximumSize;
+            return this;
+        }
+
+        /**
+         * Sets how long a local copy may be served before it is read from the shared cache again,
+         * 5 minutes by default. This bounds how stale a copy can be when an invalidation is lost.
+         */
+        public Builder<T> maxStaleness(@NotNull Duration maxStaleness) {
+            this.maxStaleness = maxStaleness;
+            return this;
+        }
+
+        public @NotNull NearCache<T> build() {
+            return new NearCache<>(this);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Estimates the retained heap size of objects, assuming compressed references and 8 byte alignment.
+ * <p>
+ * Plugin classes are walked reflectively, strings, arrays, collections and maps are sized from their contents.
+ * Other JDK classes can not be opened and only count their header. The walk is bounded, so deep
+ * or shared graphs are underestimated rather than walked in full.
+ * </p>
+ */
+final class ObjectSizes {
+    private static final int HEADER = 12;
+    private static final int REFERENCE = 4;
+    private static final int MAX_DEPTH = 6;
+    private static final int MAX_OBJECTS = 512;
+    /**
+     * Collections larger than this are sized from their first elements.
+     */
+    private static final int MAX_ELEMENTS = 64;
+
+    private static final ClassValue<Field[]> FIELDS = new ClassValue<>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers()) && field.trySetAccessible()) fields.add(field);
+                }
+            }
+            return fields.toArray(Field[]::new);
+        }
+    };
+
+    private ObjectSizes() {
+    }
+
+    /**
+     * Returns the estimated retained size of an object in bytes.
+     * <p>
+     * Collections and fields are read while other threads may write them, so this may throw,
+     * for example a {@link ConcurrentModificationException}, callers skip such an object.
+     * </p>
+     */
+    static long estimate(Object object) {
+        return new Walk().size(object, 0);
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private static int primitiveSize(Class<?> type) {
+        if (type == long.class || type == double.class) return 8;
+        if (type == int.class || type == float.class) return 4;
+        if (type == short.class || type == char.class) return 2;
+        return 1;
+    }
+
+    private static final class Walk {
+        private final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private long size(Object object, int depth) {
+            if (object == null || depth > MAX_DEPTH || seen.size() >= MAX_OBJECTS || !seen.add(object)) return 0;
+
+            Class<?> type = object.getClass();
+            if (object instanceof String string) return align(HEADER + 12) + align(16L + string.length());
+            // enum constants are shared by every object
+            if (object instanceof Enum<?>) return 0;
+            if (object instanceof Number || object instanceof Boolean || object instanceof Character) return 16;
+            if (object instanceof UUID) return 32;
+            if (type.isArray()) return array(object, type.getComponentType(), depth);
+            if (object instanceof Collection<?> collection) return HEADER + 36 + elements(collection, collection.size(), depth);
+            if (object instanceof Map<?, ?> map) {
+                // every entry is roughly a 32 byte node
+                return HEADER + 36 + (long) map.size() * 32 + elements(map.keySet(), map.size(), depth) + elements(map.values(), map.size(), depth);
+            }
+            if (type.getName().startsWith("java.")) return 16;
+
+            long size = HEADER;
+            long retained = 0;
+            for (Field field : FIELDS.get(type)) {
+                Class<?> fieldType = field.getType();
+                if (fieldType.isPrimitive()) {
+                    size += primitiveSize(fieldType);
+                    continue;
+                }
+
+                size += REFERENCE;
+                try {
+                    retained += size(field.get(object), depth + 1);
+                } catch (IllegalAccessException ignored) {
+                }
+            }
+            return align(size) + retained;
+        }
+
+        private long array(Object array, Class<?> componentType, int depth) {
+            int length = Array.getLength(array);
+            if (componentType.isPrimitive()) return align(16L + (long) length * primitiveSize(componentType));
+
+            long size = align(16L + (long) length * REFERENCE);
+            int sampled = Math.min(length, MAX_ELEMENTS);
+            long retained = 0;
+            for (int i = 0; i < sampled; i++) retained += size(Array.get(array, i), depth + 1);
+            return size + (sampled == 0 ? 0 : retained * length / sampled);
+        }
+
+        private long elements(Collection<?> elements, int size, int depth) {
+            long retained = 0;
+            int sampled = 0;
+            for (Object element : elements) {
+                if (sampled == MAX_ELEMENTS) break;
+                sampled++;
+                retained += REFERENCE + size(element, depth + 1);
+            }
+            return sampled == 0 ? 0 : retained * Math.max(size, sampled) / sampled;
+        }
+    }
+}
@@ -0,0 +1,522 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import com.google.gson.Gson;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import xyz.tomsoz.pluginBase.common.serialization.BaseGsonCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A {@link Cache} keeping its objects serialized as JSON in direct memory, outside the garbage collected heap.
+ * <p>
+ * Objects are appended to fixed size slabs of direct {@link ByteBuffer}s and deserialized on every read,
+ * a small {@link MemoryCache} of deserialized objects in front of them serves the hot ones without decoding.
+ * An object which changed has to be added again, the stored copy is not updated otherwise.
+ * </p>
+ * <p>
+ * Once every slab is full the oldest one is recycled: objects read since they were written are moved
+ * to the new end, the others are evicted. Replaced and invalidated objects leave their bytes behind until
+ * their slab is recycled. The direct memory used is bounded by the maximum bytes, make sure
+ * {@code -XX:MaxDirectMemorySize} leaves room for it.
+ * </p>
+ * <pre>
+ * registerCache(Profile.class, broker,
+ *         () -&gt; OffHeapCache.builder(Profile.class, Profile::getUniqueId, codec.getGson())
+ *                 .maximumBytes(1L &lt;&lt; 30)
+ *                 .hotSize(2_000)
+ *                 .build(),
+ *         () -&gt; RedisCache.create(redisson, "profiles", codec, Profile::getUniqueId));
+ * </pre>
+ *
+ * @param <T> the type of cached object
+ */
+@SuppressWarnings("unused")
+public final class OffHeapCache<T> implements Cache<T> {
+    /**
+     * Every entry starts with its key and the length of its JSON.
+     */
+    private static final int HEADER = 16 + 4;
+
+    private final Class<T> type;
+    private final Function<? super T, UUID> keyMapper;
+    private final Gson gson;
+    private final int slabSize;
+    private final ByteBuffer[] slabs;
+    private final MemoryCache<T> hot;
+
+    private final UuidMap<Slot> index = new UuidMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    /**
+     * Held exclusively while a slab is being overwritten, reads validate against it.
+     */
+    private final StampedLock recycleLock = new StampedLock();
+    private final LongAdder evictions = new LongAdder();
+    private volatile @Nullable Consumer<UUID> evictionListener;
+
+    // guarded by the write lock
+    private final ArrayDeque<Integer> slabOrder = new ArrayDeque<>();
+    private List<UUID> evicted = new ArrayList<>();
+    private final int[] slabEnds;
+    private int allocated;
+    private int current = -1;
+
+    private OffHeapCache(Builder<T> builder) {
+        this.type = builder.type;
+        this.keyMapper = builder.keyMapper;
+        this.gson = builder.gson;
+        this.slabSize = builder.slabSize;
+        int slabCount = (int) Math.max(1, builder.maximumBytes / builder.slabSize);
+        this.slabs = new ByteBuffer[slabCount];
+        this.slabEnds = new int[slabCount];
+        this.hot = MemoryCache.<T>builder(builder.keyMapper)
+                .maximumSize(builder.hotSize)
+                .build();
+    }
+
+    /**
+     * Creates a builder for a cache.
+     *
+     * @param type      the class of the cached objects, to deserialize them as
+     * @param keyMapper returns the key of an object
+     * @param gson      serializes the cached objects, usually the one of the {@link BaseGsonCodec} used for Redis
+     */
+    public static <T> @NotNull Builder<T> builder(@NotNull Class<T> type, @NotNull Function<? super T, UUID> keyMapper, @NotNull Gson gson) {
+        return new Builder<>(type, keyMapper, gson);
+    }
+
+    /**
+     * Creates a builder for a cache serializing objects like the codec does.
+     */
+    public static <T> @NotNull Builder<T> builder(@NotNull Class<T> type, @NotNull Function<? super T, UUID> keyMapper, @NotNull BaseGsonCodec codec) {
+        return new Builder<>(type, keyMapper, codec.getGson());
+    }
+
+    @Override
+    public void add(@Nullable T obj) {
+        if (obj == null) return;
+
+        UUID key = Objects.requireNonNull(keyMapper.apply(obj), "key");
+        byte[] json = gson.toJson(obj, type).getBytes(StandardCharsets.UTF_8);
+        if (HEADER + json.length > slabSize) {
+            throw new IllegalArgumentException("Serialized object of %d bytes does not fit a slab of %d bytes".formatted(json.length, slabSize));
+        }
+
+        List<UUID> evicted;
+        writeLock.lock();
+        try {
+            append(key, json);
+            // added under the lock, so the hot copy is never older than the stored one
+            hot.add(obj);
+        } finally {
+            evicted = takeEvicted();
+            writeLock.unlock();
+        }
+        notifyEvicted(evicted);
+    }
+
+    /**
+     * Adds an object unless another one is cached under its key.
+     *
+     * @return whether the object was added
+     */
+    boolean addIfAbsent(@NotNull T obj) {
+        UUID key = Objects.requireNonNull(keyMapper.apply(obj), "key");
+        if (index.get(key) != null) return false;
+
+        byte[] json = gson.toJson(obj, type).getBytes(StandardCharsets.UTF_8);
+        if (HEADER + json.length > slabSize) return false;
+
+        boolean added;
+        List<UUID> evicted;
+        writeLock.lock();
+        try {
+            added = index.get(key) == null;
+            if (added) append(key, json);
+        } finally {
+            evicted = takeEvicted();
+            writeLock.unlock();
+        }
+        notifyEvicted(evicted);
+        return added;
+    }
+
+    @Override
+    public @Nullable T get(UUID uuid) {
+        T value = hot.get(uuid);
+        if (value != null) {
+            // hot objects keep their serialized copy too, the hot set evicts on its own
+            Slot slot = index.get(uuid);
+            if (slot != null && !slot.accessed) slot.accessed = true;
+            return value;
+        }
+
+        Read read = read(uuid);
+        if (read == null) return null;
+
+        T decoded = decode(read.json());
+        writeLock.lock();
+        try {
+            // only keep the decoded copy if it was not replaced or removed meanwhile
+            if (index.get(uuid) == read.slot() && hot.get(uuid) == null) hot.add(decoded);
+        } finally {
+            writeLock.unlock();
+        }
+        return decoded;
+    }
+
+    @Override
+    public void invalidate(@NotNull UUID uuid) {
+        writeLock.lock();
+        try {
+            index.remove(uuid);
+            hot.invalidate(uuid);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void invalidate(@NotNull T obj) {
+        invalidate(keyMapper.apply(obj));
+    }
+
+    /**
+     * Removes every object and releases the slabs.
+     */
+    public void invalidateAll() {
+        writeLock.lock();
+        long stamp = recycleLock.writeLock();
+        try {
+            index.clear();
+            hot.invalidateAll();
+            Arrays.fill(slabs, null);
+            Arrays.fill(slabEnds, 0);
+            slabOrder.clear();
+            allocated = 0;
+            current = -1;
+        } finally {
+            recycleLock.unlockWrite(stamp);
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns every cached object, deserializing all of them. This blocks writes while reading.
+     */
+    @Override
+    public @NotNull List<T> getAll() {
+        List<byte[]> entries = new ArrayList<>(index.size());
+        writeLock.lock();
+        try {
+            for (int slab : slabOrder) {
+                forEachLive(slab, (key, slot) -> entries.add(copy(slot)));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+
+        List<T> result = new ArrayList<>(entries.size());
+        for (byte[] json : entries) result.add(decode(json));
+        return result;
+    }
+
+    /**
+     * Returns a spliterator of the cached objects, deserializing each one as it is reached rather than all of them up front.
+     */
+    @Override
+    public @NotNull Spliterator<T> spliterator() {
+        return new MappingSpliterator<>(index.spliterator(), this::decode);
+    }
+
+    @Override
+    public @NotNull CachePage<T> page(@Nullable String cursor, int limit) {
+        return CachePage.of(index, cursor, limit, this::decode);
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Returns the on-heap cache of recently used objects.
+     */
+    public @NotNull MemoryCache<T> getHot() {
+        return hot;
+    }
+
+    /**
+     * Returns the direct memory reserved by the allocated slabs.
+     */
+    public long allocatedBytes() {
+        writeLock.lock();
+        try {
+            return (long) allocated * slabSize;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the amount of objects evicted to make room for new ones.
+     */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Adds a listener for the keys of objects evicted from the slabs, for the caches wrapping this one.
+     * It runs on the thread whose add recycled the slab, after the lock has been released.
+     */
+    void addEvictionListener(@NotNull Consumer<UUID> listener) {
+        writeLock.lock();
+        try {
+            Consumer<UUID> current = evictionListener;
+            evictionListener = current == null ? listener : current.andThen(listener);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void notifyEvicted(List<UUID> keys) {
+        Consumer<UUID> listener = evictionListener;
+        if (listener != null) keys.forEach(listener);
+    }
+
+    /**
+     * Copies the JSON of a key out of its slab, without locking unless a slab was recycled meanwhile.
+     */
+    private @Nullable Read read(UUID uuid) {
+        long stamp = recycleLock.tryOptimisticRead();
+        if (stamp != 0) {
+            Slot slot = index.get(uuid);
+            if (slot == null) return null;
+
+            byte[] json = new byte[slot.length];
+            ByteBuffer slab = slabs[slot.slab];
+            if (slab != null) {
+                slab.get(slot.offset + HEADER, json);
+                if (recycleLock.validate(stamp)) {
+                    if (!slot.accessed) slot.accessed = true;
+                    return new Read(slot, json);
+                }
+            }
+        }
+
+        stamp = recycleLock.readLock();
+        try {
+            Slot slot = index.get(uuid);
+            if (slot == null) return null;
+
+            if (!slot.accessed) slot.accessed = true;
+            return new Read(slot, copy(slot));
+        } finally {
+            recycleLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Copies the JSON of an entry found by iterating, without marking it as read.
+     *
+     * @return the JSON, or null if the entry was replaced or evicted meanwhile
+     */
+    private @Nullable byte[] read(Slot slot) {
+        long stamp = recycleLock.readLock();
+        try {
+            ByteBuffer slab = slabs[slot.slab];
+            if (slab == null) return null;
+
+            UUID key = new UUID(slab.getLong(slot.offset), slab.getLong(slot.offset + 8));
+            return index.get(key) == slot ? copy(slot) : null;
+        } finally {
+            recycleLock.unlockRead(stamp);
+        }
+    }
+
+    private @Nullable T decode(Slot slot) {
+        byte[] json = read(slot);
+        return json != null ? decode(json) : null;
+    }
+
+    private T decode(byte[] json) {
+        return gson.fromJson(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8), type);
+    }
+
+    private byte[] copy(Slot slot) {
+        byte[] json = new byte[slot.length];
+        slabs[slot.slab].get(slot.offset + HEADER, json);
+        return json;
+    }
+
+    // everything below is guarded by the write lock
+
+    private List<UUID> takeEvicted() {
+        if (evicted.isEmpty()) return List.of();
+
+        List<UUID> taken = evicted;
+        evicted = new ArrayList<>();
+        return taken;
+    }
+
+    private void append(UUID key, byte[] json) {
+        int size = HEADER + json.length;
+        while (current < 0 || slabEnds[current] + size > slabSize) advance(key);
+
+        ByteBuffer slab = slabs[current];
+        int offset = slabEnds[current];
+        slab.putLong(offset, key.getMostSignificantBits());
+        slab.putLong(offset + 8, key.getLeastSignificantBits());
+        slab.putInt(offset + 16, json.length);
+        slab.put(offset + HEADER, json);
+        slabEnds[current] = offset + size;
+
+        index.put(key, new Slot(current, offset, json.length));
+    }
+
+    /**
+     * Moves writing to an empty slab, allocating one while below the maximum and otherwise recycling the oldest.
+     *
+     * @param writing the key about to be written, its old entry is dropped rather than moved or evicted
+     */
+    private void advance(UUID writing) {
+        if (allocated < slabs.length) {
+            slabs[allocated] = ByteBuffer.allocateDirect(slabSize);
+            current = allocated++;
+            slabOrder.addLast(current);
+            return;
+        }
+
+        int victim = slabOrder.pollFirst();
+        List<UUID> kept = new ArrayList<>();
+        List<byte[]> keptJson = new ArrayList<>();
+        forEachLive(victim, (key, slot) -> {
+            if (key.equals(writing)) {
+                // replaced right after, reporting it would make the wrappers drop the new copy
+                index.remove(key, slot);
+            } else if (slot.accessed) {
+                // a second chance, it is moved to the new end instead of evicted
+                kept.add(key);
+                keptJson.add(copy(slot));
+            } else {
+                index.remove(key, slot);
+                hot.invalidate(key);
+                evictions.increment();
+                if (evictionListener != null) evicted.add(key);
+            }
+        });
+
+        // readers of the old bytes fail their validation and read again through the moved slots
+        long stamp = recycleLock.writeLock();
+        try {
+            slabEnds[victim] = 0;
+            current = victim;
+            slabOrder.addLast(victim);
+            for (int i = 0; i < kept.size(); i++) append(kept.get(i), keptJson.get(i));
+        } finally {
+            recycleLock.unlockWrite(stamp);
+        }
+    }
+
+    private void forEachLive(int slab, LiveEntryConsumer consumer) {
+        ByteBuffer buffer = slabs[slab];
+        int end = slabEnds[slab];
+        int offset = 0;
+        while (offset < end) {
+            UUID key = new UUID(buffer.getLong(offset), buffer.getLong(offset + 8));
+            int length = buffer.getInt(offset + 16);
+
+            Slot slot = index.get(key);
+            if (slot != null && slot.slab == slab && slot.offset == offset) consumer.accept(key, slot);
+            offset += HEADER + length;
+        }
+    }
+
+    private record Read(Slot slot, byte[] json) {
+    }
+
+    @FunctionalInterface
+    private interface LiveEntryConsumer {
+        void accept(UUID key, Slot slot);
+    }
+
+    /**
+     * The location of an entry, a new one is created for every write.
+     */
+    private static final class Slot {
+        private final int slab;
+        private final int offset;
+        private final int length;
+        /**
+         * Whether the entry was read since it was written, it is kept when its slab is recycled.
+         */
+        private volatile boolean accessed;
+
+        private Slot(int slab, int offset, int length) {
+            this.slab = slab;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Configures an {@link OffHeapCache}.
+     *
+     * @param <T> the type of cached object
+     */
+    public static final class Builder<T> {
+        private final Class<T> type;
+        private final Function<? super T, UUID> keyMapper;
+        private final Gson gson;
+        private long maximumBytes = 256L << 20;
+        private int slabSize = 8 << 20;
+        private long hotSize = 1_000;
+
+        private Builder(Class<T> type, Function<? super T, UUID> keyMapper, Gson gson) {
+            this.type = type;
+            this.keyMapper = keyMapper;
+            this.gson = gson;
+        }
+
+        /**
+         * Bounds the direct memory used for serialized objects, 256MB by default.
+         */
+        public Builder<T> maximumBytes(long maximumBytes) {
+            if (maximumBytes <= 0) throw new IllegalArgumentException("maximumBytes must be positive");
+            this.maximumBytes = maximumBytes;
+            return this;
+        }
+
+        /**
+         * Sets the size of a single slab, 8MB by default. It is the unit memory is allocated and recycled in,
+         * and no serialized object may be larger.
+         */
+        public Builder<T> slabSize(int slabSize) {
+            if (slabSize <= HEADER) throw new IllegalArgumentException("slabSize must be larger than " + HEADER);
+            this.slabSize = slabSize;
+            return this;
+        }
+
+        /**
+         * Bounds the amount of deserialized objects kept on the heap, 1,000 by default.
+         */
+        public Builder<T> hotSize(long hotSize) {
+            this.hotSize = hotSize;
+            return this;
+        }
+
+        public @NotNull OffHeapCache<T> build() {
+            if (slabSize > maximumBytes) slabSize = (int) maximumBytes;
+            return new OffHeapCache<>(this);
+        }
+    }
+}
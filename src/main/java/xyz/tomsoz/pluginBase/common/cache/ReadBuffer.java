@@ -0,0 +1,80 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A lossy buffer of reads waiting to be replayed against an eviction policy.
+ * <p>
+ * Readers append without locking to one of several ring buffers picked by their thread,
+ * a read is simply dropped when its ring is full. The buffer is drained by whichever
+ * thread holds the policy lock.
+ * </p>
+ */
+final class ReadBuffer<E> {
+    static final int RING_SIZE = 64;
+    private static final int RING_MASK = RING_SIZE - 1;
+    /**
+     * How full a ring gets before readers should drain the buffer.
+     */
+    static final int DRAIN_THRESHOLD = RING_SIZE / 2;
+
+    private final Ring<E>[] rings;
+    private final int ringMask;
+
+    ReadBuffer() {
+        int count = Integer.highestOneBit(Math.min(Runtime.getRuntime().availableProcessors(), 16) * 2 - 1);
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Ring<E>[] rings = new Ring[count];
+        this.rings = rings;
+        for (int i = 0; i < count; i++) rings[i] = new Ring<>();
+        this.ringMask = count - 1;
+    }
+
+    /**
+     * Records a read.
+     *
+     * @return whether the buffer should be drained
+     */
+    boolean offer(E element) {
+        long id = Thread.currentThread().threadId();
+        Ring<E> ring = rings[(int) (id ^ (id >>> 16)) & ringMask];
+
+        long head = ring.head;
+        long tail = ring.tail.get();
+        long size = tail - head;
+        if (size >= RING_SIZE) return true;
+
+        if (ring.tail.compareAndSet(tail, tail + 1)) {
+            ring.elements.lazySet((int) (tail & RING_MASK), element);
+        }
+        return size + 1 >= DRAIN_THRESHOLD;
+    }
+
+    /**
+     * Replays every buffered read, must only be called while holding the policy lock.
+     */
+    void drainTo(Consumer<E> consumer) {
+        for (Ring<E> ring : rings) {
+            long head = ring.head;
+            long tail = ring.tail.get();
+            for (; head < tail; head++) {
+                int index = (int) (head & RING_MASK);
+                E element = ring.elements.get(index);
+                // the writer claimed the slot, yet has not stored the element
+                if (element == null) break;
+
+                ring.elements.lazySet(index, null);
+                consumer.accept(element);
+            }
+            ring.head = head;
+        }
+    }
+
+    private static final class Ring<E> {
+        private final AtomicReferenceArray<E> elements = new AtomicReferenceArray<>(RING_SIZE);
+        private final AtomicLong tail = new AtomicLong();
+        private volatile long head;
+    }
+}
@@ -0,0 +1,132 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.redisson.api.RMap;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * A {@link Cache} stored in a Redis hash, shared by every server connected to it.
+ * <p>
+ * Every call is a round trip to Redis, so it is usually placed behind a {@link NearCache}.
+ * Bulk operations are sent as a single command each.
+ * </p>
+ *
+ * @param <T> the type of cached object
+ */
+@SuppressWarnings("unused")
+public class RedisCache<T> implements Cache<T> {
+    /**
+     * The amount of entries fetched per round trip while iterating.
+     */
+    private static final int SCAN_BATCH = 256;
+
+    protected final RMap<String, T> map;
+    protected final Function<? super T, UUID> keyMapper;
+
+    public RedisCache(@NotNull RMap<String, T> map, @NotNull Function<? super T, UUID> keyMapper) {
+        this.map = map;
+        this.keyMapper = keyMapper;
+    }
+
+    /**
+     * Creates a cache stored in the Redis hash of the specified name.
+     *
+     * @param redisson  the client
+     * @param name      the name of the hash
+     * @param codec     the codec of the cached objects, for example a {@link xyz.tomsoz.pluginBase.common.serialization.BaseGsonCodec}
+     * @param keyMapper returns the key of an object
+     */
+    public static <T> @NotNull RedisCache<T> create(@NotNull RedissonClient redisson, @NotNull String name,
+                                                    @NotNull Codec codec, @NotNull Function<? super T, UUID> keyMapper) {
+        return new RedisCache<>(redisson.getMap(name, codec), keyMapper);
+    }
+
+    @Override
+    public void add(@Nullable T obj) {
+        if (obj == null) return;
+        map.fastPut(Objects.requireNonNull(keyMapper.apply(obj), "key").toString(), obj);
+    }
+
+    @Override
+    public @Nullable T get(UUID uuid) {
+        return map.get(uuid.toString());
+    }
+
+    @Override
+    public void invalidate(@NotNull UUID uuid) {
+        map.fastRemove(uuid.toString());
+    }
+
+    @Override
+    public void invalidate(@NotNull T obj) {
+        invalidate(keyMapper.apply(obj));
+    }
+
+    @Override
+    public @NotNull List<T> getAll() {
+        return new ArrayList<>(map.readAllValues());
+    }
+
+    /**
+     * Scans the hash in batches while iterating, rather than reading it whole.
+     */
+    @Override
+    public @NotNull Spliterator<T> spliterator() {
+        return map.values(SCAN_BATCH).spliterator();
+    }
+
+    @Override
+    public @NotNull Map<UUID, T> getAll(@NotNull Collection<UUID> uuids) {
+        if (uuids.isEmpty()) return new HashMap<>();
+
+        Set<String> keys = new HashSet<>(uuids.size() * 2);
+        for (UUID uuid : uuids) keys.add(uuid.toString());
+
+        Map<UUID, T> result = new HashMap<>(keys.size() * 2);
+        map.getAll(keys).forEach((key, value) -> {
+            if (value != null) result.put(UUID.fromString(key), value);
+        });
+        return result;
+    }
+
+    @Override
+    public void addAll(@NotNull Collection<? extends T> objs) {
+        Map<String, T> entries = new HashMap<>(objs.size() * 2);
+        for (T obj : objs) {
+            if (obj != null) entries.put(Objects.requireNonNull(keyMapper.apply(obj), "key").toString(), obj);
+        }
+        if (!entries.isEmpty()) map.putAll(entries);
+    }
+
+    @Override
+    public void invalidateAll(@NotNull Collection<UUID> uuids) {
+        if (uuids.isEmpty()) return;
+        map.fastRemove(uuids.stream().map(UUID::toString).toArray(String[]::new));
+    }
+
+    /**
+     * Loads a missing object and adds it only if no other server added one meanwhile, returning the winning object.
+     */
+    @Override
+    public @Nullable T computeIfAbsent(@NotNull UUID uuid, @NotNull Function<? super UUID, ? extends T> loader) {
+        String key = uuid.toString();
+        T value = map.get(key);
+        if (value != null) return value;
+
+        value = loader.apply(uuid);
+        if (value == null) return null;
+
+        T existing = map.putIfAbsent(key, value);
+        return existing != null ? existing : value;
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+}
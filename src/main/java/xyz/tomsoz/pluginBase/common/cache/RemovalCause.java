@@ -0,0 +1,35 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+/**
+ * Why an entry was removed from a {@link MemoryCache}.
+ */
+public enum RemovalCause {
+    /**
+     * The entry was invalidated.
+     */
+    EXPLICIT,
+    /**
+     * The entry was replaced by adding another object with the same key.
+     */
+    REPLACED,
+    /**
+     * The entry was evicted to stay within the size or weight bound.
+     */
+    SIZE,
+    /**
+     * The entry expired.
+     */
+    EXPIRED,
+    /**
+     * The entry was evicted to free heap while it was running low, see {@link HeapPressureMonitor}.
+     */
+    PRESSURE,
+    ;
+
+    /**
+     * Returns whether the entry was removed by the cache itself rather than by the caller.
+     */
+    public boolean wasEvicted() {
+        return this == SIZE || this == EXPIRED || this == PRESSURE;
+    }
+}
@@ -0,0 +1,38 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+import xyz.tomsoz.pluginBase.common.database.BaseDataService;
+
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * Notified whenever an entry is removed from a {@link MemoryCache}.
+ * <p>
+ * Listeners run on the thread which caused the removal, after the cache has released its lock,
+ * so they should be quick and must not assume any particular thread.
+ * </p>
+ *
+ * @param <T> the type of cached object
+ */
+@FunctionalInterface
+public interface RemovalListener<T> {
+    void onRemoval(@NotNull UUID key, @NotNull T value, @NotNull RemovalCause cause);
+
+    /**
+     * Returns a listener which saves objects through the data service when the cache evicts them,
+     * whether they expired, exceeded the size bound or were shed under heap pressure,
+     * so changes made to them while cached are not lost. Saving does not block the cache.
+     */
+    static <T> @NotNull RemovalListener<T> saveOnEviction(@NotNull BaseDataService dataService, @NotNull Class<T> clazz) {
+        return (key, value, cause) -> {
+            if (!cause.wasEvicted()) return;
+
+            dataService.save(clazz, value).exceptionally(e -> {
+                dataService.logger.log(Level.WARNING, "[Cache] [%s] Failed to save evicted object %s."
+                        .formatted(clazz.getSimpleName(), key), e);
+                return null;
+            });
+        };
+    }
+}
@@ -0,0 +1,174 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent loads of the same key, so a burst of misses for one UUID runs a single load.
+ * <p>
+ * The first caller starts the load and later callers share it until it completes. Every caller receives
+ * its own future, so cancelling one does not affect the others, the load itself is only cancelled
+ * once every caller cancelled. A failed load fails every caller and is not remembered,
+ * the next call starts a new load.
+ * </p>
+ *
+ * @param <V> the type of loaded value
+ */
+final class SingleFlight<V> {
+    private final ConcurrentHashMap<UUID, Flight<V>> flights = new ConcurrentHashMap<>();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder cancellations = new LongAdder();
+
+    /**
+     * Joins the load of a key in flight, or starts it.
+     *
+     * @param loader starts the load of the key
+     * @return a future of the loaded value, owned by this caller
+     */
+    @NotNull CompletableFuture<V> load(@NotNull UUID key, @NotNull Function<? super UUID, ? extends CompletableFuture<? extends V>> loader) {
+        while (true) {
+            Flight<V> flight = flights.get(key);
+            if (flight == null) {
+                Flight<V> started = new Flight<>();
+                if (flights.putIfAbsent(key, started) != null) continue;
+
+                started.join();
+                loads.increment();
+                start(key, started, loader);
+                return view(key, started);
+            }
+
+            if (flight.join()) {
+                deduplicated.increment();
+                return view(key, flight);
+            }
+            // every caller cancelled it, it is being removed
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * Joins the load of a key in flight, or runs it on this thread, blocking until the value is loaded.
+     *
+     * @param loader loads the value of the key
+     * @return the loaded value
+     * @throws IllegalStateException if the loader recursively loads the same key
+     */
+    V loadNow(@NotNull UUID key, @NotNull Function<? super UUID, ? extends V> loader) {
+        Flight<V> flight = flights.get(key);
+        if (flight != null && flight.leader == Thread.currentThread()) {
+            throw new IllegalStateException("Recursive load of " + key);
+        }
+
+        CompletableFuture<V> future = load(key, k -> {
+            try {
+                return CompletableFuture.completedFuture(loader.apply(k));
+            } catch (Throwable e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+
+    private void start(UUID key, Flight<V> flight, Function<? super UUID, ? extends CompletableFuture<? extends V>> loader) {
+        CompletableFuture<? extends V> source;
+        flight.leader = Thread.currentThread();
+        try {
+            source = loader.apply(key);
+        } catch (Throwable e) {
+            source = CompletableFuture.failedFuture(e);
+        } finally {
+            flight.leader = null;
+        }
+
+        flight.source = source;
+        source.whenComplete((value, error) -> {
+            flights.remove(key, flight);
+            if (error != null) {
+                failures.increment();
+                flight.shared.completeExceptionally(error);
+            } else {
+                flight.shared.complete(value);
+            }
+        });
+    }
+
+    private CompletableFuture<V> view(UUID key, Flight<V> flight) {
+        CompletableFuture<V> view = flight.shared.copy();
+        view.whenComplete((value, error) -> {
+            if (!view.isCancelled()) return;
+
+            cancellations.increment();
+            if (flight.leave()) {
+                flights.remove(key, flight);
+                flight.shared.cancel(false);
+                CompletableFuture<? extends V> source = flight.source;
+                if (source != null) source.cancel(true);
+            }
+        });
+        return view;
+    }
+
+    /**
+     * Returns the amount of loads started.
+     */
+    long loads() {
+        return loads.sum();
+    }
+
+    /**
+     * Returns the amount of callers which shared a load in flight instead of starting their own.
+     */
+    long deduplicated() {
+        return deduplicated.sum();
+    }
+
+    long failures() {
+        return failures.sum();
+    }
+
+    long cancellations() {
+        return cancellations.sum();
+    }
+
+    private static final class Flight<V> {
+        private final CompletableFuture<V> shared = new CompletableFuture<>();
+        /**
+         * The callers waiting for the load, -1 once every caller cancelled.
+         */
+        private final AtomicInteger waiters = new AtomicInteger();
+        private volatile CompletableFuture<? extends V> source;
+        private volatile Thread leader;
+
+        private boolean join() {
+            while (true) {
+                int current = waiters.get();
+                if (current < 0) return false;
+                if (waiters.compareAndSet(current, current + 1)) return true;
+            }
+        }
+
+        /**
+         * Returns whether the leaving caller was the last one, which closes the flight to new callers.
+         */
+        private boolean leave() {
+            return waiters.decrementAndGet() == 0 && waiters.compareAndSet(0, -1);
+        }
+    }
+}
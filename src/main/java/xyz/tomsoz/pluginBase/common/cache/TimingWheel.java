@@ -0,0 +1,181 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel, scheduling and cancelling a timer in constant time however many are pending.
+ * <p>
+ * There are five wheels of 64 buckets, the first one tick per bucket, every next one 64 times coarser.
+ * A timer is placed in the finest wheel which spans its deadline, and moved down a wheel each time the finer
+ * wheel wraps around, until it expires from the first. Timers are linked into the buckets themselves,
+ * so scheduling allocates nothing. Timers fire on the first advance at or after their deadline,
+ * never before it and at most one tick after it.
+ * </p>
+ * <p>
+ * This is not thread safe, the owner guards it with its own lock.
+ * </p>
+ *
+ * @param <E> the type of timer
+ */
+@SuppressWarnings("unchecked")
+final class TimingWheel<E extends TimingWheel.Timer> {
+    private static final int BITS = 6;
+    private static final int BUCKETS = 1 << BITS;
+    private static final int MASK = BUCKETS - 1;
+    private static final int LEVELS = 5;
+    /**
+     * Timers further out wait in the coarsest wheel and are placed again each time it comes around.
+     */
+    private static final long MAXIMUM_SPAN = (1L << (BITS * LEVELS)) - 1;
+
+    private final long tickNanos;
+    private final long origin;
+    private final Timer[][] wheels = new Timer[LEVELS][BUCKETS];
+    /**
+     * The next tick to process.
+     */
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickNanos the duration of a tick
+     * @param now       the current {@link System#nanoTime()}
+     */
+    TimingWheel(long tickNanos, long now) {
+        if (tickNanos <= 0) throw new IllegalArgumentException("tickNanos must be positive");
+        this.tickNanos = tickNanos;
+        this.origin = now;
+
+        for (Timer[] wheel : wheels) {
+            for (int i = 0; i < BUCKETS; i++) {
+                Timer sentinel = new Timer();
+                sentinel.previousTimer = sentinel;
+                sentinel.nextTimer = sentinel;
+                wheel[i] = sentinel;
+            }
+        }
+    }
+
+    /**
+     * Schedules a timer, moving it if it was already scheduled.
+     *
+     * @param deadline the {@link System#nanoTime()} to fire at
+     */
+    void schedule(@NotNull E timer, long deadline) {
+        cancel(timer);
+        // rounded up so a timer never fires before its deadline
+        long ticks = Math.ceilDiv(deadline - origin, tickNanos);
+        Timer scheduled = timer;
+        scheduled.deadlineTick = Math.max(ticks, currentTick);
+        place(scheduled);
+        size++;
+    }
+
+    /**
+     * Cancels a timer, doing nothing if it is not scheduled.
+     */
+    void cancel(@NotNull E timer) {
+        if (!timer.isScheduled()) return;
+
+        unlink(timer);
+        size--;
+    }
+
+    /**
+     * Processes every tick up to the current time, passing each timer which reached its deadline to the consumer.
+     * Expired timers are unscheduled before the consumer runs, so it may schedule them again.
+     *
+     * @param now the current {@link System#nanoTime()}
+     */
+    void advance(long now, @NotNull Consumer<? super E> expired) {
+        long target = Math.floorDiv(now - origin, tickNanos);
+        while (currentTick <= target) {
+            if (size == 0) {
+                // nothing to cascade or expire, skip straight to the target
+                currentTick = target + 1;
+                return;
+            }
+
+            long tick = currentTick;
+            cascade(tick);
+
+            Timer sentinel = wheels[0][(int) (tick & MASK)];
+            Timer timer = sentinel.nextTimer;
+            while (timer != sentinel) {
+                Timer next = timer.nextTimer;
+                unlink(timer);
+                size--;
+                expired.accept((E) timer);
+                timer = next;
+            }
+            currentTick = tick + 1;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Moves the timers of the coarser buckets reached at a tick into finer wheels, coarsest first.
+     */
+    private void cascade(long tick) {
+        int levels = 0;
+        while (levels < LEVELS - 1 && ((tick >>> (BITS * levels)) & MASK) == 0) levels++;
+
+        for (int level = levels; level >= 1; level--) {
+            Timer sentinel = wheels[level][(int) ((tick >>> (BITS * level)) & MASK)];
+            Timer timer = sentinel.nextTimer;
+            // the bucket is detached first, timers placed back into it are not visited again
+            sentinel.nextTimer = sentinel;
+            sentinel.previousTimer = sentinel;
+            while (timer != sentinel) {
+                Timer next = timer.nextTimer;
+                place(timer);
+                timer = next;
+            }
+        }
+    }
+
+    private void place(Timer timer) {
+        long delta = timer.deadlineTick - currentTick;
+        long placement = delta > MAXIMUM_SPAN ? currentTick + MAXIMUM_SPAN : timer.deadlineTick;
+        delta = Math.min(delta, MAXIMUM_SPAN);
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) level++;
+
+        Timer sentinel = wheels[level][(int) ((placement >>> (BITS * level)) & MASK)];
+        Timer last = sentinel.previousTimer;
+        timer.previousTimer = last;
+        timer.nextTimer = sentinel;
+        last.nextTimer = timer;
+        sentinel.previousTimer = timer;
+    }
+
+    private static void unlink(Timer timer) {
+        timer.previousTimer.nextTimer = timer.nextTimer;
+        timer.nextTimer.previousTimer = timer.previousTimer;
+        timer.previousTimer = null;
+        timer.nextTimer = null;
+    }
+
+    /**
+     * A timer linked into the bucket of its deadline, extended by the objects which expire.
+     */
+    static class Timer {
+        private long deadlineTick;
+        private @Nullable Timer previousTimer;
+        private @Nullable Timer nextTimer;
+
+        /**
+         * Returns whether the timer is scheduled.
+         */
+        boolean isScheduled() {
+            return nextTimer != null;
+        }
+    }
+}
@@ -0,0 +1,500 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A concurrent hash map keyed by {@link UUID}, storing each key as its two {@code long} halves.
+ * <p>
+ * The map is split into segments, each an open addressing table (linear probing, backward shift deletion)
+ * of parallel {@code long[]} keys and {@code Object[]} values guarded by a {@link StampedLock}.
+ * There are no entry objects and no key objects, so an entry costs two longs and one reference,
+ * against roughly 80 bytes for a {@link java.util.concurrent.ConcurrentHashMap} node and its UUID.
+ * </p>
+ * <p>
+ * Reads are optimistic and only fall back to the segment's read lock when they raced a write.
+ * Writes lock a single segment. Null values are not permitted.
+ * </p>
+ * <p>
+ * {@link #spliterator()} and {@link #forEachValueFrom(long, Predicate)} walk the tables in place without copying them.
+ * They are weakly consistent: values written meanwhile may or may not be seen, and a segment which grows
+ * or moves entries back on removal meanwhile may make them skip or repeat a value.
+ * </p>
+ *
+ * @param <V> the type of value
+ */
+@SuppressWarnings({"unused", "unchecked"})
+public final class UuidMap<V> {
+    private static final int SEGMENTS = 16;
+    private static final int SEGMENT_SHIFT = 64 - Integer.numberOfTrailingZeros(SEGMENTS);
+    private static final int MINIMUM_CAPACITY = 8;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public UuidMap() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSize the expected amount of entries, to size the tables up front
+     */
+    public UuidMap(int expectedSize) {
+        int perSegment = Math.max(MINIMUM_CAPACITY, tableSizeFor((int) ((long) expectedSize / SEGMENTS / Segment.LOAD_FACTOR) + 1));
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment(perSegment);
+    }
+
+    public @Nullable V get(@NotNull UUID key) {
+        return get(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    /**
+     * Returns the value of the key made up of the specified halves, without allocating a {@link UUID}.
+     */
+    public @Nullable V get(long mostSignificantBits, long leastSignificantBits) {
+        long hash = hash(mostSignificantBits, leastSignificantBits);
+        return (V) segmentFor(hash).get(mostSignificantBits, leastSignificantBits, hash);
+    }
+
+    public boolean containsKey(@NotNull UUID key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Associates the value with the key.
+     *
+     * @return the previous value, or null if there was none
+     */
+    public @Nullable V put(@NotNull UUID key, @NotNull V value) {
+        if (value == null) throw new NullPointerException("value");
+
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        long hash = hash(msb, lsb);
+        return (V) segmentFor(hash).put(msb, lsb, hash, value);
+    }
+
+    /**
+     * Replaces the value of the key with the result of the function, atomically for the key.
+     * The function runs under the lock of the key's segment and must not write to this map.
+     *
+     * @param function returns the new value from the key and its current value or null, null to remove the key
+     * @return the new value, or null if there is none
+     */
+    public @Nullable V compute(@NotNull UUID key, @NotNull BiFunction<? super UUID, ? super V, ? extends V> function) {
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        long hash = hash(msb, lsb);
+        return (V) segmentFor(hash).compute(msb, lsb, hash, key, (BiFunction<? super UUID, Object, Object>) function);
+    }
+
+    /**
+     * Removes the key.
+     *
+     * @return the removed value, or null if there was none
+     */
+    public @Nullable V remove(@NotNull UUID key) {
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        long hash = hash(msb, lsb);
+        return (V) segmentFor(hash).remove(msb, lsb, hash, null);
+    }
+
+    /**
+     * Removes the key only while it is associated with exactly this value.
+     *
+     * @return whether the key was removed
+     */
+    public boolean remove(@NotNull UUID key, @NotNull V value) {
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        long hash = hash(msb, lsb);
+        return segmentFor(hash).remove(msb, lsb, hash, value) != null;
+    }
+
+    /**
+     * Returns the amount of entries, which may already be outdated under concurrent writes.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) size += segment.size;
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Runs the action for every value, one segment at a time under its read lock.
+     * The action must not write to this map.
+     */
+    public void forEachValue(@NotNull Consumer<? super V> action) {
+        for (Segment segment : segments) segment.forEachValue((Consumer<Object>) action);
+    }
+
+    /**
+     * Returns a snapshot of the values.
+     */
+    public @NotNull List<V> values() {
+        List<V> values = new ArrayList<>(size());
+        forEachValue(values::add);
+        return values;
+    }
+
+    /**
+     * Returns a weakly consistent spliterator of the values, which splits by segment.
+     */
+    public @NotNull Spliterator<V> spliterator() {
+        return new ValueSpliterator(0, SEGMENTS);
+    }
+
+    /**
+     * Runs the action for the values from a position on, until it returns false, without holding any lock in between.
+     * This is weakly consistent, see {@link #spliterator()}.
+     *
+     * @param position the position to start at, 0 for the first value or one returned by an earlier call
+     * @param action   returns whether to continue with the next value
+     * @return the position after the last value the action ran for, or -1 if every value was visited
+     */
+    public long forEachValueFrom(long position, @NotNull Predicate<? super V> action) {
+        if (position < 0) throw new IllegalArgumentException("position");
+
+        int[] slot = new int[1];
+        for (int segment = (int) (position >>> 32); segment < SEGMENTS; segment++) {
+            int index = segment == position >>> 32 ? (int) position : 0;
+            Object value;
+            while ((value = segments[segment].next(index, slot)) != null) {
+                index = slot[0] + 1;
+                if (!action.test((V) value)) return (long) segment << 32 | index;
+            }
+        }
+        return -1;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) segment.clear();
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> SEGMENT_SHIFT)];
+    }
+
+    /**
+     * The 64-bit finalizer of MurmurHash3 over both halves, random UUIDs are already well mixed
+     * but time based ones are not.
+     */
+    private static long hash(long msb, long lsb) {
+        long h = msb ^ Long.rotateLeft(lsb, 32);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int tableSizeFor(int size) {
+        return size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+    }
+
+    private static final class Segment {
+        private static final float LOAD_FACTOR = 0.6F;
+
+        private final StampedLock lock = new StampedLock();
+        /**
+         * Pairs of most and least significant bits, slot {@code i} at {@code 2i} and {@code 2i + 1}.
+         */
+        private long[] keys;
+        /**
+         * The values, a null value marks an empty slot.
+         */
+        private Object[] values;
+        private volatile int size;
+        private int threshold;
+
+        private Segment(int capacity) {
+            this.keys = new long[capacity * 2];
+            this.values = new Object[capacity];
+            this.threshold = (int) (capacity * LOAD_FACTOR);
+        }
+
+        private Object get(long msb, long lsb, long hash) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                long[] keys = this.keys;
+                Object[] values = this.values;
+                // a racing resize may pair tables of different sizes, validation discards the result anyway
+                if (keys.length == values.length * 2) {
+                    Object value = find(keys, values, msb, lsb, hash);
+                    if (lock.validate(stamp)) return value;
+                }
+            }
+
+            stamp = lock.readLock();
+            try {
+                return find(keys, values, msb, lsb, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Probes for the key, bounded by the table length as a racing write may leave the table inconsistent.
+         */
+        private static Object find(long[] keys, Object[] values, long msb, long lsb, long hash) {
+            int mask = values.length - 1;
+            int index = (int) hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                Object value = values[index];
+                if (value == null) return null;
+                if (keys[index * 2] == msb && keys[index * 2 + 1] == lsb) return value;
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        private Object put(long msb, long lsb, long hash, Object value) {
+            long stamp = lock.writeLock();
+            try {
+                int mask = values.length - 1;
+                int index = (int) hash & mask;
+                while (values[index] != null) {
+                    if (keys[index * 2] == msb && keys[index * 2 + 1] == lsb) {
+                        Object previous = values[index];
+                        values[index] = value;
+                        return previous;
+                    }
+                    index = (index + 1) & mask;
+                }
+
+                keys[index * 2] = msb;
+                keys[index * 2 + 1] = lsb;
+                values[index] = value;
+                if (++size > threshold) resize();
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private Object compute(long msb, long lsb, long hash, UUID key, BiFunction<? super UUID, Object, Object> function) {
+            long stamp = lock.writeLock();
+            try {
+                int mask = values.length - 1;
+                int index = (int) hash & mask;
+                while (values[index] != null) {
+                    if (keys[index * 2] == msb && keys[index * 2 + 1] == lsb) {
+                        Object value = function.apply(key, values[index]);
+                        if (value != null) {
+                            values[index] = value;
+                        } else {
+                            shiftBack(index, mask);
+                            size--;
+                        }
+                        return value;
+                    }
+                    index = (index + 1) & mask;
+                }
+
+                Object value = function.apply(key, null);
+                if (value == null) return null;
+
+                keys[index * 2] = msb;
+                keys[index * 2 + 1] = lsb;
+                values[index] = value;
+                if (++size > threshold) resize();
+                return value;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Removes the key, only if mapped to the expected value when it is not null.
+         */
+        private Object remove(long msb, long lsb, long hash, @Nullable Object expected) {
+            long stamp = lock.writeLock();
+            try {
+                int mask = values.length - 1;
+                int index = (int) hash & mask;
+                while (values[index] != null) {
+                    if (keys[index * 2] == msb && keys[index * 2 + 1] == lsb) {
+                        Object removed = values[index];
+                        if (expected != null && removed != expected) return null;
+
+                        shiftBack(index, mask);
+                        size--;
+                        return removed;
+                    }
+                    index = (index + 1) & mask;
+                }
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Empties a slot, moving later entries of the same probe run back so no tombstones are needed.
+         */
+        private void shiftBack(int empty, int mask) {
+            int index = empty;
+            while (true) {
+                index = (index + 1) & mask;
+                Object value = values[index];
+                if (value == null) break;
+
+                int home = (int) hash(keys[index * 2], keys[index * 2 + 1]) & mask;
+                // the entry may only move back if its home slot is not between the empty slot and itself
+                boolean movable = empty <= index
+                        ? home <= empty || home > index
+                        : home <= empty && home > index;
+                if (!movable) continue;
+
+                keys[empty * 2] = keys[index * 2];
+                keys[empty * 2 + 1] = keys[index * 2 + 1];
+                values[empty] = value;
+                empty = index;
+            }
+            values[empty] = null;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            int capacity = oldValues.length * 2;
+            long[] newKeys = new long[capacity * 2];
+            Object[] newValues = new Object[capacity];
+            int mask = capacity - 1;
+
+            for (int i = 0; i < oldValues.length; i++) {
+                Object value = oldValues[i];
+                if (value == null) continue;
+
+                long msb = oldKeys[i * 2];
+                long lsb = oldKeys[i * 2 + 1];
+                int index = (int) hash(msb, lsb) & mask;
+                while (newValues[index] != null) index = (index + 1) & mask;
+
+                newKeys[index * 2] = msb;
+                newKeys[index * 2 + 1] = lsb;
+                newValues[index] = value;
+            }
+
+            this.keys = newKeys;
+            this.values = newValues;
+            this.threshold = (int) (capacity * LOAD_FACTOR);
+        }
+
+        /**
+         * Returns the value in the first occupied slot at or after the index, storing its slot, or null past the end.
+         */
+        private @Nullable Object next(int from, int[] slot) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                Object[] values = this.values;
+                int index = from;
+                while (index < values.length && values[index] == null) index++;
+                Object value = index < values.length ? values[index] : null;
+                if (lock.validate(stamp)) {
+                    slot[0] = index;
+                    return value;
+                }
+            }
+
+            stamp = lock.readLock();
+            try {
+                int index = from;
+                while (index < values.length && values[index] == null) index++;
+                slot[0] = index;
+                return index < values.length ? values[index] : null;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private void forEachValue(Consumer<Object> action) {
+            long stamp = lock.readLock();
+            try {
+                for (Object value : values) {
+                    if (value != null) action.accept(value);
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private void clear() {
+            long stamp = lock.writeLock();
+            try {
+                int capacity = Math.max(MINIMUM_CAPACITY, values.length / 4);
+                this.keys = new long[capacity * 2];
+                this.values = new Object[capacity];
+                this.threshold = (int) (capacity * LOAD_FACTOR);
+                this.size = 0;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    private final class ValueSpliterator implements Spliterator<V> {
+        private final int[] slot = new int[1];
+        private int segment;
+        private final int end;
+        private int index;
+
+        private ValueSpliterator(int segment, int end) {
+            this.segment = segment;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super V> action) {
+            while (segment < end) {
+                Object value = segments[segment].next(index, slot);
+                if (value != null) {
+                    index = slot[0] + 1;
+                    action.accept((V) value);
+                    return true;
+                }
+                segment++;
+                index = 0;
+            }
+            return false;
+        }
+
+        @Override
+        public @Nullable Spliterator<V> trySplit() {
+            int middle = (segment + 1 + end) >>> 1;
+            if (middle >= end || middle <= segment) return null;
+
+            ValueSpliterator prefix = new ValueSpliterator(segment, middle);
+            prefix.index = index;
+            segment = middle;
+            index = 0;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            long size = 0;
+            for (int i = segment; i < end; i++) size += segments[i].size;
+            return size;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | CONCURRENT;
+        }
+    }
+}
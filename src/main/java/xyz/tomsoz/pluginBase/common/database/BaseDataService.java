@@ -8,9 +8,11 @@ import xyz.tomsoz.pluginBase.common.flavor.annotations.inject.Inject;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -23,6 +25,7 @@ public abstract class BaseDataService {
     private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
     protected final Map<DatabaseType, Class<? extends DatabaseHandler>> databaseHandlers = new HashMap<>();
     protected DatabaseHandler handler;
+    private final List<Runnable> shutdownTasks = new CopyOnWriteArrayList<>();
 
     protected void configure(Logger logger, BasePlugin plugin) {
         this.logger = logger;
@@ -56,6 +59,18 @@ public abstract class BaseDataService {
         return CompletableFuture.runAsync(() -> handler.save(clazz, t), executor);
     }
 
+    /**
+     * Saves the objects in a single batch. Unlike the other actions this fails when the database is not connected,
+     * so callers such as a {@link xyz.tomsoz.pluginBase.common.cache.DataBackedCache} keep them to retry.
+     */
+    public <T> CompletableFuture<Void> saveAll(Class<T> clazz, Collection<? extends T> ts) {
+        if (!isConnected()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Tried to save %d objects when the database is not connected."
+                    .formatted(ts.size())));
+        }
+        return CompletableFuture.runAsync(() -> handler.saveAll(clazz, ts), executor);
+    }
+
     public <T> CompletableFuture<Void> delete(Class<T> clazz, T t) {
         if (!isConnected()) {
             logger.severe("Tried to perform database action when the database is not connected.");
@@ -84,8 +99,26 @@ public abstract class BaseDataService {
         return handler.isConnected();
     }
 
+    /**
+     * Runs a task when this service shuts down, while the database is still connected.
+     * This is used to flush pending writes, such as those of a {@link xyz.tomsoz.pluginBase.common.cache.DataBackedCache}.
+     *
+     * @param task the task to run
+     */
+    public void beforeShutdown(Runnable task) {
+        shutdownTasks.add(task);
+    }
+
     @Close
     public void shutdown() {
+        for (Runnable task : shutdownTasks) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Failed to run a shutdown task", e);
+            }
+        }
+
         try {
             executor.shutdown();
             boolean success = executor.awaitTermination(10, TimeUnit.SECONDS);
@@ -1,5 +1,6 @@
 package xyz.tomsoz.pluginBase.common.database;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -32,6 +33,16 @@ public interface Dao<T> {
      */
     void save(T t);
 
+    /**
+     * Save several objects of type T to the database.
+     * Implementations should override this to write them in a single batch.
+     *
+     * @param ts The objects to save
+     */
+    default void saveAll(Collection<? extends T> ts) {
+        for (T t : ts) save(t);
+    }
+
     /**
      * Update an object of type T in the database.
      *
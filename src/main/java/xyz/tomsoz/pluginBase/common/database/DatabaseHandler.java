@@ -1,5 +1,6 @@
 package xyz.tomsoz.pluginBase.common.database;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -17,6 +18,10 @@ public interface DatabaseHandler {
         getDao(clazz).save(t);
     }
 
+    default <T> void saveAll(Class<T> clazz, Collection<? extends T> ts) {
+        this.<T>getDao(clazz).saveAll(ts);
+    }
+
     default <T> void update(Class<T> clazz, T t, String[] params) {
         getDao(clazz).update(t, params);
     }
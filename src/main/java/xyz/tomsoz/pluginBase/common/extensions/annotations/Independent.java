@@ -0,0 +1,19 @@
+package xyz.tomsoz.pluginBase.common.extensions.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a lifecycle method, such as one annotated with {@link ExtensionReload}, as not depending
+ * on any other method of the same lifecycle annotation.
+ * <p>
+ * Independent methods are run concurrently on virtual threads, alongside the other methods
+ * which still run one after another on the calling thread. The call returns once every method is done.
+ * </p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Independent {
+}
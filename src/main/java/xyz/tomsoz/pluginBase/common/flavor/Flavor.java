@@ -6,17 +6,20 @@ import xyz.tomsoz.pluginBase.common.flavor.annotations.Configure;
 import xyz.tomsoz.pluginBase.common.flavor.annotations.IgnoreAutoScan;
 import xyz.tomsoz.pluginBase.common.flavor.annotations.Service;
 import xyz.tomsoz.pluginBase.common.flavor.annotations.inject.Inject;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.inject.condition.Named;
 import xyz.tomsoz.pluginBase.common.flavor.binder.FlavorBinder;
 import xyz.tomsoz.pluginBase.common.flavor.binder.FlavorBinderContainer;
+import xyz.tomsoz.pluginBase.common.flavor.binder.FlavorBinderRegistry;
+import xyz.tomsoz.pluginBase.common.flavor.profiler.LifecyclePhase;
+import xyz.tomsoz.pluginBase.common.flavor.profiler.LifecycleProfiler;
 
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
 import java.util.*;
-import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
 
 /**
  * Flavor is a light-weight kotlin IoC container and lifecycle management framework developed by GrowlyX (Subham)
@@ -25,17 +28,68 @@ import java.util.stream.Collectors;
  */
 @SuppressWarnings("unused")
 public class Flavor {
+    /**
+     * The singleton field of each class, the field is looked up once but read on every call as it may not be final.
+     */
+    private static final ClassValue<Field> INSTANCE_FIELDS = new ClassValue<>() {
+        @Override
+        protected Field computeValue(Class<?> clazz) {
+            try {
+                return clazz.getField("INSTANCE");
+            } catch (NoSuchFieldException ignored) {
+                try {
+                    return clazz.getField("instance");
+                } catch (NoSuchFieldException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+    };
+
     private final FlavorOptions options;
 
+    public final LifecycleProfiler profiler;
     public final PackageIndexer reflections;
 
-    public final List<FlavorBinder<?>> binders = new ArrayList<>();
-    public final Map<Class<?>, Object> services = new HashMap<>();
+    public final FlavorBinderRegistry binders = new FlavorBinderRegistry();
+    /**
+     * A read-only view of the registered services by class, safe to read from any thread.
+     */
+    public final Map<Class<?>, Object> services = new AbstractMap<>() {
+        @Override
+        public Object get(Object key) {
+            ServiceNode node = key instanceof Class<?> type ? serviceTable.exact(type) : null;
+            return node != null ? node.instance : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Class<?> type && serviceTable.exact(type) != null;
+        }
+
+        @Override
+        public Set<Entry<Class<?>, Object>> entrySet() {
+            Map<Class<?>, Object> snapshot = new LinkedHashMap<>();
+            for (ServiceNode node : serviceTable.nodes()) snapshot.put(node.type, node.instance);
+            return Collections.unmodifiableMap(snapshot).entrySet();
+        }
+    };
+
+    private volatile ServiceTable serviceTable = ServiceTable.EMPTY;
+
+    private volatile InjectionPlans injectionPlans = new InjectionPlans(-1, -1);
+    private volatile int servicesVersion;
+
+    private @Nullable ServiceGraph serviceGraph;
+    // guarded by this
+    private final List<ServiceNode> lateServices = new ArrayList<>();
+    private final List<Runnable> closeTasks = new ArrayList<>();
 
     private Flavor(Class<?> initializer, FlavorOptions options) {
         this.options = options;
 
-        this.reflections = new PackageIndexer(initializer, options);
+        this.profiler = new LifecycleProfiler(initializer.getSimpleName(), options.logger());
+        this.reflections = new PackageIndexer(initializer, options, profiler);
     }
 
     /**
@@ -62,23 +116,30 @@ public class Flavor {
      * and populate our binders with its ones.
      */
     public Flavor inherit(FlavorBinderContainer container) {
-        container.populate();
-        binders.addAll(container.binders);
+        profiler.time(LifecyclePhase.BINDERS, container.getClass().getSimpleName(), container::populate);
+        binders.registerAll(container.binders);
         return this;
     }
 
     /**
      * Searches for and returns a
      * service matching type T.
+     * <p>
+     * The service registered under T itself wins, otherwise the first registered
+     * service implementing or extending T is returned. This is safe to call from any thread.
+     * {@link Service#lazy() Lazy} services are configured before being returned.
+     * </p>
      *
      * @return the service
      * @throws RuntimeException if there is
      *                          no service matching type T.
      */
     public <T> T service(Class<T> clazz) {
-        var service = services.get(clazz);
-        if (service == null) throw new IllegalArgumentException("A non-service class was provided.");
-        return (T) service;
+        ServiceNode node = serviceTable.resolve(clazz);
+        if (node == null) throw new IllegalArgumentException("A non-service class was provided.");
+
+        if (node.lazy()) initialize(node);
+        return clazz.cast(node.instance);
     }
 
     /**
@@ -86,31 +147,21 @@ public class Flavor {
      */
     public <T> FlavorBinder<T> bind(Class<T> clazz) {
         var binder = new FlavorBinder<>(clazz);
-        binders.add(binder);
+        binders.register(binder);
         return binder;
     }
 
     /**
      * Creates and inject a new instance of the clazz;
+     * <p>
+     * The constructor is picked by the types of the params, any constructor whose
+     * parameters accept them may be used, including primitive and supertype parameters.
+     * </p>
      *
      * @return the injected instance of clazz
      */
     public <T> T injected(Class<T> clazz, Object... params) {
-        T instance;
-        try {
-            if (params.length == 0) {
-                instance = clazz.getDeclaredConstructor().newInstance();
-            } else {
-                instance = clazz.getDeclaredConstructor(
-                                Arrays.stream(params)
-                                        .map(Object::getClass)
-                                        .toArray(Class[]::new)
-                        )
-                        .newInstance(Arrays.stream(params).toArray());
-            }
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        T instance = clazz.cast(InstanceFactory.of(clazz).create(params));
 
         inject(instance);
         return instance;
@@ -137,74 +188,139 @@ public class Flavor {
                 }).reversed())
                 .toList();
 
+        List<ServiceNode> nodes = new ArrayList<>();
         for (Class<?> clazz : classes) {
             IgnoreAutoScan ignoreAutoScan = clazz.getAnnotation(IgnoreAutoScan.class);
 
             if (ignoreAutoScan == null) {
                 try {
-                    scanAndInject(clazz, objectInstance(clazz));
+                    nodes.add(new ServiceNode(clazz, objectInstance(clazz)));
                 } catch (Exception e) {
                     options.logger().log(Level.WARNING, "An exception was thrown during injection", e);
                 }
             }
         }
+
+        // every service is registered before injecting,
+        // so that services can inject each other
+        publish(nodes);
+
+        for (Iterator<ServiceNode> iterator = nodes.iterator(); iterator.hasNext(); ) {
+            ServiceNode node = iterator.next();
+            try (LifecycleProfiler.Timing timing = profiler.start(LifecyclePhase.INJECT, node.name)) {
+                try {
+                    injectionPlan(node.type).inject(node.instance);
+                } catch (Exception e) {
+                    timing.fail();
+                    throw e;
+                }
+            } catch (Exception e) {
+                options.logger().log(Level.WARNING, "An exception was thrown during injection", e);
+                unpublish(node.type);
+                iterator.remove();
+            }
+        }
+
+        ServiceGraph graph = new ServiceGraph(nodes, options.logger());
+        this.serviceGraph = graph;
+        long start = System.nanoTime();
+        graph.startup(node -> {
+            // lazy services are configured on first use, unless an eager service needs them now
+            if (node.lazy() && node.dependents.stream().allMatch(ServiceNode::lazy)) {
+                options.logger().info("[Services] [%s] Deferred until first use.".formatted(node.name));
+                return;
+            }
+            initialize(node);
+        });
+        long milli = (System.nanoTime() - start) / 1_000_000L;
+
+        if (!nodes.isEmpty()) {
+            StringJoiner criticalPath = new StringJoiner(" -> ");
+            for (ServiceNode node : graph.criticalPath()) {
+                criticalPath.add("%s (%sms)".formatted(node.name, (node.configureEnd - node.configureStart) / 1_000_000L));
+            }
+            options.logger().info("[Services] Started %s services in %sms, critical path: %s.".formatted(
+                    nodes.stream().filter(ServiceNode::initialized).count(), milli, criticalPath
+            ));
+        }
+    }
+
+    /**
+     * Runs a task when this flavor closes, before any service is closed.
+     * This is used to persist state services still hold, such as a {@link xyz.tomsoz.pluginBase.common.cache.CacheSnapshot}.
+     *
+     * @param task the task to run
+     */
+    public synchronized void beforeClose(Runnable task) {
+        closeTasks.add(task);
     }
 
     /**
      * Invokes the {@link Close} method in all registered services. If a
      * service does not have a close method, the service will be skipped.
+     * <p>
+     * Services are closed in the reverse order they were configured in, services
+     * which don't depend on each other may close concurrently, see {@link ServiceGraph}.
+     * </p>
      */
     public void close() {
-        for (Map.Entry<Class<?>, Object> entry : services.entrySet()) {
-            Optional<Method> close = Arrays.stream(entry.getKey().getDeclaredMethods())
-                    .filter(it -> it.isAnnotationPresent(Close.class))
-                    .findFirst();
+        List<Runnable> tasks;
+        synchronized (this) {
+            tasks = List.copyOf(closeTasks);
+            closeTasks.clear();
+        }
+        for (Runnable task : tasks) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                options.logger().log(Level.SEVERE, "An exception was thrown while running a close task", e);
+            }
+        }
 
-            Service service = entry.getKey().getDeclaredAnnotation(Service.class);
+        // services registered after startup close first, newest first
+        List<ServiceNode> late;
+        synchronized (this) {
+            late = List.copyOf(lateServices.reversed());
+            lateServices.clear();
+        }
+        for (ServiceNode node : late) {
+            closeService(node);
+        }
 
-            long milli = tracked(() -> close.ifPresent(it -> {
-                try {
-                    it.invoke(entry.getValue());
-                } catch (IllegalAccessException | InvocationTargetException e) {
-                    options.logger().log(Level.SEVERE, "An exception was thrown while closing service - {}", e);
-                }
-            }));
-
-            if (milli != -1L) {
-                options.logger().info(
-                        "[Services] [%s] Shutdown in %sms.".formatted(
-                                !service.name().isEmpty() ? service.name() : entry.getKey().getSimpleName(),
-                                milli
-                        )
-                );
-            } else {
-                options.logger().info(
-                        "[Services] [%s] Failed to shutdown!".formatted(
-                                !service.name().isEmpty() ? service.name() : entry.getKey().getSimpleName()
-                        )
-                );
-            }
+        if (serviceGraph != null) {
+            serviceGraph.shutdown(
+                    node -> {
+                        // lazy services which were never used were never configured
+                        if (node.initialized()) closeService(node);
+                    },
+                    options.closeTimeout().toMillis(),
+                    options.serviceCloseTimeout().toMillis(),
+                    options.logger()
+            );
+            serviceGraph = null;
         }
     }
 
     /**
-     * Invokes the provided {@code lambda } while keeping track of
-     * the amount of time it took to run in milliseconds.
-     * <p>
-     * Any exception thrown within the lambda will be printed,
-     * and {@code -1} will be returned.
+     * Invokes the {@link Close} method of a service, logging how long it took.
+     * Any exception thrown while closing is logged rather than rethrown.
      */
-    private long tracked(Runnable lambda) {
-        long start = System.currentTimeMillis();
-
-        try {
-            lambda.run();
-        } catch (Exception exception) {
-            options.logger().log(Level.SEVERE, "Failed to invoke lambda", exception);
-            return -1;
+    private void closeService(ServiceNode node) {
+        try (LifecycleProfiler.Timing timing = profiler.start(LifecyclePhase.CLOSE, node.name)) {
+            try {
+                node.close();
+            } catch (Throwable e) {
+                timing.fail();
+                throw e;
+            }
+        } catch (Throwable e) {
+            options.logger().log(Level.SEVERE, "An exception was thrown while closing service - " + node.name, e);
+            options.logger().info("[Services] [%s] Failed to shutdown!".formatted(node.name));
+            return;
         }
 
-        return System.currentTimeMillis() - start;
+        long milli = (node.closeEnd - node.closeStart) / 1_000_000L;
+        options.logger().info("[Services] [%s] Shutdown in %sms.".formatted(node.name, milli));
     }
 
     /**
@@ -214,81 +330,238 @@ public class Flavor {
     private void scanAndInject(Class<?> clazz, @Nullable Object instance) {
         Object singleton = instance != null ? instance : objectInstance(clazz);
 
+        // checking if this class is a service
+        boolean isServiceClazz = clazz.isAnnotationPresent(Service.class);
+
+        InjectionPlan plan = injectionPlan(clazz);
+        if (singleton != null) {
+            if (isServiceClazz) {
+                // only services are profiled, plain objects may be injected at any rate
+                profiler.time(LifecyclePhase.INJECT, clazz.getSimpleName(), () -> plan.inject(singleton));
+            } else {
+                plan.inject(singleton);
+            }
+        }
+
+        if (!isServiceClazz) return;
+
+        // singletons should always be non-null
+        ServiceNode node = new ServiceNode(clazz, singleton);
+        // late services are not part of the graph, the lazy services they inject by class are configured first
         for (Field field : clazz.getDeclaredFields()) {
-            // making sure this field is annotated with
-            // Inject before modifying its value.
-            if (field.isAnnotationPresent(Inject.class)) {
-                // trying to find [FlavorBinder]s
-                // of the field's type
-                List<FlavorBinder<?>> bindersOfType = binders
-                        .stream()
-                        .filter(it -> it.getClazz().isAssignableFrom(field.getType()))
-                        .collect(Collectors.toList());
-
-                for (FlavorBinder<?> flavorBinder : bindersOfType) {
-                    for (Annotation annotation : field.getDeclaredAnnotations()) {
-                        // making sure if there are any annotation
-                        // checks, that the field passes the check
-                        Predicate<Annotation> predicate = flavorBinder.getAnnotationCheck(annotation.getClass());
-                        boolean passesCheck = predicate == null || predicate.test(annotation);
-
-                        if (!passesCheck) {
-                            bindersOfType.remove(flavorBinder);
-                        }
-                    }
-                }
+            if (!field.isAnnotationPresent(Inject.class) || field.getType().isInterface()) continue;
+            ServiceNode dependency = serviceTable.resolve(field.getType());
+            if (dependency != null && dependency.lazy()) node.dependencies.add(dependency);
+        }
+        if (publishLate(node)) initialize(node);
+    }
 
-                // retrieving the first binder of the field's type
-                FlavorBinder<?> binder = bindersOfType.getFirst();
-                boolean accessibility = field.canAccess(singleton);
+    /**
+     * Publishes a service registered after startup, unless the table already holds this very instance,
+     * which was registered at startup or by an earlier injection and is configured and closed already.
+     *
+     * @return whether the service was added
+     */
+    private synchronized boolean publishLate(ServiceNode node) {
+        ServiceNode existing = serviceTable.exact(node.type);
+        if (existing != null && existing.instance == node.instance) return false;
 
-                if (singleton == null) continue;
+        publish(List.of(node));
+        lateServices.add(node);
+        return true;
+    }
 
-                try {
-                    field.setAccessible(true);
-                    field.set(singleton, binder.instance);
-                    field.setAccessible(accessibility);
-                } catch (IllegalAccessException e) {
-                    options.logger().log(Level.SEVERE, "An exception was thrown while injecting field - {}", e);
-                }
+    /**
+     * Publishes a copy of the service table with the services added.
+     */
+    private synchronized void publish(Collection<ServiceNode> nodes) {
+        serviceTable = serviceTable.withAll(nodes);
+        servicesVersion++;
+    }
+
+    /**
+     * Publishes a copy of the service table without the service.
+     */
+    private synchronized void unpublish(Class<?> type) {
+        serviceTable = serviceTable.without(type);
+        servicesVersion++;
+    }
+
+    /**
+     * Configures a service exactly once, after any lazy services it depends on.
+     */
+    private void initialize(ServiceNode node) {
+        node.initialize(() -> {
+            for (ServiceNode dependency : node.dependencies) {
+                if (dependency.lazy()) initialize(dependency);
+            }
+            configure(node);
+        });
+    }
+
+    /**
+     * Invokes the {@link Configure} method of a service, logging how long it took.
+     * Any exception thrown while configuring is logged rather than rethrown.
+     */
+    private void configure(ServiceNode node) {
+        try (LifecycleProfiler.Timing timing = profiler.start(LifecyclePhase.CONFIGURE, node.name)) {
+            try {
+                node.configure();
+            } catch (Throwable e) {
+                timing.fail();
+                throw e;
             }
+        } catch (Throwable e) {
+            options.logger().log(
+                    Level.SEVERE,
+                    "An exception was thrown while configuring service - " + node.name,
+                    e
+            );
+            options.logger().info("[Services] [%s] Failed to load!".formatted(node.name));
+            return;
         }
 
-        // checking if this class is a service
-        boolean isServiceClazz = clazz.isAnnotationPresent(Service.class);
+        long milli = (node.configureEnd - node.configureStart) / 1_000_000L;
+        options.logger().info("[Services] [%s] Loaded in %sms.".formatted(node.name, milli));
+    }
 
-        if (!isServiceClazz) return;
-        Optional<Method> configure = Arrays.stream(clazz.getDeclaredMethods())
-                .filter(it -> it.isAnnotationPresent(Configure.class))
-                .findFirst();
+    /**
+     * Resolves the value to inject into a field, a matching binder or
+     * otherwise a registered service of a compatible type.
+     */
+    private @Nullable Supplier<?> resolveInjection(Field field) {
+        if (field.getType() == Scoped.class) return resolveScoped(field);
+        if (field.getType() == Lazy.class) return resolveLazy(field);
+
+        FlavorBinder<?> binder = binders.resolve(field);
+        if (binder != null) {
+            if (binder.scope.isContextual()) {
+                throw new IllegalStateException("Field %s in %s must be a Scoped<%s>, its binder is %s scoped".formatted(
+                        field.getName(), field.getDeclaringClass().getName(), field.getType().getSimpleName(), binder.scope
+                ));
+            }
+            return () -> binder.instance;
+        }
 
-        // singletons should always be non-null
-        services.put(clazz, singleton);
+        Class<?> type = field.getType();
+        ServiceNode node = serviceTable.resolve(type);
+        if (node == null) return null;
+        if (!node.lazy()) {
+            Object instance = node.instance;
+            return () -> instance;
+        }
 
-        Service service = clazz.getDeclaredAnnotation(Service.class);
-        String serviceName = !service.name().isEmpty() ? service.name() : clazz.getSimpleName();
+        if (type.isInterface()) {
+            Object proxy = lazyProxy(type, node);
+            return () -> proxy;
+        }
+        // the field is a dependency in the service graph, which configures the service before the one injecting it
+        if (!field.getDeclaringClass().isAnnotationPresent(Service.class)) {
+            throw new IllegalStateException("Field %s in %s must be an interface or a Lazy<%s>, %s is a lazy service".formatted(
+                    field.getName(), field.getDeclaringClass().getName(), type.getSimpleName(), node.name
+            ));
+        }
+        Object instance = node.instance;
+        return () -> instance;
+    }
 
-        long milli = tracked(() -> configure.ifPresent(it -> {
+    /**
+     * Resolves a {@link Lazy} field to a handle of the service of its type argument.
+     */
+    private @Nullable Supplier<?> resolveLazy(Field field) {
+        if (!(field.getGenericType() instanceof ParameterizedType type)
+                || !(type.getActualTypeArguments()[0] instanceof Class<?> argument)) {
+            throw new IllegalStateException("Field %s in %s must declare the type of Lazy".formatted(
+                    field.getName(), field.getDeclaringClass().getName()
+            ));
+        }
+
+        ServiceNode node = serviceTable.resolve(argument);
+        if (node == null) return null;
+
+        Lazy<?> lazy = new Lazy<>(argument, node, this::initialize);
+        return () -> lazy;
+    }
+
+    /**
+     * Resolves a {@link Scoped} field to the instances of the thread scoped binder of its type argument.
+     */
+    private @Nullable Supplier<?> resolveScoped(Field field) {
+        if (!(field.getGenericType() instanceof ParameterizedType type)
+                || !(type.getActualTypeArguments()[0] instanceof Class<?> argument)) {
+            throw new IllegalStateException("Field %s in %s must declare the type of Scoped".formatted(
+                    field.getName(), field.getDeclaringClass().getName()
+            ));
+        }
+
+        Named named = field.getAnnotation(Named.class);
+        FlavorBinder<?> binder = binders.resolve(argument, named != null ? named.value() : null);
+        if (binder == null || !binder.scope.isContextual()) return null;
+
+        Scoped<?> scoped = binder.getScoped();
+        return () -> scoped;
+    }
+
+    /**
+     * Creates a proxy of an interface, which configures the lazy service on its first call.
+     * {@code equals}, {@code hashCode} and {@code toString} are answered by the proxy itself,
+     * so logging it or using it as a key does not configure the service.
+     */
+    private Object lazyProxy(Class<?> type, ServiceNode node) {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> "Lazy[" + node.name + "]";
+                };
+            }
+
+            initialize(node);
             try {
-                it.invoke(singleton);
-            } catch (IllegalAccessException | InvocationTargetException e) {
-                options.logger().log(
-                        Level.SEVERE,
-                        "An exception was thrown while configuring service - " + serviceName,
-                        e
-                );
+                return method.invoke(node.instance, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
             }
-        }));
-
-        // making sure an exception wasn't thrown
-        // while trying to configure the service
-        if (milli != -1L) {
-            options.logger().info("[Services] [%s] Loaded in %sms.".formatted(serviceName, milli));
-        } else {
-            options.logger().info("[Services] [%s] Failed to load!".formatted(serviceName));
+        });
+    }
+
+    /**
+     * Returns the cached injection plan of a class, rebuilding the cache
+     * if any binders or services were registered since it was created.
+     */
+    private InjectionPlan injectionPlan(Class<?> clazz) {
+        InjectionPlans plans = injectionPlans;
+        if (plans.bindersVersion != binders.version() || plans.servicesVersion != servicesVersion) {
+            plans = new InjectionPlans(binders.version(), servicesVersion);
+            injectionPlans = plans;
         }
+        return plans.get(clazz);
     }
 
+    private final class InjectionPlans extends ClassValue<InjectionPlan> {
+        private final int bindersVersion;
+        private final int servicesVersion;
+
+        private InjectionPlans(int bindersVersion, int servicesVersion) {
+            this.bindersVersion = bindersVersion;
+            this.servicesVersion = servicesVersion;
+        }
+
+        @Override
+        protected InjectionPlan computeValue(Class<?> type) {
+            return InjectionPlan.build(type, Flavor.this::resolveInjection);
+        }
+    }
+
+    /**
+     * Returns the singleton field of the class, {@code INSTANCE} or {@code instance}.
+     *
+     * @throws RuntimeException if the class has neither
+     */
+    static Field instanceField(Class<?> clazz) {
+        return INSTANCE_FIELDS.get(clazz);
+    }
 
     /**
      * Returns the singleton instance of the class, if any.
@@ -296,18 +569,8 @@ public class Flavor {
      * @return the singleton instance, or null if there is none
      */
     public static Object objectInstance(Class<?> clazz) {
-        Field instanceField;
-        try {
-            instanceField = clazz.getField("INSTANCE");
-        } catch (NoSuchFieldException ignored) {
-            try {
-                instanceField = clazz.getField("instance");
-            } catch (NoSuchFieldException e) {
-                throw new RuntimeException(e);
-            }
-        }
         try {
-            return instanceField.get(null);
+            return INSTANCE_FIELDS.get(clazz).get(null);
         } catch (IllegalAccessException e) {
             throw new RuntimeException(e);
         }
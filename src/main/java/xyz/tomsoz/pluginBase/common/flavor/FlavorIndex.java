@@ -0,0 +1,229 @@
+package xyz.tomsoz.pluginBase.common.flavor;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.CodeSource;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A build-time index of the annotated types, annotated methods and subtypes of a plugin.
+ * <p>
+ * The index is written into the jar by
+ * {@link xyz.tomsoz.pluginBase.common.flavor.processor.FlavorIndexProcessor} and is read by
+ * {@link PackageIndexer} in place of a runtime classpath scan.
+ * </p>
+ * <p>
+ * Every line of the index is one {@link Entry}, made up of space separated columns:
+ * <pre>
+ * T &lt;annotation&gt; &lt;type&gt;
+ * M &lt;annotation&gt; &lt;type&gt; &lt;method&gt;(&lt;parameter&gt;,...)
+ * S &lt;super type&gt; &lt;type&gt;
+ * </pre>
+ * </p>
+ */
+@SuppressWarnings("unused")
+public final class FlavorIndex {
+    public static final String RESOURCE = "META-INF/pluginbase/flavor.index";
+    private static final String HEADER = "# PluginBase flavor index v1";
+
+    private final Map<String, List<String>> typesAnnotated = new HashMap<>();
+    private final Map<String, List<Entry>> methodsAnnotated = new HashMap<>();
+    private final Map<String, List<String>> subTypes = new HashMap<>();
+
+    private FlavorIndex(Collection<Entry> entries) {
+        for (Entry entry : entries) {
+            switch (entry.kind()) {
+                case TYPE -> typesAnnotated.computeIfAbsent(entry.key(), k -> new ArrayList<>()).add(entry.type());
+                case METHOD -> methodsAnnotated.computeIfAbsent(entry.key(), k -> new ArrayList<>()).add(entry);
+                case SUB_TYPE -> subTypes.computeIfAbsent(entry.key(), k -> new ArrayList<>()).add(entry.type());
+            }
+        }
+    }
+
+    /**
+     * Loads the index shipped alongside the {@code owner} class, keeping only
+     * the entries which belong to {@code mainPackage}.
+     *
+     * @param owner       the class whose jar should contain the index
+     * @param mainPackage the package to filter entries by, or null to keep every entry
+     * @param logger      the logger to report unreadable indexes to
+     * @return the index, or null if the jar does not contain one
+     */
+    public static @Nullable FlavorIndex load(@NotNull Class<?> owner, @Nullable String mainPackage, @NotNull Logger logger) {
+        ClassLoader loader = owner.getClassLoader();
+        if (loader == null) return null;
+
+        CodeSource source = owner.getProtectionDomain().getCodeSource();
+        String location = source != null && source.getLocation() != null ? source.getLocation().toString() : null;
+
+        List<Entry> entries = new ArrayList<>();
+        boolean found = false;
+        try {
+            Enumeration<URL> resources = loader.getResources(RESOURCE);
+            while (resources.hasMoreElements()) {
+                URL url = resources.nextElement();
+                // the plugin's parent loaders may expose indexes from other jars
+                if (location != null && !url.toString().contains(location)) continue;
+
+                try (Reader reader = new InputStreamReader(url.openStream(), StandardCharsets.UTF_8)) {
+                    for (Entry entry : read(reader)) {
+                        if (mainPackage == null || entry.type().startsWith(mainPackage + ".")) {
+                            entries.add(entry);
+                        }
+                    }
+                }
+                found = true;
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read the flavor index, falling back to a classpath scan", e);
+            return null;
+        }
+
+        return found ? new FlavorIndex(entries) : null;
+    }
+
+    /**
+     * Parses the entries of an index.
+     *
+     * @param reader the index contents
+     * @return the entries, in the order they were written
+     * @throws IOException if the index could not be read
+     */
+    public static @NotNull List<Entry> read(@NotNull Reader reader) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        BufferedReader buffered = new BufferedReader(reader);
+
+        String line;
+        while ((line = buffered.readLine()) != null) {
+            if (line.isBlank() || line.startsWith("#")) continue;
+
+            String[] columns = line.split(" ");
+            Kind kind = Kind.of(columns[0].charAt(0));
+            if (kind == null || columns.length < 3) {
+                throw new IOException("Malformed flavor index line: " + line);
+            }
+            entries.add(new Entry(kind, columns[1], columns[2], columns.length > 3 ? columns[3] : null));
+        }
+        return entries;
+    }
+
+    /**
+     * Writes the entries of an index.
+     *
+     * @param entries the entries to write
+     * @param writer  the destination
+     * @throws IOException if the index could not be written
+     */
+    public static void write(@NotNull Collection<Entry> entries, @NotNull Writer writer) throws IOException {
+        writer.write(HEADER);
+        writer.write('\n');
+        for (Entry entry : entries) {
+            writer.write(entry.toString());
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * Returns the binary names of the types annotated with the specified annotation.
+     */
+    public @NotNull List<String> getTypesAnnotatedWith(@NotNull String annotation) {
+        return typesAnnotated.getOrDefault(annotation, List.of());
+    }
+
+    /**
+     * Returns the method entries annotated with the specified annotation.
+     */
+    public @NotNull List<Entry> getMethodsAnnotatedWith(@NotNull String annotation) {
+        return methodsAnnotated.getOrDefault(annotation, List.of());
+    }
+
+    /**
+     * Returns the binary names of every direct and indirect subtype of the specified type.
+     */
+    public @NotNull List<String> getSubTypes(@NotNull String type) {
+        return subTypes.getOrDefault(type, List.of());
+    }
+
+    /**
+     * Roughly estimates the heap retained by the index from fixed per-entry costs,
+     * assuming compressed oops and compact strings, see {@link PackageIndexer#compact(Collection)}.
+     */
+    long estimatedSize() {
+        long size = 48;
+        for (Map<String, ? extends List<?>> map : List.of(typesAnnotated, methodsAnnotated, subTypes)) {
+            for (Map.Entry<String, ? extends List<?>> entry : map.entrySet()) {
+                size += 32 + PackageIndexer.stringSize(entry.getKey()) + 24 + 4L * entry.getValue().size();
+                for (Object value : entry.getValue()) {
+                    // entries share their key, only the type and member are their own
+                    if (value instanceof Entry it) {
+                        size += 32 + PackageIndexer.stringSize(it.type()) + (it.member() != null ? PackageIndexer.stringSize(it.member()) : 0);
+                    } else {
+                        size += PackageIndexer.stringSize((String) value);
+                    }
+                }
+            }
+        }
+        return size;
+    }
+
+    public enum Kind {
+        TYPE('T'),
+        METHOD('M'),
+        SUB_TYPE('S'),
+        ;
+
+        private final char id;
+
+        Kind(char id) {
+            this.id = id;
+        }
+
+        private static @Nullable Kind of(char id) {
+            for (Kind kind : values()) {
+                if (kind.id == id) return kind;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A single line of the index.
+     *
+     * @param kind   what the entry describes
+     * @param key    the annotation, or the super type for {@link Kind#SUB_TYPE}
+     * @param type   the binary name of the indexed type
+     * @param member the method signature for {@link Kind#METHOD}, in the form {@code name(param,param)}
+     */
+    public record Entry(@NotNull Kind kind, @NotNull String key, @NotNull String type, @Nullable String member) {
+        /**
+         * Returns the name of the method this entry describes.
+         */
+        public @NotNull String methodName() {
+            return member == null ? "" : member.substring(0, member.indexOf('('));
+        }
+
+        /**
+         * Returns the type names, as in {@link Class#getTypeName()}, of the parameters of the method this entry describes.
+         */
+        public @NotNull List<String> parameterTypes() {
+            if (member == null) return List.of();
+            String parameters = member.substring(member.indexOf('(') + 1, member.length() - 1);
+            return parameters.isEmpty() ? List.of() : List.of(parameters.split(","));
+        }
+
+        @Override
+        public String toString() {
+            return kind.id + " " + key + " " + type + (member != null ? " " + member : "");
+        }
+    }
+}
@@ -1,10 +1,23 @@
 package xyz.tomsoz.pluginBase.common.flavor;
 
 import javax.annotation.CheckForNull;
+import java.time.Duration;
 import java.util.logging.Logger;
 
+/**
+ * The options of a {@link Flavor} instance.
+ *
+ * @param logger              the logger services are reported to
+ * @param mainPackage         the package to scan, or null
+ * @param closeTimeout        how long {@link Flavor#close()} waits for all services to close
+ * @param serviceCloseTimeout how long {@link Flavor#close()} waits for a single service to close,
+ *                            unless the service specifies its own timeout
+ */
 @SuppressWarnings("unused")
-public record FlavorOptions(Logger logger, String mainPackage) {
+public record FlavorOptions(Logger logger, String mainPackage, Duration closeTimeout, Duration serviceCloseTimeout) {
+    public static final Duration DEFAULT_CLOSE_TIMEOUT = Duration.ofSeconds(30);
+    public static final Duration DEFAULT_SERVICE_CLOSE_TIMEOUT = Duration.ofSeconds(15);
+
     public FlavorOptions() {
         this(Logger.getAnonymousLogger());
     }
@@ -13,6 +26,10 @@ public record FlavorOptions(Logger logger, String mainPackage) {
         this(logger, null);
     }
 
+    public FlavorOptions(Logger logger, String mainPackage) {
+        this(logger, mainPackage, DEFAULT_CLOSE_TIMEOUT, DEFAULT_SERVICE_CLOSE_TIMEOUT);
+    }
+
     @Override
     public @CheckForNull String mainPackage() {
         return mainPackage;
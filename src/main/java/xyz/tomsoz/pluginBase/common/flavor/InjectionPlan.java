@@ -0,0 +1,105 @@
+package xyz.tomsoz.pluginBase.common.flavor;
+
+import xyz.tomsoz.pluginBase.common.flavor.annotations.inject.Inject;
+import xyz.tomsoz.pluginBase.common.flavor.binder.FlavorBinder;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The precompiled injection of a single class, built once per class and {@link Flavor}.
+ * <p>
+ * Every {@link Inject} field is resolved to its {@link FlavorBinder} (or service) up front and
+ * paired with a setter {@link MethodHandle}, so injecting an instance is a plain loop of field writes.
+ * </p>
+ */
+final class InjectionPlan {
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Class<?> clazz;
+    private final MethodHandle[] setters;
+    private final Supplier<?>[] values;
+
+    private InjectionPlan(Class<?> clazz, MethodHandle[] setters, Supplier<?>[] values) {
+        this.clazz = clazz;
+        this.setters = setters;
+        this.values = values;
+    }
+
+    /**
+     * Builds the plan for a class.
+     *
+     * @param clazz    the class to plan
+     * @param resolver resolves the value to inject into a field, null if there is none
+     * @return the injection plan
+     * @throws IllegalStateException if a field has no matching binder
+     */
+    static InjectionPlan build(Class<?> clazz, Function<Field, Supplier<?>> resolver) {
+        List<MethodHandle> setters = new ArrayList<>();
+        List<Supplier<?>> values = new ArrayList<>();
+
+        for (Field field : clazz.getDeclaredFields()) {
+            if (!field.isAnnotationPresent(Inject.class)) continue;
+
+            Supplier<?> value = resolver.apply(field);
+            if (value == null) {
+                throw new IllegalStateException("No binder found for field %s of type %s in %s".formatted(
+                        field.getName(), field.getType().getName(), clazz.getName()
+                ));
+            }
+
+            setters.add(setter(field));
+            values.add(value);
+        }
+
+        return new InjectionPlan(
+                clazz,
+                setters.toArray(MethodHandle[]::new),
+                values.toArray(Supplier<?>[]::new)
+        );
+    }
+
+    private static MethodHandle setter(Field field) {
+        try {
+            field.setAccessible(true);
+            MethodHandle setter = MethodHandles.lookup().unreflectSetter(field);
+            if (Modifier.isStatic(field.getModifiers())) {
+                setter = MethodHandles.dropArguments(setter, 0, Object.class);
+            }
+            return setter.asType(SETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to access field %s in %s".formatted(
+                    field.getName(), field.getDeclaringClass().getName()
+            ), e);
+        }
+    }
+
+    /**
+     * Writes the current value of every binder into the target.
+     *
+     * @param target the instance to inject, the class's singleton for static fields
+     */
+    void inject(Object target) {
+        for (int i = 0; i < setters.length; i++) {
+            try {
+                setters[i].invokeExact(target, values[i].get());
+            } catch (Throwable e) {
+                throw new IllegalStateException("Failed to inject " + clazz.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the class has any fields to inject.
+     */
+    boolean isEmpty() {
+        return setters.length == 0;
+    }
+}
@@ -0,0 +1,176 @@
+package xyz.tomsoz.pluginBase.common.flavor;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates instances of a class for {@link Flavor#injected(Class, Object...)}.
+ * <p>
+ * A constructor is chosen once per distinct set of argument types, the most specific constructor
+ * whose parameters accept the arguments wins, with primitives accepting their wrappers and
+ * any reference parameter accepting null. The chosen constructor is kept as a {@link MethodHandle}
+ * spreading an {@code Object[]}, so later calls skip both the lookup and reflective access checks.
+ * </p>
+ */
+final class InstanceFactory {
+    private static final ClassValue<InstanceFactory> FACTORIES = new ClassValue<>() {
+        @Override
+        protected InstanceFactory computeValue(Class<?> type) {
+            return new InstanceFactory(type);
+        }
+    };
+    private static final MethodType FACTORY_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private final Class<?> clazz;
+    private final Constructor<?>[] constructors;
+    private final Map<Signature, MethodHandle> factories = new ConcurrentHashMap<>();
+
+    private InstanceFactory(Class<?> clazz) {
+        this.clazz = clazz;
+        this.constructors = clazz.getDeclaredConstructors();
+    }
+
+    /**
+     * Returns the factory of a class.
+     */
+    static InstanceFactory of(Class<?> clazz) {
+        return FACTORIES.get(clazz);
+    }
+
+    /**
+     * Creates an instance with the constructor accepting the arguments.
+     *
+     * @param args the constructor arguments
+     * @return the new instance
+     * @throws RuntimeException if no single constructor accepts the arguments, or the constructor throws
+     */
+    Object create(Object... args) {
+        MethodHandle factory = factories.computeIfAbsent(Signature.of(args), this::resolve);
+        try {
+            return factory.invokeExact(args);
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private MethodHandle resolve(Signature signature) {
+        List<Constructor<?>> matches = new ArrayList<>();
+        for (Constructor<?> constructor : constructors) {
+            if (!constructor.isVarArgs() && accepts(constructor.getParameterTypes(), signature.types)) {
+                matches.add(constructor);
+            }
+        }
+
+        Constructor<?> constructor = mostSpecific(matches);
+        if (constructor == null) {
+            throw new RuntimeException(new NoSuchMethodException("%s %s constructor of %s accepting %s".formatted(
+                    matches.isEmpty() ? "No" : "Ambiguous",
+                    matches.isEmpty() ? "" : matches.toString(),
+                    clazz.getName(),
+                    signature
+            )));
+        }
+
+        try {
+            constructor.setAccessible(true);
+            return MethodHandles.lookup()
+                    .unreflectConstructor(constructor)
+                    .asSpreader(Object[].class, constructor.getParameterCount())
+                    .asType(FACTORY_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static boolean accepts(Class<?>[] parameters, @Nullable Class<?>[] arguments) {
+        if (parameters.length != arguments.length) return false;
+        for (int i = 0; i < parameters.length; i++) {
+            Class<?> argument = arguments[i];
+            if (argument == null ? parameters[i].isPrimitive() : !box(parameters[i]).isAssignableFrom(argument)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static @Nullable Constructor<?> mostSpecific(List<Constructor<?>> matches) {
+        Constructor<?> best = null;
+        for (Constructor<?> candidate : matches) {
+            if (best == null) {
+                best = candidate;
+            } else if (moreSpecific(candidate, best)) {
+                // int and Integer are equally specific, the boxed parameter wins as it needs no unboxing
+                if (!moreSpecific(best, candidate) || primitives(candidate) < primitives(best)) best = candidate;
+            }
+        }
+
+        // the winner must be at least as specific as every other match
+        for (Constructor<?> other : matches) {
+            if (!moreSpecific(best, other)) return null;
+        }
+        return best;
+    }
+
+    private static boolean moreSpecific(Constructor<?> constructor, Constructor<?> other) {
+        Class<?>[] parameters = constructor.getParameterTypes();
+        Class<?>[] otherParameters = other.getParameterTypes();
+        for (int i = 0; i < parameters.length; i++) {
+            if (!box(otherParameters[i]).isAssignableFrom(box(parameters[i]))) return false;
+        }
+        return true;
+    }
+
+    private static int primitives(Constructor<?> constructor) {
+        int count = 0;
+        for (Class<?> parameter : constructor.getParameterTypes()) {
+            if (parameter.isPrimitive()) count++;
+        }
+        return count;
+    }
+
+    private static Class<?> box(Class<?> type) {
+        if (!type.isPrimitive()) return type;
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    /**
+     * The runtime types of a set of arguments, null for null arguments.
+     */
+    private record Signature(Class<?>[] types) {
+        private static final Signature EMPTY = new Signature(new Class<?>[0]);
+
+        static Signature of(Object[] args) {
+            if (args.length == 0) return EMPTY;
+
+            Class<?>[] types = new Class<?>[args.length];
+            for (int i = 0; i < args.length; i++) {
+                types[i] = args[i] != null ? args[i].getClass() : null;
+            }
+            return new Signature(types);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Signature other && Arrays.equals(types, other.types);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(types);
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(types);
+        }
+    }
+}
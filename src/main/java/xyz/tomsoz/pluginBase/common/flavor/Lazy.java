@@ -0,0 +1,54 @@
+package xyz.tomsoz.pluginBase.common.flavor;
+
+import org.jetbrains.annotations.NotNull;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.Service;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A handle to a service which is only configured once it is first read, see {@link Service#lazy()}.
+ * <p>
+ * Injecting a {@code Lazy} is not a dependency, the service is configured on the first {@link #get()}
+ * rather than before the service which injects it. Services which are not lazy are returned as they are.
+ * </p>
+ * <pre>
+ * &#64;Inject Lazy&lt;ReportService&gt; reports;
+ * reports.get().generate();
+ * </pre>
+ *
+ * @param <T> the type of service
+ */
+@SuppressWarnings("unused")
+public final class Lazy<T> implements Supplier<T> {
+    private final Class<T> type;
+    private final ServiceNode node;
+    private final Consumer<ServiceNode> initializer;
+
+    Lazy(Class<T> type, ServiceNode node, Consumer<ServiceNode> initializer) {
+        this.type = type;
+        this.node = node;
+        this.initializer = initializer;
+    }
+
+    /**
+     * Returns the service, configuring it first if it is lazy and not configured yet.
+     */
+    @Override
+    public @NotNull T get() {
+        if (node.lazy() && !node.initialized()) initializer.accept(node);
+        return type.cast(node.instance);
+    }
+
+    /**
+     * Returns whether the service has been configured.
+     */
+    public boolean isInitialized() {
+        return !node.lazy() || node.initialized();
+    }
+
+    @Override
+    public String toString() {
+        return "Lazy[" + node.name + "]";
+    }
+}
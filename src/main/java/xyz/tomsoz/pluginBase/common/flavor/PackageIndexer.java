@@ -1,27 +1,75 @@
 package xyz.tomsoz.pluginBase.common.flavor;
 
+import org.jetbrains.annotations.Nullable;
 import org.reflections.Reflections;
 import org.reflections.Store;
 import org.reflections.scanners.Scanners;
 import org.reflections.util.ConfigurationBuilder;
 import org.reflections.util.QueryFunction;
+import xyz.tomsoz.pluginBase.common.extensions.annotations.Independent;
+import xyz.tomsoz.pluginBase.common.flavor.profiler.LifecyclePhase;
+import xyz.tomsoz.pluginBase.common.flavor.profiler.LifecycleProfiler;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.logging.Level;
 
+/**
+ * Looks up the annotated types, annotated methods and subtypes of a plugin.
+ * <p>
+ * When the plugin jar contains a {@link FlavorIndex} (written at build time by the
+ * {@link xyz.tomsoz.pluginBase.common.flavor.processor.FlavorIndexProcessor}) lookups are served from it,
+ * otherwise the main package is scanned with {@link Reflections}.
+ * </p>
+ * <p>
+ * Once startup is done, {@link #compact(Collection)} drops the index or scan, keeping only the
+ * methods of the annotations still needed. The first other lookup after that rebuilds the index or scan,
+ * which is then kept for every later lookup.
+ * </p>
+ */
 @SuppressWarnings("unused")
 public class PackageIndexer {
     private final Class<?> clazz;
     private final FlavorOptions options;
-    public final Reflections reflections;
+    private final LifecycleProfiler profiler;
+    private volatile @Nullable FlavorIndex index;
+    /**
+     * The classpath scan, null when the lookups are served from the {@link FlavorIndex} or once compacted.
+     */
+    public volatile @Nullable Reflections reflections;
+    private volatile @Nullable Map<Class<? extends Annotation>, Method[]> compacted;
+    /**
+     * The index or scan rebuilt by a lookup which was not retained when compacting.
+     */
+    private volatile @Nullable PackageIndexer rebuilt;
+    private final Map<Class<? extends Annotation>, Handlers> handlers = new ConcurrentHashMap<>();
 
     public PackageIndexer(Class<?> clazz, FlavorOptions options) {
+        this(clazz, options, new LifecycleProfiler(clazz.getSimpleName(), options.logger()));
+    }
+
+    public PackageIndexer(Class<?> clazz, FlavorOptions options, LifecycleProfiler profiler) {
         this.clazz = clazz;
         this.options = options;
+        this.profiler = profiler;
+
+        try (LifecycleProfiler.Timing ignored = profiler.start(LifecyclePhase.SCAN, "index")) {
+            this.index = FlavorIndex.load(clazz, options.mainPackage(), options.logger());
+        }
+        if (index == null) {
+            try (LifecycleProfiler.Timing ignored = profiler.start(LifecyclePhase.SCAN, "classpath")) {
+                this.reflections = scan();
+            }
+        }
+    }
+
+    private Reflections scan() {
         ConfigurationBuilder config = new ConfigurationBuilder()
                 .forPackage(options.mainPackage(), clazz.getClassLoader())
                 .setParallel(true)
@@ -30,7 +78,110 @@ public class PackageIndexer {
                         Scanners.TypesAnnotated,
                         Scanners.SubTypes
                 );
-        this.reflections = new Reflections(config);
+        return new Reflections(config);
+    }
+
+    /**
+     * Returns whether the lookups are served from a build-time {@link FlavorIndex}.
+     */
+    public boolean isIndexed() {
+        return index != null;
+    }
+
+    /**
+     * Returns whether {@link #compact(Collection)} has been called.
+     */
+    public boolean isCompacted() {
+        return compacted != null;
+    }
+
+    /**
+     * Resolves the methods of the retained annotations and releases the index or classpath scan,
+     * logging a rough estimate of the heap retained before and after.
+     * <p>
+     * Lookups of the retained annotations are served from the resolved methods afterwards,
+     * any other lookup rebuilds the index or scan and keeps it, so only compact once they are no longer needed.
+     * </p>
+     *
+     * @param retained the annotations whose methods are still invoked after startup
+     */
+    public synchronized void compact(Collection<Class<? extends Annotation>> retained) {
+        if (compacted != null) return;
+
+        long before = estimatedSize();
+        String source = index != null ? "index" : "classpath scan";
+        Map<Class<? extends Annotation>, Method[]> methods = new HashMap<>();
+        for (Class<? extends Annotation> annotation : retained) {
+            Method[] resolved = getMethodsAnnotatedWith(annotation).toArray(Method[]::new);
+            for (Method method : resolved) method.setAccessible(true);
+            methods.put(annotation, resolved);
+            handlers(annotation);
+        }
+        // handlers of annotations which were not retained would hold on to their methods
+        handlers.keySet().retainAll(methods.keySet());
+
+        this.compacted = Map.copyOf(methods);
+        this.index = null;
+        this.reflections = null;
+
+        options.logger().info("[Indexer] Compacted the %s, roughly estimated to retain ~%.1fKB instead of ~%.1fKB.".formatted(
+                source, estimatedSize() / 1024D, before / 1024D
+        ));
+    }
+
+    /**
+     * Roughly estimates the heap retained by the lookups from fixed per-entry costs, assuming compressed oops
+     * and compact strings. It is not a measurement: object headers, padding and table capacities are guessed.
+     * Classes and methods are shared with the class loader, so only the references to them are counted.
+     */
+    private long estimatedSize() {
+        Map<Class<? extends Annotation>, Method[]> compact = compacted;
+        if (compact != null) {
+            long size = 48 + 32L * compact.size();
+            for (Method[] methods : compact.values()) size += 16 + 4L * methods.length;
+            return size;
+        }
+
+        FlavorIndex currentIndex = index;
+        if (currentIndex != null) return currentIndex.estimatedSize();
+
+        Reflections scan = reflections;
+        if (scan == null) return 0;
+
+        long size = 48;
+        for (Map.Entry<String, Map<String, Set<String>>> scanner : scan.getStore().entrySet()) {
+            size += 32 + stringSize(scanner.getKey()) + 48;
+            for (Map.Entry<String, Set<String>> entry : scanner.getValue().entrySet()) {
+                // map entry, key and a hash set of values
+                size += 32 + stringSize(entry.getKey()) + 64;
+                for (String value : entry.getValue()) size += 32 + stringSize(value);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Roughly estimates the heap retained by a Latin-1 string, its header, fields and byte array.
+     */
+    static long stringSize(String value) {
+        return 40 + value.length();
+    }
+
+    /**
+     * Returns the lookups to use for an annotation which was not retained when compacting,
+     * the index or scan rebuilt on the first such lookup.
+     */
+    private PackageIndexer uncompacted() {
+        PackageIndexer current = rebuilt;
+        if (current != null) return current;
+
+        synchronized (this) {
+            if (rebuilt == null) {
+                options.logger().warning("[Indexer] Looked up a type or annotation which was not retained when compacting, rebuilding the index and keeping it.");
+                rebuilt = new PackageIndexer(clazz, options, profiler);
+            }
+            return rebuilt;
+        }
     }
 
     /**
@@ -40,6 +191,10 @@ public class PackageIndexer {
      * @return a list of subtypes of the specified type
      */
     public <T> List<Class<?>> getSubTypes(Class<T> type) {
+        if (compacted != null) return uncompacted().getSubTypes(type);
+        FlavorIndex index = this.index;
+        if (index != null) return loadClasses(index.getSubTypes(type.getName()));
+
         return reflections
                 .get(subTypes(type))
                 .stream()
@@ -55,29 +210,149 @@ public class PackageIndexer {
      * @param annotation the annotation type
      */
     public void invokeMethodsAnnotatedWith(Class<? extends Annotation> annotation) {
-        getMethodsAnnotatedWith(annotation)
-                .forEach(it -> {
-                    try {
-                        Object target = Modifier.isStatic(it.getModifiers())
-                                ? null
-                                : Flavor.objectInstance(it.getDeclaringClass());
-
-                        it.setAccessible(true);
-                        it.invoke(target);
-                    } catch (Exception e) {
-                        options.logger().log(
-                                Level.WARNING,
-                                String.join(" ",
-                                        "Failed to run container part",
-                                        it.getClass().getSimpleName(),
-                                        "on",
-                                        annotation.getSimpleName(),
-                                        ":",
-                                        it.getName()
-                                ), e
-                        );
-                    }
-                });
+        try (LifecycleProfiler.Timing timing = profiler.start(LifecyclePhase.INVOKE, annotation.getSimpleName())) {
+            if (!handlers(annotation).invoke()) timing.fail();
+        }
+    }
+
+    /**
+     * Returns the cached handlers of an annotation, resolving them on first use.
+     */
+    private Handlers handlers(Class<? extends Annotation> annotation) {
+        Handlers cached = handlers.get(annotation);
+        if (cached != null) return cached;
+        return handlers.computeIfAbsent(annotation, it -> new Handlers(it, getMethodsAnnotatedWith(it)));
+    }
+
+    /**
+     * The methods of a lifecycle annotation bound to their targets, so that invoking
+     * them needs no lookups, access checks or allocation.
+     */
+    private final class Handlers {
+        private static final MethodHandle REQUIRE_INSTANCE;
+
+        static {
+            try {
+                REQUIRE_INSTANCE = MethodHandles.lookup().findStatic(Handlers.class, "requireInstance",
+                        MethodType.methodType(Object.class, Class.class, Object.class));
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private final Class<? extends Annotation> annotation;
+        private final Method[] methods;
+        /**
+         * The bound handles, of type {@code ()void}, null where the target could not be resolved.
+         */
+        private final MethodHandle[] handles;
+        private final Exception[] failures;
+        private final boolean[] independent;
+        private final boolean anyIndependent;
+
+        private Handlers(Class<? extends Annotation> annotation, List<Method> methods) {
+            this.annotation = annotation;
+            this.methods = methods.toArray(Method[]::new);
+            this.handles = new MethodHandle[this.methods.length];
+            this.failures = new Exception[this.methods.length];
+            this.independent = new boolean[this.methods.length];
+
+            boolean anyIndependent = false;
+            for (int i = 0; i < this.methods.length; i++) {
+                Method method = this.methods[i];
+                independent[i] = method.isAnnotationPresent(Independent.class);
+                anyIndependent |= independent[i];
+                try {
+                    handles[i] = bind(method);
+                } catch (Exception e) {
+                    failures[i] = e;
+                }
+            }
+            this.anyIndependent = anyIndependent;
+        }
+
+        private static MethodHandle bind(Method method) throws IllegalAccessException {
+            method.setAccessible(true);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle handle = lookup.unreflect(method);
+            if (!Modifier.isStatic(method.getModifiers())) {
+                // the singleton field is read on every invoke, as it may be replaced or not assigned yet
+                Class<?> owner = method.getDeclaringClass();
+                MethodHandle instance = MethodHandles.filterReturnValue(
+                        lookup.unreflectGetter(Flavor.instanceField(owner)).asType(MethodType.methodType(Object.class)),
+                        REQUIRE_INSTANCE.bindTo(owner)
+                ).asType(MethodType.methodType(owner));
+                handle = MethodHandles.foldArguments(handle.asType(MethodType.methodType(void.class, owner)), instance);
+            }
+            return handle.asType(MethodType.methodType(void.class));
+        }
+
+        private static Object requireInstance(Class<?> owner, @Nullable Object instance) {
+            if (instance == null) throw new IllegalStateException("The singleton of %s is null".formatted(owner.getName()));
+            return instance;
+        }
+
+        /**
+         * Invokes every handler, returning whether all of them succeeded.
+         */
+        private boolean invoke() {
+            if (!anyIndependent) {
+                boolean success = true;
+                for (int i = 0; i < handles.length; i++) {
+                    success &= invoke(i);
+                }
+                return success;
+            }
+
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<Boolean>> futures = new ArrayList<>();
+                for (int i = 0; i < handles.length; i++) {
+                    int index = i;
+                    if (independent[i]) futures.add(executor.submit(() -> invoke(index)));
+                }
+
+                boolean success = true;
+                for (int i = 0; i < handles.length; i++) {
+                    if (!independent[i]) success &= invoke(i);
+                }
+                for (Future<Boolean> future : futures) {
+                    success &= future.get();
+                }
+                return success;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                // invoke(int) never throws
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private boolean invoke(int index) {
+            Throwable failure = failures[index];
+            if (failure == null) {
+                try {
+                    handles[index].invokeExact();
+                    return true;
+                } catch (Throwable e) {
+                    failure = e;
+                }
+            }
+
+            Method method = methods[index];
+            options.logger().log(
+                    Level.WARNING,
+                    String.join(" ",
+                            "Failed to run container part",
+                            method.getDeclaringClass().getSimpleName(),
+                            "on",
+                            annotation.getSimpleName(),
+                            ":",
+                            method.getName()
+                    ), failure
+            );
+            return false;
+        }
     }
 
     /**
@@ -87,6 +362,22 @@ public class PackageIndexer {
      * @return a list of methods annotated with the specified annotation
      */
     public <T extends Annotation> List<Method> getMethodsAnnotatedWith(Class<T> annotation) {
+        Map<Class<? extends Annotation>, Method[]> compact = compacted;
+        if (compact != null) {
+            Method[] methods = compact.get(annotation);
+            return methods != null ? List.of(methods) : uncompacted().getMethodsAnnotatedWith(annotation);
+        }
+
+        FlavorIndex index = this.index;
+        if (index != null) {
+            List<Method> result = new ArrayList<>();
+            for (FlavorIndex.Entry entry : index.getMethodsAnnotatedWith(annotation.getName())) {
+                Method method = loadMethod(entry);
+                if (method != null) result.add(method);
+            }
+            return result;
+        }
+
         return reflections
                 .get(annotated(annotation))
                 .stream()
@@ -100,6 +391,10 @@ public class PackageIndexer {
      * @return a list of types annotated with the specified annotation
      */
     public <T extends Annotation> List<Class<?>> getTypesAnnotatedWith(Class<T> annotation) {
+        if (compacted != null) return uncompacted().getTypesAnnotatedWith(annotation);
+        FlavorIndex index = this.index;
+        if (index != null) return loadClasses(index.getTypesAnnotatedWith(annotation.getName()));
+
         List<Class<?>> result = new ArrayList<>();
         for (String className : reflections.get(Scanners.TypesAnnotated.with(annotation))) {
             try {
@@ -110,6 +405,36 @@ public class PackageIndexer {
         return result;
     }
 
+    private List<Class<?>> loadClasses(List<String> names) {
+        List<Class<?>> result = new ArrayList<>(names.size());
+        for (String name : names) {
+            try {
+                result.add(Class.forName(name, true, clazz.getClassLoader()));
+            } catch (ClassNotFoundException | LinkageError ignored) {
+            }
+        }
+        return result;
+    }
+
+    private @Nullable Method loadMethod(FlavorIndex.Entry entry) {
+        Class<?> owner;
+        try {
+            owner = Class.forName(entry.type(), true, clazz.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+
+        List<String> parameters = entry.parameterTypes();
+        for (Method method : owner.getDeclaredMethods()) {
+            if (!method.getName().equals(entry.methodName())
+                    || method.getParameterCount() != parameters.size()) continue;
+
+            List<String> types = Arrays.stream(method.getParameterTypes()).map(Class::getTypeName).toList();
+            if (types.equals(parameters)) return method;
+        }
+        return null;
+    }
+
     /**
      * Returns a query function for methods annotated with the specified annotation.
      *
@@ -0,0 +1,100 @@
+package xyz.tomsoz.pluginBase.common.flavor;
+
+import org.jetbrains.annotations.NotNull;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.inject.InjectScope;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * The instances of a {@link InjectScope#THREAD thread} scoped binder.
+ * <p>
+ * Each thread reads and writes its own instance through {@link #get()},
+ * so per-thread state such as counters and buffers needs no locking. The instances of every
+ * thread can be combined with {@link #reduce(Object, BiFunction)}, which sees each instance
+ * as it is at that moment, any synchronisation of the instances themselves is up to the caller.
+ * </p>
+ * <p>
+ * Instances outlive their thread so that they can still be aggregated, threads
+ * which come and go (such as virtual threads) should not use a thread scope.
+ * </p>
+ * <pre>
+ * flavor.bind(Counter.class).scoped(InjectScope.THREAD, Counter::new);
+ *
+ * &#64;Inject Scoped&lt;Counter&gt; counters;
+ * counters.get().increment();
+ * long total = counters.reduce(0L, (sum, it) -&gt; sum + it.value());
+ * </pre>
+ *
+ * @param <T> the type of instance
+ */
+@SuppressWarnings("unused")
+public final class Scoped<T> {
+    private final InjectScope scope;
+    private final Queue<T> instances = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<T> local;
+
+    public Scoped(@NotNull InjectScope scope, @NotNull Supplier<? extends T> factory) {
+        if (!scope.isContextual()) throw new IllegalArgumentException("Scope %s is not per thread".formatted(scope));
+        this.scope = scope;
+        this.local = ThreadLocal.withInitial(() -> {
+            T instance = factory.get();
+            instances.add(instance);
+            return instance;
+        });
+    }
+
+    /**
+     * Returns the instance of the current thread, creating it if needed.
+     */
+    public @NotNull T get() {
+        return local.get();
+    }
+
+    /**
+     * Returns the scope of the instances.
+     */
+    public @NotNull InjectScope scope() {
+        return scope;
+    }
+
+    /**
+     * Returns a snapshot of every instance created so far.
+     */
+    public @NotNull List<T> values() {
+        return List.copyOf(instances);
+    }
+
+    /**
+     * Runs the action for every instance created so far.
+     */
+    public void forEach(@NotNull Consumer<? super T> action) {
+        instances.forEach(action);
+    }
+
+    /**
+     * Combines every instance created so far into a single result.
+     *
+     * @param identity    the starting result
+     * @param accumulator combines the result so far with an instance
+     * @return the combined result
+     */
+    public <R> R reduce(R identity, @NotNull BiFunction<R, ? super T, R> accumulator) {
+        R result = identity;
+        for (T instance : instances) {
+            result = accumulator.apply(result, instance);
+        }
+        return result;
+    }
+
+    /**
+     * Returns how many instances have been created.
+     */
+    public int size() {
+        return instances.size();
+    }
+}
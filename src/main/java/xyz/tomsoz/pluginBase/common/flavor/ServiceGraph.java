@@ -0,0 +1,319 @@
+package xyz.tomsoz.pluginBase.common.flavor;
+
+import xyz.tomsoz.pluginBase.common.flavor.annotations.Service;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.inject.Inject;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * The dependency graph of the services of a {@link Flavor}.
+ * <p>
+ * A service depends on every service in its {@link Service#dependsOn()}, every service it
+ * {@link Inject injects} and every service of the next higher {@link Service#priority()}.
+ * </p>
+ * <p>
+ * {@link Service#lazy() Lazy} services take no part in the priority order, and injecting
+ * one through an interface or a {@link Lazy} is not a dependency, as the field receives a proxy or handle.
+ * </p>
+ */
+final class ServiceGraph {
+    private final List<ServiceNode> nodes;
+    private final List<ServiceNode> order;
+    private final boolean cyclic;
+
+    /**
+     * @param nodes  the services, sorted by descending priority
+     * @param logger the logger to report unknown dependencies and cycles to
+     */
+    ServiceGraph(List<ServiceNode> nodes, Logger logger) {
+        this.nodes = nodes;
+
+        for (ServiceNode node : nodes) {
+            for (Class<?> dependency : node.service.dependsOn()) {
+                List<ServiceNode> matches = find(dependency);
+                if (matches.isEmpty()) {
+                    logger.warning("[Services] [%s] Depends on %s, which is not a service.".formatted(
+                            node.name, dependency.getSimpleName()
+                    ));
+                }
+                matches.forEach(it -> link(node, it));
+            }
+
+            for (Field field : node.type.getDeclaredFields()) {
+                if (!field.isAnnotationPresent(Inject.class) || field.getType() == Object.class) continue;
+                for (ServiceNode match : find(field.getType())) {
+                    if (!match.lazy() || !field.getType().isInterface()) link(node, match);
+                }
+            }
+        }
+
+        // every service waits for the closest higher priority,
+        // and through it for every higher priority
+        List<ServiceNode> higher = List.of();
+        List<ServiceNode> level = new ArrayList<>();
+        for (ServiceNode node : nodes) {
+            if (node.lazy()) continue;
+            if (!level.isEmpty() && level.getFirst().priority() != node.priority()) {
+                higher = level;
+                level = new ArrayList<>();
+            }
+            level.add(node);
+            higher.forEach(it -> link(node, it));
+        }
+
+        List<ServiceNode> sorted = sort();
+        this.cyclic = sorted.size() != nodes.size();
+        if (cyclic) {
+            List<ServiceNode> remaining = new ArrayList<>(nodes);
+            remaining.removeAll(sorted);
+            logger.severe("[Services] Dependency cycle between %s, falling back to priority order.".formatted(remaining));
+        }
+        this.order = cyclic ? nodes : sorted;
+    }
+
+    private List<ServiceNode> find(Class<?> type) {
+        List<ServiceNode> matches = new ArrayList<>();
+        for (ServiceNode node : nodes) {
+            if (type.isAssignableFrom(node.type)) matches.add(node);
+        }
+        return matches;
+    }
+
+    private void link(ServiceNode node, ServiceNode dependency) {
+        if (node == dependency) return;
+        node.dependencies.add(dependency);
+        dependency.dependents.add(node);
+    }
+
+    /**
+     * Kahn's algorithm, ties are broken by the priority order of the services.
+     */
+    private List<ServiceNode> sort() {
+        Map<ServiceNode, Integer> index = new HashMap<>();
+        Map<ServiceNode, Integer> remaining = new HashMap<>();
+        PriorityQueue<ServiceNode> ready = new PriorityQueue<>(Comparator.comparingInt(index::get));
+
+        for (int i = 0; i < nodes.size(); i++) {
+            ServiceNode node = nodes.get(i);
+            index.put(node, i);
+            remaining.put(node, node.dependencies.size());
+            if (node.dependencies.isEmpty()) ready.add(node);
+        }
+
+        List<ServiceNode> sorted = new ArrayList<>(nodes.size());
+        while (!ready.isEmpty()) {
+            ServiceNode node = ready.poll();
+            sorted.add(node);
+            for (ServiceNode dependent : node.dependents) {
+                if (remaining.merge(dependent, -1, Integer::sum) == 0) ready.add(dependent);
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * Returns the services in an order where every service comes after its dependencies.
+     */
+    List<ServiceNode> order() {
+        return order;
+    }
+
+    /**
+     * Runs the action for every service once all of its dependencies are done.
+     * <p>
+     * {@link Service#async() Async} services run on virtual threads, the rest run
+     * on the calling thread. The action must not throw.
+     * </p>
+     *
+     * @param action the action to run, for example configuring the service
+     */
+    void startup(Consumer<ServiceNode> action) {
+        if (cyclic) {
+            order.forEach(action);
+            return;
+        }
+
+        Map<ServiceNode, CompletableFuture<Void>> done = new HashMap<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (ServiceNode node : order) {
+                CompletableFuture<?>[] dependencies = node.dependencies.stream()
+                        .map(done::get)
+                        .toArray(CompletableFuture[]::new);
+
+                done.put(node, node.async()
+                        ? CompletableFuture.allOf(dependencies).thenRunAsync(() -> action.accept(node), executor)
+                        : new CompletableFuture<>()
+                );
+            }
+
+            // the rest run here, in order, so their dependencies have always been scheduled
+            for (ServiceNode node : order) {
+                if (node.async()) continue;
+                node.dependencies.forEach(it -> done.get(it).join());
+                try {
+                    action.accept(node);
+                } finally {
+                    done.get(node).complete(null);
+                }
+            }
+
+            CompletableFuture.allOf(done.values().toArray(CompletableFuture[]::new)).join();
+        }
+    }
+
+    /**
+     * Runs the action for every service once all of its dependents are done, the reverse of {@link #startup(Consumer)}.
+     * <p>
+     * {@link Service#async() Async} services run on virtual threads and are interrupted and abandoned once they
+     * exceed their close timeout, the rest run on the calling thread and can only be reported as overrunning.
+     * Once the global timeout has passed, no more time is spent waiting: the remaining services are still closed
+     * but async ones are no longer awaited.
+     * </p>
+     *
+     * @param action         the action to run, for example closing the service, must not throw
+     * @param timeout        how long the whole shutdown may take, in milliseconds
+     * @param serviceTimeout how long a single service may take by default, in milliseconds
+     * @param logger         the logger to report overrunning services to
+     */
+    void shutdown(Consumer<ServiceNode> action, long timeout, long serviceTimeout, Logger logger) {
+        List<ServiceNode> reversed = order.reversed();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        if (cyclic) {
+            for (ServiceNode node : reversed) closeInline(node, action, serviceTimeout, logger);
+            return;
+        }
+
+        Map<ServiceNode, CompletableFuture<Void>> done = new HashMap<>();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            for (ServiceNode node : reversed) {
+                CompletableFuture<?>[] dependents = node.dependents.stream()
+                        .map(done::get)
+                        .toArray(CompletableFuture[]::new);
+
+                done.put(node, node.async()
+                        ? CompletableFuture.allOf(dependents).thenCompose(it -> closeAsync(node, action, executor, serviceTimeout, logger))
+                        : new CompletableFuture<>()
+                );
+            }
+
+            for (ServiceNode node : reversed) {
+                if (node.async()) continue;
+                for (ServiceNode dependent : node.dependents) {
+                    await(done.get(dependent), deadline);
+                }
+                try {
+                    closeInline(node, action, serviceTimeout, logger);
+                } finally {
+                    done.get(node).complete(null);
+                }
+            }
+
+            await(CompletableFuture.allOf(done.values().toArray(CompletableFuture[]::new)), deadline);
+        } finally {
+            // overrunning services are abandoned rather than waited for
+            executor.shutdown();
+        }
+
+        List<ServiceNode> pending = reversed.stream().filter(it -> !done.get(it).isDone()).toList();
+        if (!pending.isEmpty()) {
+            logger.warning("[Services] Shutdown exceeded %sms, stopped waiting for %s.".formatted(timeout, pending));
+        }
+    }
+
+    private void closeInline(ServiceNode node, Consumer<ServiceNode> action, long serviceTimeout, Logger logger) {
+        action.accept(node);
+
+        long limit = node.closeTimeout(serviceTimeout);
+        long milli = (node.closeEnd - node.closeStart) / 1_000_000L;
+        if (node.closeable() && milli > limit) {
+            logger.warning("[Services] [%s] Overran its shutdown deadline of %sms, took %sms.".formatted(node.name, limit, milli));
+        }
+    }
+
+    private CompletableFuture<Void> closeAsync(ServiceNode node, Consumer<ServiceNode> action, ExecutorService executor,
+                                               long serviceTimeout, Logger logger) {
+        AtomicReference<Thread> runner = new AtomicReference<>();
+        long limit = node.closeTimeout(serviceTimeout);
+
+        return CompletableFuture.runAsync(() -> {
+                    runner.set(Thread.currentThread());
+                    try {
+                        action.accept(node);
+                    } finally {
+                        runner.set(null);
+                    }
+                }, executor)
+                .orTimeout(limit, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    if (e instanceof TimeoutException) {
+                        logger.warning("[Services] [%s] Overran its shutdown deadline of %sms, abandoning it.".formatted(node.name, limit));
+                        Thread thread = runner.get();
+                        if (thread != null) thread.interrupt();
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Waits for the future until the deadline, returning early if it has already passed.
+     */
+    private void await(CompletableFuture<?> future, long deadline) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) return;
+        try {
+            future.get(remaining, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | ExecutionException ignored) {
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the chain of services which determined how long the startup took,
+     * starting with the first service of the chain.
+     */
+    List<ServiceNode> criticalPath() {
+        ServiceNode last = null;
+        for (ServiceNode node : order) {
+            if (last == null || node.configureEnd > last.configureEnd) last = node;
+        }
+
+        LinkedList<ServiceNode> path = new LinkedList<>();
+        while (last != null) {
+            path.addFirst(last);
+            last = gate(last);
+        }
+        return path;
+    }
+
+    /**
+     * Returns the service whose completion allowed the service to start, the latest of its
+     * dependencies, or the previous service on the calling thread for services which are not async.
+     */
+    private ServiceNode gate(ServiceNode node) {
+        List<ServiceNode> candidates = new ArrayList<>(node.dependencies);
+        if (!node.async() || cyclic) {
+            int index = order.indexOf(node);
+            for (int i = index - 1; i >= 0; i--) {
+                if (cyclic || !order.get(i).async()) {
+                    candidates.add(order.get(i));
+                    break;
+                }
+            }
+        }
+
+        ServiceNode gate = null;
+        for (ServiceNode candidate : candidates) {
+            if (candidate.configureEnd > node.configureStart) continue;
+            if (gate == null || candidate.configureEnd > gate.configureEnd) gate = candidate;
+        }
+        return gate;
+    }
+}
@@ -0,0 +1,160 @@
+package xyz.tomsoz.pluginBase.common.flavor;
+
+import org.jetbrains.annotations.Nullable;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.Close;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.Configure;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.Service;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A registered service and its place in the {@link ServiceGraph}.
+ */
+final class ServiceNode {
+    final Class<?> type;
+    final Object instance;
+    final Service service;
+    final String name;
+
+    final Set<ServiceNode> dependencies = new LinkedHashSet<>();
+    final Set<ServiceNode> dependents = new LinkedHashSet<>();
+
+    private final @Nullable Method configure;
+    private final @Nullable Method close;
+
+    /**
+     * When the configure method started and finished, relative to {@link System#nanoTime()}.
+     */
+    volatile long configureStart;
+    volatile long configureEnd;
+    volatile long closeStart;
+    volatile long closeEnd;
+
+    /**
+     * Guards initializing, a lock rather than a monitor so that async services
+     * configuring on virtual threads do not pin their carrier while blocked.
+     */
+    private final ReentrantLock initializeLock = new ReentrantLock();
+    private volatile boolean initialized;
+
+    ServiceNode(Class<?> type, Object instance) {
+        this.type = type;
+        this.instance = instance;
+        this.service = type.getDeclaredAnnotation(Service.class);
+        this.name = !service.name().isEmpty() ? service.name() : type.getSimpleName();
+        this.configure = findMethod(type, Configure.class);
+        this.close = findMethod(type, Close.class);
+    }
+
+    private static @Nullable Method findMethod(Class<?> type, Class<? extends Annotation> annotation) {
+        for (Method method : type.getDeclaredMethods()) {
+            if (method.isAnnotationPresent(annotation)) {
+                method.setAccessible(true);
+                return method;
+            }
+        }
+        return null;
+    }
+
+    boolean lazy() {
+        return service.lazy();
+    }
+
+    /**
+     * Returns whether {@link #initialize(Runnable)} has completed.
+     */
+    boolean initialized() {
+        return initialized;
+    }
+
+    /**
+     * Runs the initializer exactly once, concurrent callers block until it is done.
+     * A service using itself while initializing does not initialize again.
+     *
+     * @param initializer the initializer, for example configuring the service
+     */
+    void initialize(Runnable initializer) {
+        if (initialized) return;
+        // a service using itself while initializing does not initialize again
+        if (initializeLock.isHeldByCurrentThread()) return;
+
+        initializeLock.lock();
+        try {
+            if (initialized) return;
+            initializer.run();
+        } finally {
+            initialized = true;
+            initializeLock.unlock();
+        }
+    }
+
+    int priority() {
+        return service.priority();
+    }
+
+    boolean async() {
+        return service.async();
+    }
+
+    /**
+     * Invokes the {@link Configure} method of the service, if it has one.
+     *
+     * @throws Exception anything thrown by the configure method
+     */
+    void configure() throws Exception {
+        configureStart = System.nanoTime();
+        try {
+            invoke(configure);
+        } finally {
+            configureEnd = System.nanoTime();
+        }
+    }
+
+    /**
+     * Invokes the {@link Close} method of the service, if it has one.
+     *
+     * @throws Exception anything thrown by the close method
+     */
+    void close() throws Exception {
+        closeStart = System.nanoTime();
+        try {
+            invoke(close);
+        } finally {
+            closeEnd = System.nanoTime();
+        }
+    }
+
+    /**
+     * Returns whether the service has a {@link Close} method.
+     */
+    boolean closeable() {
+        return close != null;
+    }
+
+    /**
+     * Returns how long the service may take to close, in milliseconds.
+     */
+    long closeTimeout(long defaultTimeout) {
+        return service.closeTimeout() >= 0 ? service.closeTimeout() : defaultTimeout;
+    }
+
+    private void invoke(@Nullable Method method) throws Exception {
+        if (method == null) return;
+        try {
+            method.invoke(instance);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
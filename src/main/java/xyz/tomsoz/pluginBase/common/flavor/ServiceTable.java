@@ -0,0 +1,92 @@
+package xyz.tomsoz.pluginBase.common.flavor;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * An immutable snapshot of the registered services, published through a volatile field of {@link Flavor}.
+ * <p>
+ * Registering a service copies the table, so readers on any thread never lock and always see either
+ * the old or the new table in full. Besides the exact class, a service is found by any of its
+ * supertypes, the answer for each requested type is computed once per table.
+ * When several services share a supertype, the first registered wins.
+ * </p>
+ */
+final class ServiceTable {
+    static final ServiceTable EMPTY = new ServiceTable(new ServiceNode[0]);
+
+    private final ServiceNode[] nodes;
+    private final Map<Class<?>, ServiceNode> exact;
+    private final ClassValue<Resolution> resolutions = new ClassValue<>() {
+        @Override
+        protected Resolution computeValue(Class<?> type) {
+            return new Resolution(find(type));
+        }
+    };
+
+    private ServiceTable(ServiceNode[] nodes) {
+        this.nodes = nodes;
+
+        Map<Class<?>, ServiceNode> exact = new HashMap<>();
+        for (ServiceNode node : nodes) exact.put(node.type, node);
+        this.exact = Map.copyOf(exact);
+    }
+
+    /**
+     * Returns a copy of the table with the services added, replacing any registered under the same class.
+     */
+    ServiceTable withAll(Collection<ServiceNode> added) {
+        Set<Class<?>> types = new HashSet<>();
+        for (ServiceNode node : added) types.add(node.type);
+
+        List<ServiceNode> result = new ArrayList<>(nodes.length + added.size());
+        for (ServiceNode node : nodes) {
+            if (!types.contains(node.type)) result.add(node);
+        }
+        result.addAll(added);
+        return new ServiceTable(result.toArray(ServiceNode[]::new));
+    }
+
+    /**
+     * Returns a copy of the table without the service registered under the class.
+     */
+    ServiceTable without(Class<?> type) {
+        if (!exact.containsKey(type)) return this;
+        return new ServiceTable(Arrays.stream(nodes).filter(it -> it.type != type).toArray(ServiceNode[]::new));
+    }
+
+    /**
+     * Returns the service registered under exactly this class.
+     */
+    @Nullable ServiceNode exact(Class<?> type) {
+        return exact.get(type);
+    }
+
+    /**
+     * Returns the service registered under this class, or otherwise the first service assignable to it.
+     * {@link Object} only ever matches a service registered under exactly that class.
+     */
+    @Nullable ServiceNode resolve(Class<?> type) {
+        ServiceNode node = exact.get(type);
+        if (node != null || type == Object.class) return node;
+        return resolutions.get(type).node;
+    }
+
+    private @Nullable ServiceNode find(Class<?> type) {
+        for (ServiceNode node : nodes) {
+            if (type.isAssignableFrom(node.type) || type.isInstance(node.instance)) return node;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the services, in registration order.
+     */
+    List<ServiceNode> nodes() {
+        return List.of(nodes);
+    }
+
+    private record Resolution(@Nullable ServiceNode node) {
+    }
+}
@@ -13,7 +13,9 @@ import java.lang.annotation.Target;
  * </p>
  * <p>
  * Services are sorted by their priority
- * when initialized.
+ * when initialized, a service is only configured once every service
+ * of a higher priority, every service in {@link #dependsOn()} and every service
+ * it injects has been configured. They are closed in the reverse order.
  * </p>
  */
 @Retention(RetentionPolicy.RUNTIME)
@@ -22,4 +24,36 @@ public @interface Service {
     String name() default "";
 
     int priority() default 1;
-}
\ No newline at end of file
+
+    /**
+     * The services which have to be configured before this one.
+     */
+    Class<?>[] dependsOn() default {};
+
+    /**
+     * Whether the {@link Configure} and {@link Close} methods may run on a virtual thread,
+     * concurrently with other services.
+     * <p>
+     * Async services must not touch the Bukkit API or wait on the server thread.
+     * </p>
+     */
+    boolean async() default false;
+
+    /**
+     * How long, in milliseconds, the {@link Close} method may take before the shutdown
+     * stops waiting for it. A negative value uses {@link xyz.tomsoz.pluginBase.common.flavor.FlavorOptions#serviceCloseTimeout()}.
+     */
+    long closeTimeout() default -1;
+
+    /**
+     * Whether the {@link Configure} method is deferred until the service is first used, either through
+     * {@link xyz.tomsoz.pluginBase.common.flavor.Flavor#service(Class)} or through an injected field.
+     * <p>
+     * Fields injected with an interface type receive a proxy which configures the service on its first call,
+     * and {@link xyz.tomsoz.pluginBase.common.flavor.Lazy} fields configure it on their first read.
+     * Only other services may inject a lazy service by its own class, which makes it a dependency of theirs.
+     * A lazy service is still configured at startup if a service which is not lazy depends on it.
+     * </p>
+     */
+    boolean lazy() default false;
+}
@@ -3,6 +3,18 @@ package xyz.tomsoz.pluginBase.common.flavor.annotations.inject;
 import java.lang.reflect.Field;
 import java.util.function.Function;
 
+/**
+ * How the instance of a {@link xyz.tomsoz.pluginBase.common.flavor.binder.FlavorBinder} is shared.
+ * <p>
+ * {@link #THREAD} binders create their instances from a factory and
+ * must be injected as a {@link xyz.tomsoz.pluginBase.common.flavor.Scoped} field.
+ * </p>
+ * <p>
+ * There is no per region scope: on Folia a region may be ticked by a different thread each tick,
+ * so neither a thread scope nor a scope of the tick threads keeps state with its region.
+ * State which has to follow a region is best kept by the caller, keyed by the region it belongs to.
+ * </p>
+ */
 @SuppressWarnings("unused")
 public enum InjectScope {
     SINGLETON(clazz -> {
@@ -23,6 +35,10 @@ public enum InjectScope {
         }
     }),
     NO_SCOPE(clazz -> null),
+    /**
+     * Every thread gets its own instance.
+     */
+    THREAD(clazz -> null),
     ;
 
     public final Function<Class<?>, Object> instanceCreator;
@@ -30,4 +46,11 @@ public enum InjectScope {
     InjectScope(Function<Class<?>, Object> instanceCreator) {
         this.instanceCreator = instanceCreator;
     }
+
+    /**
+     * Returns whether the scope holds a separate instance per thread.
+     */
+    public boolean isContextual() {
+        return this == THREAD;
+    }
 }
\ No newline at end of file
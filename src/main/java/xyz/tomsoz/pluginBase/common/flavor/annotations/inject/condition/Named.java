@@ -1,8 +1,11 @@
 package xyz.tomsoz.pluginBase.common.flavor.annotations.inject.condition;
 
 import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+@Retention(RetentionPolicy.RUNTIME)
 @Target({
         ElementType.FIELD,
         ElementType.PARAMETER
@@ -1,11 +1,15 @@
 package xyz.tomsoz.pluginBase.common.flavor.binder;
 
+import org.jetbrains.annotations.Nullable;
+import xyz.tomsoz.pluginBase.common.flavor.Scoped;
 import xyz.tomsoz.pluginBase.common.flavor.annotations.inject.InjectScope;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.inject.condition.Named;
 
 import java.lang.annotation.Annotation;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * A wrapper class to easily
@@ -16,6 +20,10 @@ public class FlavorBinder<T> {
     private final Class<T> clazz;
     private final Map<Class<? extends Annotation>, Predicate<? extends Annotation>> annotationChecks = new HashMap<>();
 
+    private @Nullable String qualifier;
+    private @Nullable Supplier<? extends T> factory;
+    private volatile @Nullable Scoped<T> scoped;
+
     public Object instance;
     public InjectScope scope = InjectScope.NO_SCOPE;
 
@@ -34,6 +42,41 @@ public class FlavorBinder<T> {
         return this;
     }
 
+    /**
+     * Sets a {@link InjectScope#isContextual() contextual} scope for the binder,
+     * creating an instance for each thread from the factory.
+     *
+     * @param scope   The injection scope to set, {@link InjectScope#THREAD}.
+     * @param factory The factory creating each instance.
+     * @return The current {@link FlavorBinder} instance.
+     */
+    public FlavorBinder<T> scoped(InjectScope scope, Supplier<? extends T> factory) {
+        if (!scope.isContextual()) throw new IllegalArgumentException("Only the thread scope uses a factory");
+        this.scope = scope;
+        this.factory = factory;
+        return this;
+    }
+
+    /**
+     * Returns the instances of a {@link InjectScope#isContextual() contextual} binder, created on first use.
+     *
+     * @throws IllegalStateException if the binder is not contextual
+     */
+    public Scoped<T> getScoped() {
+        Scoped<T> current = scoped;
+        if (current != null) return current;
+
+        synchronized (this) {
+            if (scoped == null) {
+                if (!scope.isContextual() || factory == null) {
+                    throw new IllegalStateException("Binder for %s has no thread scope".formatted(clazz.getName()));
+                }
+                scoped = new Scoped<>(scope, factory);
+            }
+            return scoped;
+        }
+    }
+
     /**
      * Convert an instance to a {@link FlavorBinder}.
      */
@@ -50,10 +93,29 @@ public class FlavorBinder<T> {
         return this;
     }
 
+    /**
+     * Restricts the binder to fields annotated with {@link Named} of the same value.
+     *
+     * @param qualifier the name to match
+     * @return The current {@link FlavorBinder} instance.
+     */
+    public FlavorBinder<T> named(String qualifier) {
+        this.qualifier = qualifier;
+        return this;
+    }
+
     public Predicate<Annotation> getAnnotationCheck(Class<?> annotation) {
         return ((Predicate<Annotation>) annotationChecks.get(annotation));
     }
 
+    public boolean hasAnnotationChecks() {
+        return !annotationChecks.isEmpty();
+    }
+
+    public @Nullable String getQualifier() {
+        return qualifier;
+    }
+
     public Class<?> getClazz() {
         return clazz;
     }
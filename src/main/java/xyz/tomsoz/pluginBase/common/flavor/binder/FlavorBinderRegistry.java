@@ -0,0 +1,217 @@
+package xyz.tomsoz.pluginBase.common.flavor.binder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.inject.condition.Named;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * The binders of a {@link xyz.tomsoz.pluginBase.common.flavor.Flavor}, indexed by type and qualifier.
+ * <p>
+ * A binder is compatible with a requested type when it is bound to that type or one of its supertypes.
+ * Binders bound to the requested type win over ones bound to its superclasses, which win over
+ * ones bound to its interfaces. Within a single type, the first registered binder wins.
+ * </p>
+ * <p>
+ * A {@link Named} field only accepts binders with the same {@link FlavorBinder#named(String) qualifier},
+ * other fields prefer unqualified binders. The index is rebuilt lazily after a registration,
+ * so binders may still be configured right after being registered.
+ * </p>
+ */
+@SuppressWarnings("unused")
+public class FlavorBinderRegistry implements Iterable<FlavorBinder<?>> {
+    private final List<FlavorBinder<?>> binders = new ArrayList<>();
+
+    private volatile int version;
+    private volatile @Nullable Index index;
+
+    /**
+     * Registers a binder.
+     *
+     * @param binder the binder to register
+     */
+    public synchronized void register(@NotNull FlavorBinder<?> binder) {
+        binders.add(binder);
+        invalidate();
+    }
+
+    /**
+     * Registers binders, in iteration order.
+     *
+     * @param binders the binders to register
+     */
+    public synchronized void registerAll(@NotNull Collection<? extends FlavorBinder<?>> binders) {
+        this.binders.addAll(binders);
+        invalidate();
+    }
+
+    private void invalidate() {
+        index = null;
+        version++;
+    }
+
+    /**
+     * Returns a counter which changes every time a binder is registered.
+     */
+    public int version() {
+        return version;
+    }
+
+    /**
+     * Finds the binder for a type.
+     *
+     * @param type      the requested type
+     * @param qualifier the requested {@link Named} qualifier, or null
+     * @return the binder, or null if none is compatible
+     */
+    public @Nullable FlavorBinder<?> resolve(@NotNull Class<?> type, @Nullable String qualifier) {
+        Resolution resolution = index().resolutions.get(type);
+        if (qualifier != null) return resolution.qualified.get(qualifier);
+        return resolution.unqualified;
+    }
+
+    /**
+     * Finds the binder to inject into a field, taking its {@link Named} qualifier
+     * and any other annotation checks of the binders into account.
+     *
+     * @param field the field to inject
+     * @return the binder, or null if none is compatible
+     */
+    public @Nullable FlavorBinder<?> resolve(@NotNull Field field) {
+        Named named = field.getAnnotation(Named.class);
+        String qualifier = named != null ? named.value() : null;
+
+        Index index = index();
+        if (!index.checked) return resolve(field.getType(), qualifier);
+
+        // some binders carry custom annotation checks, these can't be precomputed per type
+        FlavorBinder<?> fallback = null;
+        for (FlavorBinder<?> binder : index.resolutions.get(field.getType()).candidates) {
+            if (!passesChecks(binder, field)) continue;
+
+            String binderQualifier = binder.getQualifier();
+            if (qualifier != null) {
+                // binders may still check the name through a plain annotation check
+                boolean checksName = binderQualifier == null && binder.getAnnotationCheck(Named.class) != null;
+                if (qualifier.equals(binderQualifier) || checksName) return binder;
+            } else if (binderQualifier == null) {
+                return binder;
+            } else if (fallback == null) {
+                fallback = binder;
+            }
+        }
+        return fallback;
+    }
+
+    private boolean passesChecks(FlavorBinder<?> binder, Field field) {
+        for (Annotation annotation : field.getDeclaredAnnotations()) {
+            Predicate<Annotation> predicate = binder.getAnnotationCheck(annotation.annotationType());
+            if (predicate != null && !predicate.test(annotation)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns a snapshot of the registered binders, in registration order.
+     */
+    public synchronized @NotNull List<FlavorBinder<?>> getBinders() {
+        return List.copyOf(binders);
+    }
+
+    public synchronized int size() {
+        return binders.size();
+    }
+
+    @Override
+    public @NotNull Iterator<FlavorBinder<?>> iterator() {
+        return getBinders().iterator();
+    }
+
+    private Index index() {
+        Index current = index;
+        if (current != null) return current;
+
+        synchronized (this) {
+            if (index == null) index = new Index(binders);
+            return index;
+        }
+    }
+
+    private static final class Index {
+        private final Map<Class<?>, FlavorBinder<?>[]> byType = new HashMap<>();
+        private final boolean checked;
+        private final ClassValue<Resolution> resolutions = new ClassValue<>() {
+            @Override
+            protected Resolution computeValue(Class<?> type) {
+                return new Resolution(type, byType);
+            }
+        };
+
+        private Index(List<FlavorBinder<?>> binders) {
+            Map<Class<?>, List<FlavorBinder<?>>> grouped = new LinkedHashMap<>();
+            boolean checked = false;
+            for (FlavorBinder<?> binder : binders) {
+                grouped.computeIfAbsent(binder.getClazz(), k -> new ArrayList<>()).add(binder);
+                checked |= binder.hasAnnotationChecks();
+            }
+            grouped.forEach((type, list) -> byType.put(type, list.toArray(FlavorBinder<?>[]::new)));
+            this.checked = checked;
+        }
+    }
+
+    /**
+     * The precomputed answers for a single requested type.
+     */
+    private static final class Resolution {
+        private final FlavorBinder<?>[] candidates;
+        private final @Nullable FlavorBinder<?> unqualified;
+        private final Map<String, FlavorBinder<?>> qualified = new HashMap<>();
+
+        private Resolution(Class<?> type, Map<Class<?>, FlavorBinder<?>[]> byType) {
+            List<FlavorBinder<?>> candidates = new ArrayList<>();
+            for (Class<?> superType : lookupOrder(type)) {
+                FlavorBinder<?>[] bound = byType.get(superType);
+                if (bound != null) candidates.addAll(Arrays.asList(bound));
+            }
+
+            FlavorBinder<?> unqualified = null;
+            FlavorBinder<?> firstQualified = null;
+            for (FlavorBinder<?> binder : candidates) {
+                String qualifier = binder.getQualifier();
+                if (qualifier == null) {
+                    if (unqualified == null) unqualified = binder;
+                } else {
+                    qualified.putIfAbsent(qualifier, binder);
+                    if (firstQualified == null) firstQualified = binder;
+                }
+            }
+
+            this.candidates = candidates.toArray(FlavorBinder<?>[]::new);
+            this.unqualified = unqualified != null ? unqualified : firstQualified;
+        }
+
+        /**
+         * The type itself, its superclasses nearest first, then its interfaces breadth first, then Object.
+         */
+        private static Set<Class<?>> lookupOrder(Class<?> type) {
+            Set<Class<?>> order = new LinkedHashSet<>();
+            for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+                order.add(current);
+            }
+
+            Deque<Class<?>> queue = new ArrayDeque<>(order);
+            while (!queue.isEmpty()) {
+                for (Class<?> anInterface : queue.poll().getInterfaces()) {
+                    if (order.add(anInterface)) queue.add(anInterface);
+                }
+            }
+            // interfaces have no superclass, yet are still assignable to Object
+            order.add(Object.class);
+            return order;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package xyz.tomsoz.pluginBase.common.flavor.processor;
+
+import xyz.tomsoz.pluginBase.common.flavor.FlavorIndex;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Writes the {@link FlavorIndex} of the sources being compiled, so that
+ * {@link xyz.tomsoz.pluginBase.common.flavor.PackageIndexer} does not have to scan the classpath on load.
+ * <p>
+ * Every type, method and supertype compiled is indexed, mirroring the
+ * {@code TypesAnnotated}, {@code MethodsAnnotated} and {@code SubTypes} scanners.
+ * Entries from a previous (incremental) compilation are kept as long as their type still exists.
+ * </p>
+ * <p>
+ * The processor is picked up automatically from the classpath of any project depending on PluginBase.
+ * </p>
+ */
+@SupportedAnnotationTypes("*")
+public class FlavorIndexProcessor extends AbstractProcessor {
+    private final Set<FlavorIndex.Entry> entries = new LinkedHashSet<>();
+    private final Set<String> processedTypes = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            write();
+            return false;
+        }
+
+        for (Element element : roundEnv.getRootElements()) {
+            if (element instanceof TypeElement type) index(type);
+        }
+
+        // never claim annotations, other processors (lombok) still need to see them
+        return false;
+    }
+
+    private void index(TypeElement type) {
+        String name = binaryName(type);
+        processedTypes.add(name);
+
+        for (AnnotationMirror annotation : type.getAnnotationMirrors()) {
+            if (!isVisible(annotation)) continue;
+            entries.add(new FlavorIndex.Entry(FlavorIndex.Kind.TYPE, annotationName(annotation), name, null));
+        }
+
+        for (TypeElement superType : superTypes(type)) {
+            entries.add(new FlavorIndex.Entry(FlavorIndex.Kind.SUB_TYPE, binaryName(superType), name, null));
+        }
+
+        for (Element enclosed : type.getEnclosedElements()) {
+            if (enclosed instanceof TypeElement nested) {
+                index(nested);
+            } else if (enclosed instanceof ExecutableElement method && enclosed.getKind() == ElementKind.METHOD) {
+                String signature = signature(method);
+                for (AnnotationMirror annotation : method.getAnnotationMirrors()) {
+                    if (!isVisible(annotation)) continue;
+                    entries.add(new FlavorIndex.Entry(FlavorIndex.Kind.METHOD, annotationName(annotation), name, signature));
+                }
+            }
+        }
+    }
+
+    /**
+     * Source retained annotations never reach the class file, so the classpath scanner would not see them either.
+     */
+    private boolean isVisible(AnnotationMirror annotation) {
+        Retention retention = annotation.getAnnotationType().asElement().getAnnotation(Retention.class);
+        return retention == null || retention.value() != RetentionPolicy.SOURCE;
+    }
+
+    private String annotationName(AnnotationMirror annotation) {
+        return binaryName((TypeElement) annotation.getAnnotationType().asElement());
+    }
+
+    private String signature(ExecutableElement method) {
+        return method.getParameters().stream()
+                .map(it -> typeName(it.asType()))
+                .collect(Collectors.joining(",", method.getSimpleName() + "(", ")"));
+    }
+
+    /**
+     * Returns the name of a type in the format of {@link Class#getTypeName()}.
+     */
+    private String typeName(TypeMirror mirror) {
+        return switch (mirror.getKind()) {
+            case ARRAY -> typeName(((ArrayType) mirror).getComponentType()) + "[]";
+            case DECLARED -> binaryName((TypeElement) ((DeclaredType) mirror).asElement());
+            case TYPEVAR -> typeName(processingEnv.getTypeUtils().erasure(mirror));
+            default -> mirror.getKind().name().toLowerCase(Locale.ROOT);
+        };
+    }
+
+    private Set<TypeElement> superTypes(TypeElement type) {
+        Set<TypeElement> result = new LinkedHashSet<>();
+        Deque<TypeMirror> queue = new ArrayDeque<>(processingEnv.getTypeUtils().directSupertypes(type.asType()));
+
+        while (!queue.isEmpty()) {
+            TypeMirror mirror = queue.poll();
+            if (mirror.getKind() != TypeKind.DECLARED) continue;
+
+            TypeElement element = (TypeElement) ((DeclaredType) mirror).asElement();
+            if (element.getQualifiedName().contentEquals(Object.class.getName())) continue;
+
+            if (result.add(element)) {
+                queue.addAll(processingEnv.getTypeUtils().directSupertypes(mirror));
+            }
+        }
+        return result;
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private void write() {
+        Set<FlavorIndex.Entry> merged = new LinkedHashSet<>(readPrevious());
+        merged.addAll(entries);
+
+        try {
+            FileObject resource = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT, "", FlavorIndex.RESOURCE);
+            try (Writer writer = resource.openWriter()) {
+                FlavorIndex.write(merged, writer);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write the flavor index: " + e);
+        }
+    }
+
+    /**
+     * Reads the index left behind by a previous compilation, dropping every entry
+     * of a type that was recompiled this time round or no longer exists.
+     */
+    private List<FlavorIndex.Entry> readPrevious() {
+        try {
+            FileObject resource = processingEnv.getFiler()
+                    .getResource(StandardLocation.CLASS_OUTPUT, "", FlavorIndex.RESOURCE);
+            try (Reader reader = resource.openReader(true)) {
+                return FlavorIndex.read(reader).stream()
+                        .filter(it -> !processedTypes.contains(it.type()))
+                        .filter(it -> processingEnv.getElementUtils().getTypeElement(it.type().replace('$', '.')) != null)
+                        .toList();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // there is no previous index on a clean build
+            return List.of();
+        }
+    }
+}
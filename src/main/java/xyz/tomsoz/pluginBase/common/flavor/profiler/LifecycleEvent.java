@@ -0,0 +1,32 @@
+package xyz.tomsoz.pluginBase.common.flavor.profiler;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The flight recorder event committed for every {@link LifecycleTiming}.
+ * <p>
+ * The event is disabled unless a recording is running, in which case
+ * it costs no more than creating the object.
+ * </p>
+ */
+@Name("xyz.tomsoz.pluginBase.Lifecycle")
+@Label("Plugin Lifecycle")
+@Category({"PluginBase", "Lifecycle"})
+@Description("A timed lifecycle step of a PluginBase plugin")
+final class LifecycleEvent extends Event {
+    @Label("Plugin")
+    String plugin;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Subject")
+    String subject;
+
+    @Label("Success")
+    boolean success;
+}
@@ -0,0 +1,35 @@
+package xyz.tomsoz.pluginBase.common.flavor.profiler;
+
+/**
+ * The lifecycle phases timed by a {@link LifecycleProfiler}.
+ */
+public enum LifecyclePhase {
+    /**
+     * Loading the {@link xyz.tomsoz.pluginBase.common.flavor.FlavorIndex} or scanning the classpath.
+     */
+    SCAN,
+    /**
+     * Running the methods annotated with a lifecycle annotation, such as {@code @PluginEnable}.
+     */
+    INVOKE,
+    /**
+     * Loading, enabling, disabling or reloading hooks.
+     */
+    HOOKS,
+    /**
+     * Populating the binders of a {@link xyz.tomsoz.pluginBase.common.flavor.binder.FlavorBinderContainer}.
+     */
+    BINDERS,
+    /**
+     * Injecting the fields of a service or object.
+     */
+    INJECT,
+    /**
+     * Running the {@link xyz.tomsoz.pluginBase.common.flavor.annotations.Configure} method of a service.
+     */
+    CONFIGURE,
+    /**
+     * Running the {@link xyz.tomsoz.pluginBase.common.flavor.annotations.Close} method of a service.
+     */
+    CLOSE,
+}
@@ -0,0 +1,149 @@
+package xyz.tomsoz.pluginBase.common.flavor.profiler;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Times the lifecycle phases of a plugin: the classpath scan, annotated method invocations,
+ * hooks, binder population and every injection, {@code @Configure} and {@code @Close}.
+ * <p>
+ * Every step is kept in memory (the most recent {@value #MAX_TIMINGS}) for {@link #report()}
+ * and is committed as a {@link LifecycleEvent} to any running flight recording.
+ * Setting the {@value #DUMP_PROPERTY} system property to a directory additionally writes
+ * the report as JSON on every {@link #dump(String)}.
+ * </p>
+ */
+@SuppressWarnings("unused")
+public final class LifecycleProfiler {
+    public static final String DUMP_PROPERTY = "pluginbase.profiler.dump";
+    public static final int MAX_TIMINGS = 4096;
+
+    private final String plugin;
+    private final Logger logger;
+    private final Deque<LifecycleTiming> timings = new ArrayDeque<>();
+
+    public LifecycleProfiler(@NotNull String plugin, @NotNull Logger logger) {
+        this.plugin = plugin;
+        this.logger = logger;
+    }
+
+    /**
+     * Starts timing a step, which is recorded once the returned {@link Timing} is closed.
+     *
+     * @param phase   the phase of the step
+     * @param subject what is being timed, for example the service name
+     * @return the running timing
+     */
+    public @NotNull Timing start(@NotNull LifecyclePhase phase, @NotNull String subject) {
+        return new Timing(phase, subject);
+    }
+
+    /**
+     * Times a step.
+     *
+     * @param phase   the phase of the step
+     * @param subject what is being timed
+     * @param step    the step to run
+     */
+    public void time(@NotNull LifecyclePhase phase, @NotNull String subject, @NotNull Runnable step) {
+        try (Timing timing = start(phase, subject)) {
+            try {
+                step.run();
+            } catch (RuntimeException | Error e) {
+                timing.fail();
+                throw e;
+            }
+        }
+    }
+
+    private void record(LifecycleTiming timing) {
+        synchronized (timings) {
+            if (timings.size() == MAX_TIMINGS) timings.pollFirst();
+            timings.addLast(timing);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the recorded timings.
+     */
+    public @NotNull LifecycleReport report() {
+        synchronized (timings) {
+            return new LifecycleReport(plugin, new ArrayList<>(timings));
+        }
+    }
+
+    /**
+     * Writes the report to the directory named by the {@value #DUMP_PROPERTY}
+     * system property, does nothing if the property is not set.
+     *
+     * @param stage the lifecycle stage just completed, used in the file name, for example {@code enable}
+     */
+    public void dump(@NotNull String stage) {
+        String directory = System.getProperty(DUMP_PROPERTY);
+        if (directory == null || directory.isBlank()) return;
+
+        Path file = Path.of(directory, "%s-%s.json".formatted(plugin, stage));
+        try {
+            Files.createDirectories(file.getParent());
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writer.write(report().toJson());
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to write the lifecycle profile to " + file, e);
+        }
+    }
+
+    /**
+     * A running timing, recorded when closed.
+     */
+    public final class Timing implements AutoCloseable {
+        private final LifecyclePhase phase;
+        private final String subject;
+        private final long startMillis = System.currentTimeMillis();
+        private final long startNanos = System.nanoTime();
+        private final LifecycleEvent event = new LifecycleEvent();
+        private boolean success = true;
+        private boolean closed;
+
+        private Timing(LifecyclePhase phase, String subject) {
+            this.phase = phase;
+            this.subject = subject;
+            event.begin();
+        }
+
+        /**
+         * Marks the step as failed.
+         */
+        public void fail() {
+            success = false;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+
+            long duration = System.nanoTime() - startNanos;
+            record(new LifecycleTiming(phase, subject, Thread.currentThread().getName(), startMillis, duration, success));
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.plugin = plugin;
+                event.phase = phase.name();
+                event.subject = subject;
+                event.success = success;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package xyz.tomsoz.pluginBase.common.flavor.profiler;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * An immutable snapshot of the timings recorded by a {@link LifecycleProfiler}.
+ */
+@SuppressWarnings("unused")
+public final class LifecycleReport {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private final String plugin;
+    private final List<LifecycleTiming> timings;
+
+    LifecycleReport(String plugin, List<LifecycleTiming> timings) {
+        this.plugin = plugin;
+        this.timings = List.copyOf(timings);
+    }
+
+    /**
+     * Returns the name of the plugin the timings belong to.
+     */
+    public @NotNull String plugin() {
+        return plugin;
+    }
+
+    /**
+     * Returns every timing, in the order the steps completed.
+     */
+    public @NotNull List<LifecycleTiming> timings() {
+        return timings;
+    }
+
+    /**
+     * Returns the timings of a single phase, in the order the steps completed.
+     */
+    public @NotNull List<LifecycleTiming> timings(@NotNull LifecyclePhase phase) {
+        return timings.stream().filter(it -> it.phase() == phase).toList();
+    }
+
+    /**
+     * Returns the timings of a single subject, for example a service, in the order the steps completed.
+     */
+    public @NotNull List<LifecycleTiming> timings(@NotNull String subject) {
+        return timings.stream().filter(it -> it.subject().equals(subject)).toList();
+    }
+
+    /**
+     * Returns the summed duration of every step of a phase, in nanoseconds.
+     * Steps which ran concurrently are all counted in full.
+     */
+    public long total(@NotNull LifecyclePhase phase) {
+        long total = 0;
+        for (LifecycleTiming timing : timings) {
+            if (timing.phase() == phase) total += timing.duration();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the slowest steps, slowest first.
+     *
+     * @param limit the maximum amount of steps to return
+     */
+    public @NotNull List<LifecycleTiming> slowest(int limit) {
+        return timings.stream()
+                .sorted(Comparator.comparingLong(LifecycleTiming::duration).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Returns the failed steps, in the order they completed.
+     */
+    public @NotNull List<LifecycleTiming> failures() {
+        return timings.stream().filter(it -> !it.success()).toList();
+    }
+
+    /**
+     * Serializes the report, with a total per phase followed by every timing.
+     */
+    public @NotNull String toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("plugin", plugin);
+
+        JsonObject totals = new JsonObject();
+        for (LifecyclePhase phase : LifecyclePhase.values()) {
+            totals.addProperty(phase.name().toLowerCase(Locale.ROOT), total(phase) / 1_000_000D);
+        }
+        json.add("totalsMillis", totals);
+
+        JsonArray array = new JsonArray();
+        for (LifecycleTiming timing : timings) {
+            JsonObject entry = new JsonObject();
+            entry.addProperty("phase", timing.phase().name().toLowerCase(Locale.ROOT));
+            entry.addProperty("subject", timing.subject());
+            entry.addProperty("thread", timing.thread());
+            entry.addProperty("start", timing.start());
+            entry.addProperty("durationMillis", timing.durationMillis());
+            entry.addProperty("success", timing.success());
+            array.add(entry);
+        }
+        json.add("timings", array);
+
+        return GSON.toJson(json);
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", plugin + " [", "]");
+        for (LifecyclePhase phase : LifecyclePhase.values()) {
+            joiner.add("%s=%sms".formatted(phase.name().toLowerCase(Locale.ROOT), total(phase) / 1_000_000L));
+        }
+        return joiner.toString();
+    }
+}
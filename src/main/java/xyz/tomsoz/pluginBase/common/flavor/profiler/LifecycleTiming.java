@@ -0,0 +1,29 @@
+package xyz.tomsoz.pluginBase.common.flavor.profiler;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A single timed lifecycle step.
+ *
+ * @param phase    the phase the step belongs to
+ * @param subject  what was timed, for example the service name or annotation
+ * @param thread   the name of the thread the step ran on
+ * @param start    the wall clock time the step started at, in epoch milliseconds
+ * @param duration how long the step took, in nanoseconds
+ * @param success  whether the step completed without throwing
+ */
+public record LifecycleTiming(
+        @NotNull LifecyclePhase phase,
+        @NotNull String subject,
+        @NotNull String thread,
+        long start,
+        long duration,
+        boolean success
+) {
+    /**
+     * Returns how long the step took, in milliseconds.
+     */
+    public double durationMillis() {
+        return duration / 1_000_000D;
+    }
+}
@@ -6,9 +6,16 @@ import com.google.gson.Gson;
 import lombok.Getter;
 import net.kyori.adventure.text.serializer.gson.GsonComponentSerializer;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import xyz.tomsoz.pluginBase.extensions.BasePlugin;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public abstract class BaseBroker {
     @Getter
@@ -20,13 +27,93 @@ public abstract class BaseBroker {
     protected final Gson gson;
     protected final Cache<Integer, Object> cachedIds;
 
+    /**
+     * Identifies this server in the messages it sends.
+     */
+    @Getter
+    private final String origin = UUID.randomUUID().toString();
+    private final Map<String, Consumer<CacheInvalidation>> invalidationListeners = new ConcurrentHashMap<>();
+
     protected BaseBroker(@NotNull BasePlugin plugin) {
         this.plugin = plugin;
         this.gson = GsonComponentSerializer.gson().serializer();
         this.cachedIds = CacheBuilder.newBuilder().expireAfterWrite(60, TimeUnit.SECONDS).build();
     }
 
-    protected abstract void handle(@NotNull Message message);
+    /**
+     * Dispatches a message received from another server, implementations call this for every received message.
+     * <p>
+     * Cache invalidations are passed to the listener of their cache, every
+     * other message is passed to {@link #handleMessage(Message)}. This is final so that
+     * no implementation can skip the invalidations.
+     * </p>
+     *
+     * @param message the received message
+     */
+    protected final void handle(@NotNull Message message) {
+        if (message.getType() != Message.Type.CACHE_INVALIDATE) {
+            handleMessage(message);
+            return;
+        }
+
+        message.getPayload().getCacheInvalidation().ifPresent(invalidation -> {
+            if (origin.equals(invalidation.getOrigin())) return;
+
+            Consumer<CacheInvalidation> listener = invalidationListeners.get(invalidation.getCache());
+            if (listener != null) listener.accept(invalidation);
+        });
+    }
+
+    /**
+     * Handles a received message which is not a cache invalidation.
+     *
+     * @param message the received message
+     */
+    protected abstract void handleMessage(@NotNull Message message);
+
+    /**
+     * Listens for invalidations of a cache sent by the other servers, replacing any previous listener.
+     *
+     * @param cache    the name of the cache
+     * @param listener the listener
+     */
+    public void onCacheInvalidation(@NotNull String cache, @NotNull Consumer<CacheInvalidation> listener) {
+        invalidationListeners.put(cache, listener);
+    }
+
+    /**
+     * Tells the other servers to evict an entry from their local copy of a cache.
+     *
+     * @param cache   the name of the cache
+     * @param key     the key to evict, null to evict everything
+     * @param version the stamp of the write causing the invalidation
+     */
+    public void invalidateCache(@NotNull String cache, @Nullable UUID key, long version) {
+        if (!connected) return;
+
+        Message.builder()
+                .type(Message.Type.CACHE_INVALIDATE)
+                .payload(Payload.withCacheInvalidation(new CacheInvalidation(cache, key, null, origin, version)))
+                .build()
+                .send(this);
+    }
+
+    /**
+     * Tells the other servers to evict several entries from their local copy of a cache, in a single message.
+     *
+     * @param cache   the name of the cache
+     * @param keys    the keys to evict
+     * @param version the stamp of the write causing the invalidation
+     */
+    public void invalidateCacheKeys(@NotNull String cache, @NotNull Collection<UUID> keys, long version) {
+        if (!connected || keys.isEmpty()) return;
+
+        Message.builder()
+                .type(Message.Type.CACHE_INVALIDATE)
+                .payload(Payload.withCacheInvalidation(new CacheInvalidation(cache, null, List.copyOf(keys), origin, version)))
+                .build()
+                .send(this);
+    }
 
     public abstract void connect();
 
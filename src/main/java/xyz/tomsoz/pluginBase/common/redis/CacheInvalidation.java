@@ -0,0 +1,44 @@
+package xyz.tomsoz.pluginBase.common.redis;
+
+import com.google.gson.annotations.Expose;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Tells the other servers to evict an entry from their local copy of a cache.
+ */
+@Getter
+@AllArgsConstructor
+public class CacheInvalidation {
+    /**
+     * The name of the cache, usually the name of the cached class.
+     */
+    @Expose
+    private final String cache;
+    /**
+     * The key to evict, null to evict the {@link #keys} or, without those, everything.
+     */
+    @Expose
+    @Nullable
+    private final UUID key;
+    /**
+     * The keys to evict at once, null unless a batch was written.
+     */
+    @Expose
+    @Nullable
+    private final List<UUID> keys;
+    /**
+     * The {@link BaseBroker#getOrigin() origin} of the server which sent the invalidation.
+     */
+    @Expose
+    private final String origin;
+    /**
+     * The sender's monotonic stamp of the write, increasing with every invalidation it sends.
+     */
+    @Expose
+    private final long version;
+}
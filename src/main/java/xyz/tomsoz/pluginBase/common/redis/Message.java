@@ -28,6 +28,7 @@ public class Message {
     public enum Type {
         NOTIFICATION,
         RELOAD,
-        TOGGLE
+        TOGGLE,
+        CACHE_INVALIDATE
     }
 }
@@ -12,6 +12,9 @@ public class Payload {
     @Nullable
     @Expose
     private Notification notification;
+    @Nullable
+    @Expose
+    private CacheInvalidation cacheInvalidation;
 
     /**
      * Returns an empty cross-server message payload.
@@ -37,6 +40,23 @@ public class Payload {
         return payload;
     }
 
+    /**
+     * Returns a payload evicting a cache entry on the other servers.
+     *
+     * @param invalidation the entry to evict
+     * @return a payload containing the invalidation
+     */
+    @NotNull
+    public static Payload withCacheInvalidation(@NotNull CacheInvalidation invalidation) {
+        final Payload payload = new Payload();
+        payload.cacheInvalidation = invalidation;
+        return payload;
+    }
+
+    public Optional<CacheInvalidation> getCacheInvalidation() {
+        return Optional.ofNullable(cacheInvalidation);
+    }
+
     public Optional<Notification> getNotification() {
         return Optional.ofNullable(notification);
     }
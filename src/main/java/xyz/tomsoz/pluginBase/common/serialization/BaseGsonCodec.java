@@ -96,6 +96,13 @@ public abstract class BaseGsonCodec extends BaseCodec {
         return encoder;
     }
 
+    /**
+     * Returns the Gson objects are serialized with, for storing them outside Redis the same way.
+     */
+    public Gson getGson() {
+        return gson;
+    }
+
     @Override
     public ClassLoader getClassLoader() {
         if (gson.getClass().getClassLoader() != null) {
@@ -12,8 +12,12 @@ import xyz.tomsoz.pluginBase.common.extensions.annotations.ExtensionReload;
 import xyz.tomsoz.pluginBase.common.flavor.Flavor;
 import xyz.tomsoz.pluginBase.common.flavor.FlavorOptions;
 import xyz.tomsoz.pluginBase.common.flavor.PackageIndexer;
+import xyz.tomsoz.pluginBase.common.flavor.profiler.LifecyclePhase;
+import xyz.tomsoz.pluginBase.common.flavor.profiler.LifecycleProfiler;
 import xyz.tomsoz.pluginBase.flavor.binder.defaults.DefaultPluginBinder;
 
+import java.util.List;
+
 public class BasePlugin extends JavaPlugin implements BaseExtension {
     protected final Version currentVersion = Version.fromString(getDescription().getVersion().isEmpty() ? "1.0.0" : getDescription().getVersion());
 
@@ -53,7 +57,7 @@ public class BasePlugin extends JavaPlugin implements BaseExtension {
         } catch (Exception ignored) {
         }
 
-        Hooker.load();
+        flavor.profiler.time(LifecyclePhase.HOOKS, "load", Hooker::load);
         InstanceHolder.modification = this;
     }
 
@@ -61,18 +65,22 @@ public class BasePlugin extends JavaPlugin implements BaseExtension {
     public final void onEnable() {
         flavor.startup();
 
-        Hooker.enable();
+        flavor.profiler.time(LifecyclePhase.HOOKS, "enable", Hooker::enable);
 
         this.packageIndexer.invokeMethodsAnnotatedWith(PluginEnable.class);
+        // only the disable and reload methods are looked up from here on
+        this.packageIndexer.compact(List.of(PluginDisable.class, ExtensionReload.class));
+        flavor.profiler.dump("enable");
     }
 
     @Override
     public final void onDisable() {
-        Hooker.disable();
+        flavor.profiler.time(LifecyclePhase.HOOKS, "disable", Hooker::disable);
 
         this.packageIndexer.invokeMethodsAnnotatedWith(PluginDisable.class);
 
         flavor.close();
+        flavor.profiler.dump("disable");
     }
 
     /**
@@ -81,7 +89,17 @@ public class BasePlugin extends JavaPlugin implements BaseExtension {
     @Override
     public final void reload() {
         this.packageIndexer.invokeMethodsAnnotatedWith(ExtensionReload.class);
-        Hooker.reload();
+        flavor.profiler.time(LifecyclePhase.HOOKS, "reload", Hooker::reload);
+        flavor.profiler.dump("reload");
+    }
+
+    /**
+     * Get the profiler timing this plugin's lifecycle.
+     *
+     * @return the lifecycle profiler.
+     */
+    public final LifecycleProfiler getLifecycleProfiler() {
+        return flavor.profiler;
     }
 
     /**
@@ -8,7 +8,6 @@ import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.plugin.messaging.Messenger;
 import org.bukkit.scheduler.BukkitScheduler;
 import xyz.tomsoz.pluginBase.common.Version;
-import xyz.tomsoz.pluginBase.common.flavor.annotations.inject.condition.Named;
 import xyz.tomsoz.pluginBase.common.flavor.binder.FlavorBinderContainer;
 import xyz.tomsoz.pluginBase.common.logging.ServiceLogFormatter;
 import xyz.tomsoz.pluginBase.extensions.BasePlugin;
@@ -49,12 +48,12 @@ public class DefaultPluginBinder extends FlavorBinderContainer {
 
         bind(plugin.getCurrentVersion())
                 .to(Version.class)
-                .populate(it -> it.annotated(Named.class, a -> a.value().equals("plugin:version")))
+                .populate(it -> it.named("plugin:version"))
                 .bind();
 
         bind(Version.fromString(Bukkit.getBukkitVersion()))
                 .to(Version.class)
-                .populate(it -> it.annotated(Named.class, a -> a.value().equals("bukkit:version")))
+                .populate(it -> it.named("bukkit:version"))
                 .bind();
 
         bind(Bukkit.getScheduler())
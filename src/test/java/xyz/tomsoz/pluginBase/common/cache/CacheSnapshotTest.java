@@ -0,0 +1,185 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xyz.tomsoz.pluginBase.common.cache.OffHeapCacheTest.Stored;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheSnapshotTest {
+    private final Gson gson = new Gson();
+    private final List<String> messages = new ArrayList<>();
+    private final Logger logger = Logger.getAnonymousLogger();
+    private final List<Stored> restored = new ArrayList<>();
+    private final Stored first = new Stored(UUID.randomUUID(), "first");
+    private final Stored second = new Stored(UUID.randomUUID(), "second");
+
+    @TempDir
+    Path directory;
+
+    CacheSnapshotTest() {
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                messages.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+
+    private CacheSnapshot snapshot(String version) {
+        return CacheSnapshot.builder(directory.resolve("caches.snapshot"), gson)
+                .maxAge(Duration.ofMinutes(10))
+                .version(version)
+                .logger(logger)
+                .build();
+    }
+
+    private int restore(CacheSnapshot snapshot) {
+        return snapshot.restore(Map.of("stored", new CacheSnapshot.Target<>(Stored.class, restored::add)));
+    }
+
+    /**
+     * Writes a snapshot holding a section without a target before the one restored.
+     */
+    private CacheSnapshot written() throws IOException {
+        CacheSnapshot snapshot = snapshot("1.0");
+        Map<String, List<?>> sections = new LinkedHashMap<>();
+        sections.put("skipped", List.of(new Stored(UUID.randomUUID(), "skipped")));
+        sections.put("stored", Arrays.asList(first, null, second));
+        assertEquals(3, snapshot.write(sections));
+        return snapshot;
+    }
+
+    /**
+     * Overwrites the time a snapshot was written at, updating its checksum to match.
+     */
+    private void rewriteTime(CacheSnapshot snapshot, long writtenAt) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshot.getFile()));
+        int end = buffer.limit() - Long.BYTES;
+        buffer.putLong(Integer.BYTES * 2, writtenAt);
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().position(0).limit(end));
+        buffer.putLong(end, crc.getValue());
+        Files.write(snapshot.getFile(), buffer.array());
+    }
+
+    private void assertDiscarded(CacheSnapshot snapshot, String reason) {
+        assertEquals(0, restore(snapshot));
+        assertEquals(List.of(), restored);
+        assertFalse(Files.exists(snapshot.getFile()), "the discarded snapshot was kept");
+        assertTrue(messages.stream().anyMatch(it -> it.contains(reason)), () -> "expected '" + reason + "' in " + messages);
+    }
+
+    @Test
+    void restoresTheSectionsWithATargetOnce() throws IOException {
+        CacheSnapshot snapshot = written();
+
+        assertEquals(2, restore(snapshot));
+        assertEquals(List.of(first, second), restored);
+        assertFalse(Files.exists(snapshot.getFile()));
+        assertEquals(0, restore(snapshot));
+    }
+
+    @Test
+    void writeReplacesThePreviousSnapshot() throws IOException {
+        CacheSnapshot snapshot = written();
+        snapshot.write(Map.of("stored", List.of(second)));
+
+        assertEquals(1, restore(snapshot));
+        assertEquals(List.of(second), restored);
+        assertFalse(Files.exists(snapshot.getFile().resolveSibling("caches.snapshot.tmp")));
+    }
+
+    @Test
+    void missingSnapshotRestoresNothing() {
+        assertEquals(0, restore(snapshot("1.0")));
+        assertEquals(List.of(), messages);
+    }
+
+    @Test
+    void corruptedSnapshotIsDiscarded() throws IOException {
+        CacheSnapshot snapshot = written();
+        byte[] bytes = Files.readAllBytes(snapshot.getFile());
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(snapshot.getFile(), bytes);
+
+        assertDiscarded(snapshot, "checksum does not match");
+    }
+
+    @Test
+    void truncatedSnapshotIsDiscarded() throws IOException {
+        CacheSnapshot snapshot = written();
+        byte[] bytes = Files.readAllBytes(snapshot.getFile());
+        Files.write(snapshot.getFile(), Arrays.copyOf(bytes, bytes.length - 12));
+
+        assertDiscarded(snapshot, "checksum does not match");
+    }
+
+    @Test
+    void fileTooShortForAHeaderIsDiscarded() throws IOException {
+        CacheSnapshot snapshot = snapshot("1.0");
+        Files.write(snapshot.getFile(), new byte[10]);
+
+        assertDiscarded(snapshot, "truncated");
+    }
+
+    @Test
+    void otherFileIsDiscarded() throws IOException {
+        CacheSnapshot snapshot = snapshot("1.0");
+        Files.writeString(snapshot.getFile(), "not a snapshot, but long enough to have a header");
+
+        assertDiscarded(snapshot, "not a cache snapshot");
+    }
+
+    @Test
+    void snapshotOfAnotherVersionIsDiscarded() throws IOException {
+        written();
+
+        assertDiscarded(snapshot("2.0"), "version '1.0'");
+    }
+
+    @Test
+    void snapshotOlderThanTheMaximumAgeIsDiscarded() throws IOException {
+        CacheSnapshot snapshot = written();
+        rewriteTime(snapshot, System.currentTimeMillis() - Duration.ofMinutes(11).toMillis());
+
+        assertDiscarded(snapshot, "old");
+    }
+
+    @Test
+    void snapshotWrittenInTheFutureIsDiscarded() throws IOException {
+        CacheSnapshot snapshot = written();
+        rewriteTime(snapshot, System.currentTimeMillis() + Duration.ofMinutes(5).toMillis());
+
+        assertDiscarded(snapshot, "in the future");
+    }
+
+    @Test
+    void snapshotWithinTheClockSkewIsRestored() throws IOException {
+        CacheSnapshot snapshot = written();
+        rewriteTime(snapshot, System.currentTimeMillis() + Duration.ofSeconds(30).toMillis());
+
+        assertEquals(2, restore(snapshot));
+    }
+}
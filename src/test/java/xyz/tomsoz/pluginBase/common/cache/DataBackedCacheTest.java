@@ -0,0 +1,183 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataBackedCacheTest {
+    record Profile(UUID id, String name) {
+    }
+
+    private final InMemoryDataService dataService = new InMemoryDataService();
+
+    private DataBackedCache<Profile> cache() {
+        return cache(500);
+    }
+
+    private DataBackedCache<Profile> cache(int maxBatchSize) {
+        return DataBackedCache.builder(Profile.class, Profile::id, MemoryCache.builder(Profile::id).build(), dataService)
+                .maxBatchSize(maxBatchSize)
+                .build();
+    }
+
+    /**
+     * Returns a key whose hash is the number, so keys iterate in the order of their numbers.
+     */
+    private static UUID key(int number) {
+        return new UUID(0, number);
+    }
+
+    @Test
+    void repeatedWritesOfAKeyAreSavedOnce() {
+        DataBackedCache<Profile> cache = cache();
+        UUID id = UUID.randomUUID();
+        Profile other = new Profile(UUID.randomUUID(), "other");
+        cache.add(new Profile(id, "first"));
+        cache.add(new Profile(id, "second"));
+        cache.add(other);
+
+        assertEquals(2, cache.dirtySize());
+        assertTrue(cache.flush());
+        assertEquals(1, dataService.batches.size());
+        assertEquals(Set.of(new Profile(id, "second"), other), Set.copyOf(dataService.saved));
+        assertEquals(0, cache.dirtySize());
+        assertTrue(cache.flush());
+        assertEquals(1, dataService.batches.size());
+    }
+
+    @Test
+    void keyWrittenAgainDuringAFlushStaysDirty() {
+        DataBackedCache<Profile> cache = cache();
+        Profile profile = new Profile(UUID.randomUUID(), "profile");
+        cache.add(profile);
+        // the same object again, an equal marker would be removed along with the saved one
+        dataService.beforeSave = batch -> cache.add(profile);
+
+        assertTrue(cache.flush());
+        assertEquals(1, cache.dirtySize());
+
+        dataService.beforeSave = batch -> {
+        };
+        assertTrue(cache.flush());
+        assertEquals(0, cache.dirtySize());
+        assertEquals(List.of(profile, profile), dataService.saved);
+    }
+
+    @Test
+    void failedBatchStaysDirty() {
+        Profile first = new Profile(key(1), "first");
+        Profile second = new Profile(key(2), "second");
+        Profile broken = new Profile(key(3), "broken");
+        // disconnected while adding, the flushes started once a batch is full do nothing
+        dataService.connected = false;
+        DataBackedCache<Profile> cache = cache(2);
+        List.of(first, second, broken).forEach(cache::add);
+        dataService.beforeSave = batch -> {
+            if (batch.contains(broken)) throw new IllegalStateException("database down");
+        };
+        dataService.connected = true;
+
+        assertFalse(cache.flush());
+        assertEquals(List.of(first, second), dataService.saved);
+        assertEquals(1, cache.dirtySize());
+        assertTrue(dataService.messages().contains("[Cache] [Profile] Failed to save 1 objects, retrying with the next flush."),
+                dataService.messages().toString());
+
+        dataService.beforeSave = batch -> {
+        };
+        assertTrue(cache.flush());
+        assertEquals(List.of(first, second, broken), dataService.saved);
+        assertEquals(0, cache.dirtySize());
+    }
+
+    @Test
+    void disconnectedFlushKeepsEverythingDirty() {
+        DataBackedCache<Profile> cache = cache();
+        cache.add(new Profile(UUID.randomUUID(), "first"));
+        cache.add(new Profile(UUID.randomUUID(), "second"));
+        dataService.connected = false;
+
+        assertFalse(cache.flush());
+        assertEquals(2, cache.dirtySize());
+        assertEquals(List.of(), dataService.batches);
+
+        dataService.runShutdownTasks();
+        assertTrue(dataService.messages().contains("[Cache] [Profile] Lost 2 unsaved objects on shutdown."),
+                dataService.messages().toString());
+    }
+
+    @Test
+    void shutdownSavesThePendingWrites() {
+        DataBackedCache<Profile> cache = cache();
+        Profile profile = new Profile(UUID.randomUUID(), "profile");
+        cache.add(profile);
+
+        dataService.runShutdownTasks();
+        assertEquals(List.of(profile), dataService.saved);
+        assertEquals(0, cache.dirtySize());
+    }
+
+    @Test
+    void missIsLoadedOnceAndCached() {
+        DataBackedCache<Profile> cache = cache();
+        Profile stored = new Profile(UUID.randomUUID(), "stored");
+        dataService.stored.put(stored.id(), stored);
+
+        assertEquals(stored, cache.get(stored.id()));
+        assertEquals(stored, cache.get(stored.id()));
+        assertNull(cache.get(UUID.randomUUID()));
+        assertEquals(2, dataService.loads.get());
+        assertEquals(0, cache.dirtySize());
+    }
+
+    @Test
+    void evictedPendingWriteIsServedWithoutLoading() {
+        DataBackedCache<Profile> cache = cache();
+        Profile profile = new Profile(UUID.randomUUID(), "profile");
+        cache.add(profile);
+        cache.invalidate(profile.id());
+
+        assertEquals(profile, cache.get(profile.id()));
+        assertEquals(0, dataService.loads.get());
+    }
+
+    @Test
+    void writeDuringALoadWinsOverTheLoadedObject() {
+        DataBackedCache<Profile> cache = cache();
+        UUID id = UUID.randomUUID();
+        dataService.holdLoads = true;
+        CompletableFuture<Profile> loading = cache.getAsync(id);
+        CompletableFuture<Profile> joined = cache.getAsync(id);
+
+        Profile written = new Profile(id, "written");
+        cache.add(written);
+        dataService.completeLoad(id, new Profile(id, "stale"));
+
+        assertSame(written, loading.join());
+        assertSame(written, joined.join());
+        assertSame(written, cache.get(id));
+        assertEquals(1, dataService.loads.get());
+        assertEquals(1, cache.deduplicatedLoads());
+    }
+
+    @Test
+    void objectSavedDuringALoadIsKept() {
+        DataBackedCache<Profile> cache = cache();
+        UUID id = UUID.randomUUID();
+        dataService.holdLoads = true;
+        CompletableFuture<Profile> loading = cache.getAsync(id);
+
+        Profile written = new Profile(id, "written");
+        cache.add(written);
+        assertTrue(cache.flush());
+        dataService.completeLoad(id, new Profile(id, "stale"));
+
+        assertSame(written, loading.join());
+        assertSame(written, cache.get(id));
+    }
+}
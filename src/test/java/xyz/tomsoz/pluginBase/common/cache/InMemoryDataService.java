@@ -0,0 +1,125 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import xyz.tomsoz.pluginBase.common.Tuple;
+import xyz.tomsoz.pluginBase.common.database.BaseDataService;
+import xyz.tomsoz.pluginBase.common.database.DatabaseHandler;
+import xyz.tomsoz.pluginBase.common.database.DatabaseType;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * A data service without a database, holding its objects in memory.
+ * Tests can disconnect it, hold loads back until they complete them, and fail saves.
+ */
+class InMemoryDataService extends BaseDataService {
+    /**
+     * The objects loads are answered from, by key.
+     */
+    final Map<UUID, Object> stored = new ConcurrentHashMap<>();
+    /**
+     * Every batch passed to {@link #saveAll(Class, Collection)} while connected, including failed ones.
+     */
+    final List<List<Object>> batches = new CopyOnWriteArrayList<>();
+    /**
+     * The objects of every batch which saved.
+     */
+    final List<Object> saved = new CopyOnWriteArrayList<>();
+    final List<LogRecord> logged = new CopyOnWriteArrayList<>();
+    final AtomicInteger loads = new AtomicInteger();
+
+    private final Map<UUID, CompletableFuture<Optional<Object>>> heldLoads = new ConcurrentHashMap<>();
+    private final List<Runnable> shutdownTasks = new CopyOnWriteArrayList<>();
+
+    volatile boolean connected = true;
+    volatile boolean holdLoads;
+    /**
+     * Runs with every batch before it is saved, throwing fails the batch.
+     */
+    volatile Consumer<List<Object>> beforeSave = batch -> {
+    };
+
+    InMemoryDataService() {
+        logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                logged.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+
+    /**
+     * Completes a load held back by {@link #holdLoads}, with the object or empty if null.
+     */
+    void completeLoad(UUID id, Object value) {
+        heldLoads.computeIfAbsent(id, key -> new CompletableFuture<>()).complete(Optional.ofNullable(value));
+    }
+
+    /**
+     * Runs the tasks registered through {@link #beforeShutdown(Runnable)}, without the executor and handler
+     * a real shutdown would close.
+     */
+    void runShutdownTasks() {
+        shutdownTasks.forEach(Runnable::run);
+    }
+
+    List<String> messages() {
+        return logged.stream().map(LogRecord::getMessage).toList();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public <T> CompletableFuture<Optional<T>> get(Class<T> clazz, UUID id) {
+        loads.incrementAndGet();
+        if (holdLoads) {
+            return heldLoads.computeIfAbsent(id, key -> new CompletableFuture<>()).thenApply(it -> it.map(clazz::cast));
+        }
+        return CompletableFuture.completedFuture(Optional.ofNullable(clazz.cast(stored.get(id))));
+    }
+
+    @Override
+    public <T> CompletableFuture<Void> saveAll(Class<T> clazz, Collection<? extends T> ts) {
+        if (!connected) return CompletableFuture.failedFuture(new IllegalStateException("Not connected"));
+
+        List<Object> batch = List.copyOf(ts);
+        batches.add(batch);
+        try {
+            beforeSave.accept(batch);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        saved.addAll(batch);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void beforeShutdown(Runnable task) {
+        shutdownTasks.add(task);
+    }
+
+    @Override
+    protected Tuple<DatabaseType, Class<? extends DatabaseHandler>> getEnabledDatabase() {
+        throw new UnsupportedOperationException("There is no database");
+    }
+}
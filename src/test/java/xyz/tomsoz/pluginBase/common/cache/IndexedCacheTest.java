@@ -0,0 +1,134 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexedCacheTest {
+    /**
+     * A cached object whose index keys change while it is cached.
+     */
+    static final class Member {
+        final UUID id = UUID.randomUUID();
+        volatile String name;
+        volatile String clan;
+
+        Member(String name, String clan) {
+            this.name = name;
+            this.clan = clan;
+        }
+    }
+
+    private final MemoryCache<Member> memory = MemoryCache.builder((Member it) -> it.id).maximumSize(100).build();
+    private final IndexedCache<Member> cache = new IndexedCache<>(memory);
+    private final CacheIndex<Member, String> names = CacheIndex.<Member, String>unique("name", it -> it.name).ignoreCase();
+    private final CacheIndex<Member, String> clans = CacheIndex.of("clan", it -> it.clan);
+
+    IndexedCacheTest() {
+        cache.register(it -> it.id, List.of(names, clans));
+    }
+
+    @Test
+    void uniqueIndexFindsByKeyRegardlessOfCase() {
+        Member member = new Member("Notch", null);
+        cache.add(member);
+
+        assertEquals(List.of(member), cache.find("name", "NOTCH"));
+        assertEquals(List.of(), cache.find("name", "jeb"));
+        assertEquals(List.of(), cache.find("name", null));
+        // a null key is left out
+        assertEquals(0, clans.size());
+    }
+
+    @Test
+    void indexFindsEveryObjectWithTheKey() {
+        Member first = new Member("first", "red");
+        Member second = new Member("second", "red");
+        Member third = new Member("third", "blue");
+        cache.addAll(List.of(first, second, third));
+
+        assertEquals(Set.of(first, second), Set.copyOf(cache.find("clan", "red")));
+        assertEquals(List.of(third), cache.find("clan", "blue"));
+        // string keys are case sensitive unless the index ignores case
+        assertEquals(List.of(), cache.find("clan", "RED"));
+        assertEquals(2, clans.size());
+    }
+
+    @Test
+    void invalidatedObjectsAreUnindexed() {
+        Member first = new Member("first", "red");
+        Member second = new Member("second", "red");
+        cache.addAll(List.of(first, second));
+
+        cache.invalidate(first.id);
+        cache.invalidate(second);
+        assertEquals(List.of(), cache.find("clan", "red"));
+        assertEquals(0, names.size());
+        assertEquals(0, clans.size());
+    }
+
+    @Test
+    void changedKeyIsMovedOnTheNextWriteOrLookup() {
+        Member member = new Member("before", "red");
+        cache.add(member);
+
+        member.name = "after";
+        assertEquals(List.of(), cache.find("name", "before"));
+        assertEquals(List.of(member), cache.find("name", "after"));
+
+        member.clan = "blue";
+        cache.add(member);
+        assertEquals(List.of(), cache.find("clan", "red"));
+        assertEquals(List.of(member), cache.find("clan", "blue"));
+        assertEquals(1, clans.size());
+    }
+
+    @Test
+    void uniqueKeyTakenByAnotherObjectStaysWithIt() {
+        Member first = new Member("name", null);
+        Member second = new Member("name", null);
+        cache.add(first);
+        cache.add(second);
+        assertEquals(List.of(second), cache.find("name", "name"));
+
+        // the first one leaving does not remove the key the second one took
+        cache.invalidate(first.id);
+        assertEquals(List.of(second), cache.find("name", "name"));
+    }
+
+    @Test
+    void objectsEnteringBeneathTheIndexAreIndexedWhenRead() {
+        Member member = new Member("loaded", "red");
+        memory.add(member);
+        assertEquals(List.of(), cache.find("name", "loaded"));
+
+        assertSame(member, cache.get(member.id));
+        assertEquals(List.of(member), cache.find("name", "loaded"));
+    }
+
+    @Test
+    void evictedObjectsAreUnindexed() {
+        for (int i = 0; i < 1_000; i++) cache.add(new Member("member " + i, "clan " + i));
+        memory.cleanUp();
+
+        assertEquals(memory.size(), names.size());
+        assertEquals(memory.size(), clans.size());
+    }
+
+    @Test
+    void registeringIndexesExistingObjectsAndRejectsDuplicates() {
+        Member member = new Member("existing", "red");
+        cache.add(member);
+        CacheIndex<Member, String> upperNames = CacheIndex.unique("upper", it -> it.name.toUpperCase());
+
+        cache.register(it -> it.id, List.of(upperNames));
+        assertEquals(List.of(member), cache.find("upper", "EXISTING"));
+
+        assertThrows(IllegalArgumentException.class, () -> cache.register(it -> it.id, List.of(CacheIndex.of("name", it -> it.name))));
+        assertThrows(IllegalArgumentException.class, () -> cache.find("missing", "key"));
+    }
+}
@@ -0,0 +1,57 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+import xyz.tomsoz.pluginBase.common.redis.BaseBroker;
+import xyz.tomsoz.pluginBase.common.redis.CacheInvalidation;
+import xyz.tomsoz.pluginBase.common.redis.Message;
+import xyz.tomsoz.pluginBase.common.redis.Payload;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A broker without a connection, tests deliver the invalidations of other servers to it by hand.
+ * As it never connects, nothing this server invalidates is sent anywhere.
+ */
+class LoopbackBroker extends BaseBroker {
+    LoopbackBroker() {
+        super(null);
+    }
+
+    /**
+     * Delivers an invalidation of a key, or of every key if null, as sent by another server.
+     */
+    void deliver(String cache, UUID key, String origin, long version) {
+        deliver(new CacheInvalidation(cache, key, null, origin, version));
+    }
+
+    /**
+     * Delivers an invalidation of several keys, as sent by another server.
+     */
+    void deliverKeys(String cache, List<UUID> keys, String origin, long version) {
+        deliver(new CacheInvalidation(cache, null, keys, origin, version));
+    }
+
+    private void deliver(CacheInvalidation invalidation) {
+        handle(Message.builder()
+                .type(Message.Type.CACHE_INVALIDATE)
+                .payload(Payload.withCacheInvalidation(invalidation))
+                .build());
+    }
+
+    @Override
+    protected void handleMessage(@NotNull Message message) {
+    }
+
+    @Override
+    public void connect() {
+    }
+
+    @Override
+    protected void send(@NotNull Message message) {
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
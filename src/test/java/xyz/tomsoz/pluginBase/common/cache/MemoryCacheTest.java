@@ -0,0 +1,162 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryCacheTest {
+    record Entry(UUID id, int weight) {
+        Entry() {
+            this(UUID.randomUUID(), 1);
+        }
+    }
+
+    private static List<Entry> entries(int count) {
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) entries.add(new Entry());
+        return entries;
+    }
+
+    @Test
+    void staysWithinMaximumSize() {
+        ConcurrentHashMap<RemovalCause, AtomicInteger> causes = new ConcurrentHashMap<>();
+        MemoryCache<Entry> cache = MemoryCache.builder(Entry::id)
+                .maximumSize(100)
+                .removalListener((key, value, cause) -> causes.computeIfAbsent(cause, it -> new AtomicInteger()).incrementAndGet())
+                .build();
+
+        entries(1000).forEach(cache::add);
+
+        assertEquals(100, cache.size());
+        assertEquals(100, cache.weightedSize());
+        assertEquals(900, cache.evictionCount());
+        assertEquals(900, causes.get(RemovalCause.SIZE).get());
+    }
+
+    @Test
+    void staysWithinMaximumWeight() {
+        MemoryCache<Entry> cache = MemoryCache.builder(Entry::id)
+                .maximumWeight(1000, Entry::weight)
+                .build();
+
+        for (int i = 0; i < 500; i++) cache.add(new Entry(UUID.randomUUID(), 1 + i % 10));
+
+        assertTrue(cache.weightedSize() <= 1000, "weight " + cache.weightedSize());
+        long summed = cache.getAll().stream().mapToLong(Entry::weight).sum();
+        assertEquals(summed, cache.weightedSize());
+    }
+
+    @Test
+    void frequentEntriesSurviveAScan() {
+        MemoryCache<Entry> cache = MemoryCache.builder(Entry::id).maximumSize(1000).build();
+        List<Entry> hot = entries(100);
+        hot.forEach(cache::add);
+        for (int round = 0; round < 5; round++) {
+            hot.forEach(entry -> cache.get(entry.id()));
+            cache.cleanUp();
+        }
+
+        // a scan of one-off keys, ten times the size of the cache
+        entries(10_000).forEach(cache::add);
+
+        long survivors = hot.stream().filter(entry -> cache.get(entry.id()) != null).count();
+        assertTrue(survivors >= 95, "only " + survivors + " of the hot entries survived");
+    }
+
+    @Test
+    void newestEntryIsAdmittedIntoTheWindow() {
+        MemoryCache<Entry> cache = MemoryCache.builder(Entry::id).maximumSize(100).build();
+        entries(500).forEach(cache::add);
+
+        Entry newest = new Entry();
+        cache.add(newest);
+        assertSame(newest, cache.get(newest.id()));
+    }
+
+    @Test
+    void usedEntriesOutliveUnusedOnes() {
+        MemoryCache<Entry> cache = MemoryCache.builder(Entry::id).maximumSize(100).build();
+        List<Entry> first = entries(100);
+        first.forEach(cache::add);
+        List<Entry> used = first.subList(0, 10);
+        used.forEach(entry -> cache.get(entry.id()));
+        cache.cleanUp();
+
+        entries(300).forEach(cache::add);
+
+        assertEquals(100, cache.size());
+        for (Entry entry : used) assertNotNull(cache.get(entry.id()), "a used entry was evicted");
+    }
+
+    @Test
+    void candidateNoMoreFrequentThanTheVictimIsRejected() {
+        MemoryCache<Entry> cache = MemoryCache.builder(Entry::id).maximumSize(100).build();
+        List<Entry> first = entries(100);
+        first.forEach(cache::add);
+
+        // every entry was seen once, so on a tie the resident entries are kept and the newcomers leave
+        entries(50).forEach(cache::add);
+
+        long residents = first.stream().filter(entry -> cache.get(entry.id()) != null).count();
+        assertTrue(residents >= 98, "only " + residents + " resident entries were kept");
+    }
+
+    @Test
+    void replacingAndInvalidatingAreNotEvictions() {
+        List<RemovalCause> causes = new ArrayList<>();
+        MemoryCache<Entry> cache = MemoryCache.builder(Entry::id)
+                .maximumSize(10)
+                .removalListener((key, value, cause) -> causes.add(cause))
+                .build();
+
+        Entry entry = new Entry();
+        cache.add(entry);
+        cache.add(new Entry(entry.id(), 2));
+        cache.invalidate(entry.id());
+
+        assertEquals(List.of(RemovalCause.REPLACED, RemovalCause.EXPLICIT), causes);
+        assertEquals(0, cache.evictionCount());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void shedObjectsAreNotCountedAsEvictions() {
+        List<RemovalCause> causes = new ArrayList<>();
+        MemoryCache<Entry> cache = MemoryCache.builder(Entry::id)
+                .maximumSize(100)
+                .removalListener((key, value, cause) -> causes.add(cause))
+                .build();
+        entries(100).forEach(cache::add);
+
+        assertEquals(40, cache.shed(40));
+        assertEquals(60, cache.size());
+        assertEquals(0, cache.evictionCount());
+        assertEquals(40, causes.stream().filter(cause -> cause == RemovalCause.PRESSURE).count());
+    }
+
+    @Test
+    void unboundedCacheNeverEvicts() {
+        MemoryCache<Entry> cache = MemoryCache.builder(Entry::id).build();
+        entries(10_000).forEach(cache::add);
+
+        assertEquals(10_000, cache.size());
+        assertEquals(0, cache.evictionCount());
+    }
+
+    @Test
+    void computeIfAbsentKeepsTheCachedObject() {
+        MemoryCache<Entry> cache = MemoryCache.builder(Entry::id).maximumSize(10).build();
+        Entry entry = new Entry();
+        cache.add(entry);
+
+        assertSame(entry, cache.computeIfAbsent(entry.id(), key -> fail("loaded a cached key")));
+        Entry loaded = cache.computeIfAbsent(UUID.randomUUID(), key -> new Entry(key, 1));
+        assertSame(loaded, cache.get(loaded.id()));
+    }
+}
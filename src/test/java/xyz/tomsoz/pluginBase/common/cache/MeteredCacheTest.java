@@ -0,0 +1,54 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.junit.jupiter.api.Test;
+import xyz.tomsoz.pluginBase.common.cache.DataBackedCacheTest.Profile;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeteredCacheTest {
+    @Test
+    void blockingGetOfADataBackedCacheCountsLoads() {
+        InMemoryDataService dataService = new InMemoryDataService();
+        DataBackedCache<Profile> dataBacked = DataBackedCache.builder(Profile.class, Profile::id,
+                MemoryCache.builder(Profile::id).build(), dataService).build();
+        IndexedCache<Profile> indexed = new IndexedCache<>(dataBacked);
+        indexed.register(Profile::id, List.of(CacheIndex.unique("name", Profile::name)));
+        MeteredCache<Profile> metered = new MeteredCache<>("Profile", indexed, dataBacked);
+
+        Profile stored = new Profile(UUID.randomUUID(), "stored");
+        dataService.stored.put(stored.id(), stored);
+
+        assertEquals(stored, metered.get(stored.id()));
+        assertEquals(stored, metered.get(stored.id()));
+        assertNull(metered.get(UUID.randomUUID()));
+
+        CacheStats stats = metered.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(2, stats.misses());
+        assertEquals(2, stats.loads());
+        assertEquals(2, stats.loadLatency().count());
+        assertEquals(2, dataService.loads.get());
+        // the loaded object is indexed although it never passed through the index
+        assertEquals(List.of(stored), indexed.find("name", "stored"));
+    }
+
+    @Test
+    void getOfAMemoryCacheCountsHitsAndMisses() {
+        MemoryCache<Profile> memory = MemoryCache.builder(Profile::id).build();
+        MeteredCache<Profile> metered = new MeteredCache<>("Profile", memory, memory);
+        Profile profile = new Profile(UUID.randomUUID(), "profile");
+        metered.add(profile);
+
+        assertEquals(profile, metered.get(profile.id()));
+        assertNull(metered.get(UUID.randomUUID()));
+
+        CacheStats stats = metered.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(0, stats.loads());
+        assertEquals(1, stats.puts());
+    }
+}
@@ -0,0 +1,184 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import xyz.tomsoz.pluginBase.common.cache.DataBackedCacheTest.Profile;
+
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NearCacheTest {
+    private static final String NAME = "Profile";
+    private static final String OTHER = "other-server";
+
+    /**
+     * A shared cache kept in memory, which can run an action after reading, as if the read was slow
+     * and something happened on the way back.
+     */
+    static final class SlowCache implements Cache<Profile> {
+        final MemoryCache<Profile> objects = MemoryCache.builder(Profile::id).build();
+        volatile Runnable afterRead = () -> {
+        };
+
+        @Override
+        public void add(@Nullable Profile obj) {
+            objects.add(obj);
+        }
+
+        @Override
+        public @Nullable Profile get(UUID uuid) {
+            Profile value = objects.get(uuid);
+            afterRead.run();
+            return value;
+        }
+
+        @Override
+        public @NotNull Map<UUID, Profile> getAll(@NotNull Collection<UUID> uuids) {
+            Map<UUID, Profile> values = objects.getAll(uuids);
+            afterRead.run();
+            return values;
+        }
+
+        @Override
+        public void invalidate(@NotNull UUID uuid) {
+            objects.invalidate(uuid);
+        }
+
+        @Override
+        public void invalidate(@NotNull Profile obj) {
+            objects.invalidate(obj);
+        }
+
+        @Override
+        public @NotNull List<Profile> getAll() {
+            return objects.getAll();
+        }
+
+        @Override
+        public int size() {
+            return objects.size();
+        }
+    }
+
+    private final LoopbackBroker broker = new LoopbackBroker();
+    private final SlowCache remote = new SlowCache();
+    private final NearCache<Profile> cache = NearCache.builder(NAME, Profile::id, remote, broker)
+            .maxStaleness(Duration.ofMinutes(1))
+            .build();
+
+    private boolean cachedLocally(UUID id) {
+        return cache.getLocal().get(id) != null;
+    }
+
+    @Test
+    void invalidationFromAnotherServerEvictsTheLocalCopy() {
+        Profile profile = new Profile(UUID.randomUUID(), "profile");
+        cache.add(profile);
+        assertTrue(cachedLocally(profile.id()));
+
+        broker.deliver(NAME, profile.id(), OTHER, 1);
+        assertFalse(cachedLocally(profile.id()));
+        // the shared copy stays, the next read fills the local cache again
+        assertEquals(profile, cache.get(profile.id()));
+        assertTrue(cachedLocally(profile.id()));
+    }
+
+    @Test
+    void lateOrDuplicateInvalidationIsSkipped() {
+        Profile profile = new Profile(UUID.randomUUID(), "profile");
+        remote.add(profile);
+        broker.deliver(NAME, profile.id(), OTHER, 10);
+        assertEquals(profile, cache.get(profile.id()));
+
+        broker.deliver(NAME, profile.id(), OTHER, 10);
+        assertTrue(cachedLocally(profile.id()), "a duplicate evicted the copy read after it");
+        broker.deliver(NAME, profile.id(), OTHER, 9);
+        broker.deliverKeys(NAME, List.of(profile.id()), OTHER, 9);
+        assertTrue(cachedLocally(profile.id()), "a late invalidation evicted the copy read after a newer one");
+
+        broker.deliver(NAME, profile.id(), OTHER, 11);
+        assertFalse(cachedLocally(profile.id()));
+    }
+
+    @Test
+    void versionsOfDifferentServersAreNotCompared() {
+        Profile profile = new Profile(UUID.randomUUID(), "profile");
+        remote.add(profile);
+        broker.deliver(NAME, profile.id(), OTHER, 10);
+        cache.get(profile.id());
+
+        broker.deliver(NAME, profile.id(), "third-server", 1);
+        assertFalse(cachedLocally(profile.id()));
+    }
+
+    @Test
+    void slowReadIsNotPutBackAfterAnInvalidation() {
+        Profile profile = new Profile(UUID.randomUUID(), "profile");
+        remote.add(profile);
+        remote.afterRead = () -> broker.deliver(NAME, profile.id(), OTHER, 1);
+
+        // the read still returns what it found, but does not keep it
+        assertEquals(profile, cache.get(profile.id()));
+        assertFalse(cachedLocally(profile.id()));
+
+        remote.afterRead = () -> {
+        };
+        assertEquals(profile, cache.get(profile.id()));
+        assertTrue(cachedLocally(profile.id()));
+    }
+
+    @Test
+    void slowBulkReadOnlyKeepsTheKeysNotInvalidated() {
+        Profile invalidated = new Profile(UUID.randomUUID(), "invalidated");
+        Profile kept = new Profile(UUID.randomUUID(), "kept");
+        remote.add(invalidated);
+        remote.add(kept);
+        remote.afterRead = () -> broker.deliverKeys(NAME, List.of(invalidated.id()), OTHER, 1);
+
+        Map<UUID, Profile> read = cache.getAll(List.of(invalidated.id(), kept.id()));
+        assertEquals(Map.of(invalidated.id(), invalidated, kept.id(), kept), read);
+        assertFalse(cachedLocally(invalidated.id()));
+        assertTrue(cachedLocally(kept.id()));
+    }
+
+    @Test
+    void clearingDuringASlowReadKeepsNothing() {
+        Profile profile = new Profile(UUID.randomUUID(), "profile");
+        Profile other = new Profile(UUID.randomUUID(), "other");
+        remote.add(profile);
+        cache.add(other);
+        remote.afterRead = () -> broker.deliver(NAME, null, OTHER, 1);
+
+        assertEquals(profile, cache.get(profile.id()));
+        assertFalse(cachedLocally(profile.id()));
+        assertFalse(cachedLocally(other.id()));
+    }
+
+    @Test
+    void tombstonesAreSweptOnceOlderThanTheStalenessBound() {
+        List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) keys.add(UUID.randomUUID());
+        for (UUID key : keys) broker.deliver(NAME, key, OTHER, 1);
+        // the automatic sweeps ran, but every tombstone is still within the bound
+        assertEquals(keys.size(), cache.tombstoneCount());
+
+        long now = System.nanoTime();
+        cache.sweep(now);
+        assertEquals(keys.size(), cache.tombstoneCount());
+        // the bound is the staleness of a minute
+        cache.sweep(now + Duration.ofSeconds(50).toNanos());
+        assertEquals(keys.size(), cache.tombstoneCount());
+        cache.sweep(now + Duration.ofSeconds(61).toNanos());
+        assertEquals(0, cache.tombstoneCount());
+
+        // without its tombstone, a late delivery is applied again
+        Profile profile = new Profile(keys.getFirst(), "profile");
+        remote.add(profile);
+        cache.get(profile.id());
+        broker.deliver(NAME, profile.id(), OTHER, 1);
+        assertFalse(cachedLocally(profile.id()));
+    }
+}
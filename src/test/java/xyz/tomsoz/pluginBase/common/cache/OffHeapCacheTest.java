@@ -0,0 +1,172 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapCacheTest {
+    /**
+     * Entries per slab, every object serializes to the same length so slabs fill evenly.
+     */
+    private static final int PER_SLAB = 3;
+    private static final int SLABS = 2;
+
+    /**
+     * A plain class rather than a record, so it serializes with older Gson versions too.
+     */
+    static final class Stored {
+        final UUID id;
+        final String name;
+
+        Stored(UUID id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Stored other && id.equals(other.id) && name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, name);
+        }
+    }
+
+    private final Gson gson = new Gson();
+    private final List<UUID> evicted = new ArrayList<>();
+    private final OffHeapCache<Stored> cache;
+    private int created;
+
+    OffHeapCacheTest() {
+        int entryBytes = 16 + 4 + gson.toJson(stored()).getBytes(StandardCharsets.UTF_8).length;
+        cache = OffHeapCache.builder(Stored.class, (Stored it) -> it.id, gson)
+                .slabSize(entryBytes * PER_SLAB)
+                .maximumBytes((long) entryBytes * PER_SLAB * SLABS)
+                .build();
+        cache.addEvictionListener(evicted::add);
+    }
+
+    private Stored stored() {
+        return new Stored(UUID.randomUUID(), "stored %04d".formatted(created++));
+    }
+
+    /**
+     * Adds objects filling every slab, in the order they were added.
+     */
+    private List<Stored> fill() {
+        List<Stored> added = new ArrayList<>();
+        for (int i = 0; i < PER_SLAB * SLABS; i++) {
+            Stored obj = stored();
+            cache.add(obj);
+            added.add(obj);
+        }
+        return added;
+    }
+
+    @Test
+    void objectsAreReadBackWithoutTheHotSet() {
+        List<Stored> added = fill();
+        cache.getHot().invalidateAll();
+
+        for (Stored obj : added) assertEquals(obj, cache.get(obj.id));
+        assertEquals(Set.copyOf(added), Set.copyOf(cache.getAll()));
+        assertEquals(added.size(), cache.size());
+        assertEquals(0, cache.evictionCount());
+    }
+
+    @Test
+    void recyclingTheOldestSlabEvictsItsUnreadObjects() {
+        List<Stored> added = fill();
+        long allocated = cache.allocatedBytes();
+        Stored next = stored();
+        cache.add(next);
+
+        List<UUID> oldest = added.subList(0, PER_SLAB).stream().map(it -> it.id).toList();
+        assertEquals(oldest, evicted);
+        assertEquals(PER_SLAB, cache.evictionCount());
+        for (UUID key : oldest) {
+            assertNull(cache.get(key));
+            assertNull(cache.getHot().get(key));
+        }
+        for (Stored obj : added.subList(PER_SLAB, added.size())) assertEquals(obj, cache.get(obj.id));
+        assertEquals(next, cache.get(next.id));
+        assertEquals(added.size() - PER_SLAB + 1, cache.size());
+        // the slab is reused rather than another one allocated
+        assertEquals(allocated, cache.allocatedBytes());
+    }
+
+    @Test
+    void readObjectsAreMovedInsteadOfEvicted() {
+        List<Stored> added = fill();
+        Stored read = added.getFirst();
+        assertEquals(read, cache.get(read.id));
+        cache.getHot().invalidateAll();
+
+        cache.add(stored());
+        assertFalse(evicted.contains(read.id));
+        assertEquals(PER_SLAB - 1, cache.evictionCount());
+        // listing does not count as a read
+        assertTrue(cache.getAll().contains(read));
+
+        // the moved copy has to be read again to survive the next recycling of its slab
+        cache.add(stored());
+        cache.add(stored());
+        assertFalse(evicted.contains(read.id));
+        cache.add(stored());
+        for (int i = 0; i < PER_SLAB; i++) cache.add(stored());
+        assertTrue(evicted.contains(read.id));
+        assertNull(cache.get(read.id));
+    }
+
+    @Test
+    void replacedAndInvalidatedObjectsAreNotCountedAsEvicted() {
+        List<Stored> added = fill();
+        Stored invalidated = added.get(0);
+        Stored replaced = added.get(1);
+        cache.invalidate(invalidated.id);
+        Stored replacement = new Stored(replaced.id, "stored renamed");
+        cache.getHot().invalidateAll();
+        cache.add(replacement);
+
+        // the replacement went to the recycled slab, leaving only the third object to evict
+        assertEquals(List.of(added.get(2).id), evicted);
+        assertNull(cache.get(invalidated.id));
+        assertEquals(replacement, cache.get(replaced.id));
+    }
+
+    @Test
+    void invalidateAllReleasesTheSlabs() {
+        fill();
+        cache.invalidateAll();
+        assertEquals(0, cache.allocatedBytes());
+        assertEquals(0, cache.size());
+        assertEquals(List.of(), cache.getAll());
+
+        Stored obj = stored();
+        cache.add(obj);
+        assertEquals(obj, cache.get(obj.id));
+        assertEquals(0, cache.evictionCount());
+    }
+
+    @Test
+    void objectLargerThanASlabIsRejected() {
+        Stored large = new Stored(UUID.randomUUID(), "x".repeat(1_000));
+        assertThrows(IllegalArgumentException.class, () -> cache.add(large));
+        assertFalse(cache.addIfAbsent(large));
+
+        Stored obj = stored();
+        assertTrue(cache.addIfAbsent(obj));
+        assertFalse(cache.addIfAbsent(new Stored(obj.id, "stored other")));
+        assertEquals(obj, cache.get(obj.id));
+    }
+}
@@ -0,0 +1,197 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+    @Test
+    void concurrentLoadsOfAKeyShareOneLoad() {
+        SingleFlight<String> flights = new SingleFlight<>();
+        UUID key = UUID.randomUUID();
+        AtomicInteger started = new AtomicInteger();
+        CompletableFuture<String> source = new CompletableFuture<>();
+
+        List<CompletableFuture<String>> callers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            callers.add(flights.load(key, k -> {
+                started.incrementAndGet();
+                return source;
+            }));
+        }
+        source.complete("loaded");
+
+        for (CompletableFuture<String> caller : callers) assertEquals("loaded", caller.join());
+        assertEquals(1, started.get());
+        assertEquals(1, flights.loads());
+        assertEquals(9, flights.deduplicated());
+    }
+
+    @Test
+    void completedLoadIsNotRemembered() {
+        SingleFlight<String> flights = new SingleFlight<>();
+        UUID key = UUID.randomUUID();
+        AtomicInteger started = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("loaded", flights.load(key, k -> {
+                started.incrementAndGet();
+                return CompletableFuture.completedFuture("loaded");
+            }).join());
+        }
+        assertEquals(3, started.get());
+    }
+
+    @Test
+    void loadsOfDifferentKeysRunSeparately() {
+        SingleFlight<UUID> flights = new SingleFlight<>();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        CompletableFuture<UUID> a = flights.load(first, k -> new CompletableFuture<>());
+        CompletableFuture<UUID> b = flights.load(second, CompletableFuture::completedFuture);
+
+        assertEquals(second, b.join());
+        assertFalse(a.isDone());
+        assertEquals(2, flights.loads());
+        assertEquals(0, flights.deduplicated());
+    }
+
+    @Test
+    void failureReachesEveryCallerAndIsNotRemembered() {
+        SingleFlight<String> flights = new SingleFlight<>();
+        UUID key = UUID.randomUUID();
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<String> first = flights.load(key, k -> source);
+        CompletableFuture<String> second = flights.load(key, k -> fail("joined a load in flight"));
+
+        IllegalStateException failure = new IllegalStateException("database down");
+        source.completeExceptionally(failure);
+
+        for (CompletableFuture<String> caller : List.of(first, second)) {
+            CompletionException thrown = assertThrows(CompletionException.class, caller::join);
+            assertSame(failure, thrown.getCause());
+        }
+        assertEquals(1, flights.failures());
+        assertEquals("retried", flights.load(key, k -> CompletableFuture.completedFuture("retried")).join());
+    }
+
+    @Test
+    void throwingLoaderFailsTheCaller() {
+        SingleFlight<String> flights = new SingleFlight<>();
+        CompletableFuture<String> caller = flights.load(UUID.randomUUID(), k -> {
+            throw new IllegalStateException("broken");
+        });
+
+        CompletionException thrown = assertThrows(CompletionException.class, caller::join);
+        assertInstanceOf(IllegalStateException.class, thrown.getCause());
+    }
+
+    @Test
+    void loadNowRethrowsTheCause() {
+        SingleFlight<String> flights = new SingleFlight<>();
+        IllegalArgumentException failure = new IllegalArgumentException("bad key");
+
+        assertSame(failure, assertThrows(IllegalArgumentException.class, () -> flights.loadNow(UUID.randomUUID(), k -> {
+            throw failure;
+        })));
+    }
+
+    @Test
+    void cancellingOneCallerKeepsTheLoadForTheOthers() {
+        SingleFlight<String> flights = new SingleFlight<>();
+        UUID key = UUID.randomUUID();
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<String> first = flights.load(key, k -> source);
+        CompletableFuture<String> second = flights.load(key, k -> source);
+
+        assertTrue(first.cancel(true));
+        assertFalse(source.isCancelled());
+
+        source.complete("loaded");
+        assertEquals("loaded", second.join());
+        assertEquals(1, flights.cancellations());
+    }
+
+    @Test
+    void cancellingEveryCallerCancelsTheLoad() {
+        SingleFlight<String> flights = new SingleFlight<>();
+        UUID key = UUID.randomUUID();
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<String> first = flights.load(key, k -> source);
+        CompletableFuture<String> second = flights.load(key, k -> source);
+
+        first.cancel(true);
+        second.cancel(true);
+
+        assertTrue(source.isCancelled());
+        assertEquals(2, flights.cancellations());
+
+        // the cancelled flight is closed, the next caller starts a new load
+        assertEquals("again", flights.load(key, k -> CompletableFuture.completedFuture("again")).join());
+        assertEquals(2, flights.loads());
+    }
+
+    @Test
+    void recursiveLoadOfTheSameKeyIsDetected() {
+        SingleFlight<String> flights = new SingleFlight<>();
+        UUID key = UUID.randomUUID();
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> flights.loadNow(key, k -> flights.loadNow(k, inner -> "never")));
+        assertTrue(thrown.getMessage().contains(key.toString()), thrown.getMessage());
+
+        // the failed flight is gone, the key loads normally again
+        assertEquals("loaded", flights.loadNow(key, k -> "loaded"));
+    }
+
+    @Test
+    void recursiveLoadOfAnotherKeyIsAllowed() {
+        SingleFlight<String> flights = new SingleFlight<>();
+        UUID outer = UUID.randomUUID();
+        UUID inner = UUID.randomUUID();
+
+        assertEquals("outer of inner", flights.loadNow(outer, k -> "outer of " + flights.loadNow(inner, i -> "inner")));
+    }
+
+    @Test
+    void loadNowWaitsForALoadStartedOnAnotherThread() throws Exception {
+        SingleFlight<String> flights = new SingleFlight<>();
+        UUID key = UUID.randomUUID();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> leader = executor.submit(() -> flights.loadNow(key, k -> {
+                loads.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return "loaded";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            Future<String> follower = executor.submit(() -> flights.loadNow(key, k -> {
+                loads.incrementAndGet();
+                return "own load";
+            }));
+            // give the follower time to join before the leader finishes
+            while (flights.deduplicated() == 0) Thread.onSpinWait();
+            release.countDown();
+
+            assertEquals("loaded", leader.get(5, TimeUnit.SECONDS));
+            assertEquals("loaded", follower.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+    }
+}
@@ -0,0 +1,152 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+    private static final long TICK = 1_000;
+    private static final long ORIGIN = 5_000_000;
+
+    static final class Entry extends TimingWheel.Timer {
+        final long deadline;
+        long firedAt = -1;
+
+        Entry(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+
+    private static TimingWheel<Entry> wheel() {
+        return new TimingWheel<>(TICK, ORIGIN);
+    }
+
+    @Test
+    void timersFireNeverEarlyAndAtMostOneTickLate() {
+        TimingWheel<Entry> wheel = wheel();
+        Random random = new Random(7);
+        List<Entry> entries = new ArrayList<>();
+        // deadlines up to the third wheel, so timers cascade down twice
+        for (int i = 0; i < 2_000; i++) {
+            Entry entry = new Entry(ORIGIN + 1 + (long) (random.nextDouble() * 300_000 * TICK));
+            entries.add(entry);
+            wheel.schedule(entry, entry.deadline);
+        }
+
+        long step = TICK / 4;
+        for (long now = ORIGIN; wheel.size() > 0; now += step) {
+            long time = now;
+            wheel.advance(time, entry -> entry.firedAt = time);
+        }
+
+        for (Entry entry : entries) {
+            assertTrue(entry.firedAt >= entry.deadline, "fired " + (entry.deadline - entry.firedAt) + "ns early");
+            assertTrue(entry.firedAt < entry.deadline + TICK + step, "fired " + (entry.firedAt - entry.deadline) + "ns late");
+        }
+    }
+
+    @Test
+    void timersCascadeThroughEveryWheel() {
+        // the last tick of a wheel and the first ticks of the next, for each of the four cascading wheels
+        long[] ticks = {63, 64, 65, 4_095, 4_096, 4_097, 262_143, 262_144, 262_145, 16_777_215, 16_777_216, 16_777_217};
+        TimingWheel<Entry> wheel = wheel();
+        List<Entry> entries = new ArrayList<>();
+        for (long tick : ticks) {
+            Entry entry = new Entry(ORIGIN + tick * TICK);
+            entries.add(entry);
+            wheel.schedule(entry, entry.deadline);
+        }
+
+        for (Entry entry : entries) {
+            List<Entry> fired = new ArrayList<>();
+            wheel.advance(entry.deadline - TICK, fired::add);
+            assertEquals(List.of(), fired, "fired before " + (entry.deadline - ORIGIN) / TICK);
+
+            wheel.advance(entry.deadline, fired::add);
+            assertEquals(List.of(entry), fired, "did not fire at " + (entry.deadline - ORIGIN) / TICK);
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void timersBeyondTheLastWheelWaitAndFire() {
+        TimingWheel<Entry> wheel = wheel();
+        long span = 1L << 30;
+        Entry entry = new Entry(ORIGIN + (span + 100) * TICK);
+        wheel.schedule(entry, entry.deadline);
+
+        List<Entry> fired = new ArrayList<>();
+        wheel.advance(ORIGIN + span * TICK, fired::add);
+        assertTrue(fired.isEmpty());
+        assertTrue(entry.isScheduled());
+
+        wheel.advance(entry.deadline, fired::add);
+        assertEquals(List.of(entry), fired);
+    }
+
+    @Test
+    void passedDeadlineFiresOnTheNextAdvance() {
+        TimingWheel<Entry> wheel = wheel();
+        wheel.advance(ORIGIN + 100 * TICK, entry -> fail("nothing was scheduled"));
+
+        Entry entry = new Entry(ORIGIN + 10 * TICK);
+        wheel.schedule(entry, entry.deadline);
+        List<Entry> fired = new ArrayList<>();
+        wheel.advance(ORIGIN + 101 * TICK, fired::add);
+        assertEquals(List.of(entry), fired);
+    }
+
+    @Test
+    void cancelledTimersNeverFire() {
+        TimingWheel<Entry> wheel = wheel();
+        Entry kept = new Entry(ORIGIN + 70 * TICK);
+        Entry cancelled = new Entry(ORIGIN + 70 * TICK);
+        wheel.schedule(kept, kept.deadline);
+        wheel.schedule(cancelled, cancelled.deadline);
+
+        wheel.cancel(cancelled);
+        wheel.cancel(cancelled);
+        assertFalse(cancelled.isScheduled());
+        assertEquals(1, wheel.size());
+
+        List<Entry> fired = new ArrayList<>();
+        wheel.advance(ORIGIN + 100 * TICK, fired::add);
+        assertEquals(List.of(kept), fired);
+    }
+
+    @Test
+    void reschedulingMovesTheTimer() {
+        TimingWheel<Entry> wheel = wheel();
+        Entry entry = new Entry(ORIGIN + 10 * TICK);
+        wheel.schedule(entry, ORIGIN + 10 * TICK);
+        wheel.schedule(entry, ORIGIN + 5_000 * TICK);
+        assertEquals(1, wheel.size());
+
+        List<Long> fired = new ArrayList<>();
+        wheel.advance(ORIGIN + 4_999 * TICK, it -> fired.add(4_999L));
+        wheel.advance(ORIGIN + 5_000 * TICK, it -> fired.add(5_000L));
+        assertEquals(List.of(5_000L), fired);
+    }
+
+    @Test
+    void expiredTimerMayBeScheduledAgainWhileFiring() {
+        TimingWheel<Entry> wheel = wheel();
+        Entry entry = new Entry(ORIGIN + TICK);
+        wheel.schedule(entry, entry.deadline);
+
+        List<Long> fired = new ArrayList<>();
+        for (long tick = 1; tick <= 10; tick++) {
+            long now = ORIGIN + tick * TICK;
+            wheel.advance(now, it -> {
+                fired.add(now);
+                wheel.schedule(it, now + 3 * TICK);
+            });
+        }
+
+        assertEquals(List.of(ORIGIN + TICK, ORIGIN + 4 * TICK, ORIGIN + 7 * TICK, ORIGIN + 10 * TICK), fired);
+    }
+}
@@ -0,0 +1,126 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.ref.Reference;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link UuidMap} with the {@link ConcurrentHashMap} it replaced at 10k, 100k and 1M entries,
+ * for reads of present keys, reads of missing keys and replacing writes.
+ * <p>
+ * The main method first prints the retained heap of both maps at each size, measured after a full collection,
+ * then runs the benchmarks. Run it, or {@code org.openjdk.jmh.Main UuidMapBenchmark} with the test classpath
+ * for the timings alone.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class UuidMapBenchmark {
+    private static final Object VALUE = new Object();
+    private static final int[] SIZES = {10_000, 100_000, 1_000_000};
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private UUID[] keys;
+    private UUID[] missing;
+    private UuidMap<Object> uuidMap;
+    private ConcurrentHashMap<UUID, Object> concurrentMap;
+
+    public static void main(String[] args) throws RunnerException {
+        for (int size : SIZES) {
+            long uuidMap = retained(size, true);
+            long concurrentMap = retained(size, false);
+            System.out.printf("%,9d entries: UuidMap %,12d bytes (%.1f/entry), ConcurrentHashMap %,12d bytes (%.1f/entry)%n",
+                    size, uuidMap, (double) uuidMap / size, concurrentMap, (double) concurrentMap / size);
+        }
+
+        new Runner(new OptionsBuilder().include(UuidMapBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * Returns the heap retained by a map of the size, keys included. Every entry shares the same value,
+     * and keys are created while filling the map, so the map holds the only reference to them.
+     */
+    private static long retained(int size, boolean uuidMap) {
+        long before = usedAfterCollection();
+        Object map;
+        if (uuidMap) {
+            UuidMap<Object> filled = new UuidMap<>();
+            for (int i = 0; i < size; i++) filled.put(UUID.randomUUID(), VALUE);
+            map = filled;
+        } else {
+            ConcurrentHashMap<UUID, Object> filled = new ConcurrentHashMap<>();
+            for (int i = 0; i < size; i++) filled.put(UUID.randomUUID(), VALUE);
+            map = filled;
+        }
+        long after = usedAfterCollection();
+        Reference.reachabilityFence(map);
+        return after - before;
+    }
+
+    private static long usedAfterCollection() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Setup
+    public void setup() {
+        keys = new UUID[size];
+        missing = new UUID[size];
+        uuidMap = new UuidMap<>();
+        concurrentMap = new ConcurrentHashMap<>();
+        for (int i = 0; i < size; i++) {
+            keys[i] = UUID.randomUUID();
+            missing[i] = UUID.randomUUID();
+            uuidMap.put(keys[i], VALUE);
+            concurrentMap.put(keys[i], VALUE);
+        }
+    }
+
+    private int index() {
+        return ThreadLocalRandom.current().nextInt(size);
+    }
+
+    @Benchmark
+    public Object uuidMapGet() {
+        return uuidMap.get(keys[index()]);
+    }
+
+    @Benchmark
+    public Object concurrentMapGet() {
+        return concurrentMap.get(keys[index()]);
+    }
+
+    @Benchmark
+    public Object uuidMapMiss() {
+        return uuidMap.get(missing[index()]);
+    }
+
+    @Benchmark
+    public Object concurrentMapMiss() {
+        return concurrentMap.get(missing[index()]);
+    }
+
+    @Benchmark
+    public Object uuidMapReplace() {
+        return uuidMap.put(keys[index()], VALUE);
+    }
+
+    @Benchmark
+    public Object concurrentMapReplace() {
+        return concurrentMap.put(keys[index()], VALUE);
+    }
+}
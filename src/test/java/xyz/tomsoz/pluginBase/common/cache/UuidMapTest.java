@@ -0,0 +1,204 @@
+package xyz.tomsoz.pluginBase.common.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UuidMapTest {
+    private static List<UUID> keys(int count) {
+        List<UUID> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) keys.add(UUID.randomUUID());
+        return keys;
+    }
+
+    @Test
+    void putGetAndRemove() {
+        UuidMap<String> map = new UuidMap<>();
+        UUID key = UUID.randomUUID();
+
+        assertNull(map.put(key, "first"));
+        assertEquals("first", map.put(key, "second"));
+        assertEquals("second", map.get(key));
+        assertEquals("second", map.get(key.getMostSignificantBits(), key.getLeastSignificantBits()));
+        assertEquals(1, map.size());
+
+        assertFalse(map.remove(key, "first"));
+        assertTrue(map.remove(key, "second"));
+        assertNull(map.get(key));
+        assertNull(map.remove(key));
+        assertTrue(map.isEmpty());
+        assertThrows(NullPointerException.class, () -> map.put(key, null));
+    }
+
+    @Test
+    void computeAddsReplacesAndRemoves() {
+        UuidMap<String> map = new UuidMap<>();
+        UUID key = UUID.randomUUID();
+
+        assertEquals("first", map.compute(key, (k, value) -> value == null ? "first" : fail("was " + value)));
+        assertEquals("first second", map.compute(key, (k, value) -> value + " second"));
+        assertNull(map.compute(key, (k, value) -> null));
+        assertNull(map.get(key));
+        assertNull(map.compute(key, (k, value) -> null));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void removalsKeepEveryProbeRunReachable() {
+        // small tables and many removals, so runs collide, wrap around and are shifted back often
+        UuidMap<UUID> map = new UuidMap<>();
+        Map<UUID, UUID> expected = new HashMap<>();
+        Random random = new Random(42);
+        List<UUID> keys = keys(2000);
+
+        for (int round = 0; round < 20_000; round++) {
+            UUID key = keys.get(random.nextInt(keys.size()));
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, key), map.put(key, key));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (UUID key : keys) assertEquals(expected.get(key), map.get(key), "lost " + key);
+    }
+
+    @Test
+    void growingKeepsEveryEntry() {
+        UuidMap<UUID> map = new UuidMap<>();
+        List<UUID> keys = keys(100_000);
+        keys.forEach(key -> map.put(key, key));
+
+        assertEquals(keys.size(), map.size());
+        for (UUID key : keys) assertSame(key, map.get(key));
+        assertNull(map.get(UUID.randomUUID()));
+    }
+
+    @Test
+    void clearEmptiesTheMap() {
+        UuidMap<UUID> map = new UuidMap<>(1000);
+        List<UUID> keys = keys(1000);
+        keys.forEach(key -> map.put(key, key));
+        map.clear();
+
+        assertTrue(map.isEmpty());
+        for (UUID key : keys) assertNull(map.get(key));
+        map.put(keys.getFirst(), keys.getFirst());
+        assertSame(keys.getFirst(), map.get(keys.getFirst()));
+    }
+
+    @Test
+    void optimisticReadsNeverSeeAnotherValue() throws InterruptedException {
+        UuidMap<UUID> map = new UuidMap<>();
+        List<UUID> stable = keys(1000);
+        stable.forEach(key -> map.put(key, key));
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        CountDownLatch readers = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            Thread.ofPlatform().start(() -> {
+                try {
+                    while (running.get() && failure.get() == null) {
+                        for (UUID key : stable) {
+                            if (map.get(key) != key) failure.compareAndSet(null, "read " + map.get(key) + " for " + key);
+                        }
+                    }
+                } finally {
+                    readers.countDown();
+                }
+            });
+        }
+
+        // the writer grows the tables and shifts entries back, while the readers do not lock
+        for (int round = 0; round < 20; round++) {
+            List<UUID> churn = keys(20_000);
+            churn.forEach(key -> map.put(key, key));
+            churn.forEach(map::remove);
+        }
+        running.set(false);
+        readers.await();
+
+        assertNull(failure.get(), failure.get());
+        assertEquals(stable.size(), map.size());
+    }
+
+    @Test
+    void spliteratorSplitsVisitEveryValueOnce() {
+        UuidMap<UUID> map = new UuidMap<>();
+        List<UUID> keys = keys(10_000);
+        keys.forEach(key -> map.put(key, key));
+
+        Deque<Spliterator<UUID>> pending = new ArrayDeque<>(List.of(map.spliterator()));
+        List<Spliterator<UUID>> leaves = new ArrayList<>();
+        while (!pending.isEmpty()) {
+            Spliterator<UUID> spliterator = pending.pop();
+            Spliterator<UUID> prefix = spliterator.trySplit();
+            if (prefix == null) {
+                leaves.add(spliterator);
+            } else {
+                pending.push(prefix);
+                pending.push(spliterator);
+            }
+        }
+        assertEquals(16, leaves.size(), "should split down to a segment each");
+
+        List<UUID> visited = new ArrayList<>();
+        long estimated = 0;
+        for (Spliterator<UUID> leaf : leaves) {
+            estimated += leaf.estimateSize();
+            leaf.forEachRemaining(visited::add);
+        }
+        assertEquals(keys.size(), estimated);
+        assertEquals(keys.size(), visited.size());
+        assertEquals(new HashSet<>(keys), new HashSet<>(visited));
+    }
+
+    @Test
+    void spliteratorSplitAfterAdvancingKeepsItsPosition() {
+        UuidMap<UUID> map = new UuidMap<>();
+        List<UUID> keys = keys(1000);
+        keys.forEach(key -> map.put(key, key));
+
+        Spliterator<UUID> spliterator = map.spliterator();
+        List<UUID> visited = new ArrayList<>();
+        for (int i = 0; i < 10; i++) assertTrue(spliterator.tryAdvance(visited::add));
+        Spliterator<UUID> prefix = spliterator.trySplit();
+        assertNotNull(prefix);
+        prefix.forEachRemaining(visited::add);
+        spliterator.forEachRemaining(visited::add);
+
+        assertEquals(keys.size(), visited.size());
+        assertEquals(new HashSet<>(keys), new HashSet<>(visited));
+        assertEquals(keys.size(), StreamSupport.stream(map.spliterator(), true).distinct().count());
+    }
+
+    @Test
+    void forEachValueFromResumesWhereItStopped() {
+        UuidMap<UUID> map = new UuidMap<>();
+        List<UUID> keys = keys(1000);
+        keys.forEach(key -> map.put(key, key));
+
+        Set<UUID> visited = new HashSet<>();
+        long position = 0;
+        int batches = 0;
+        while (position != -1) {
+            int[] budget = {100};
+            position = map.forEachValueFrom(position, value -> {
+                assertTrue(visited.add(value), "visited twice");
+                return --budget[0] > 0;
+            });
+            batches++;
+        }
+
+        assertEquals(new HashSet<>(keys), visited);
+        assertTrue(batches >= 10, "only " + batches + " batches");
+    }
+}
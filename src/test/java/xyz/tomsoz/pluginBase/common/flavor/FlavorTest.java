@@ -0,0 +1,153 @@
+package xyz.tomsoz.pluginBase.common.flavor;
+
+import org.junit.jupiter.api.Test;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.Close;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.Configure;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.Service;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.inject.Inject;
+import xyz.tomsoz.pluginBase.common.flavor.fixture.late.LateServices;
+import xyz.tomsoz.pluginBase.common.flavor.fixture.lazy.LazyServices.Archive;
+import xyz.tomsoz.pluginBase.common.flavor.fixture.lazy.LazyServices.Archiver;
+import xyz.tomsoz.pluginBase.common.flavor.fixture.lazy.LazyServices.ReportService;
+import xyz.tomsoz.pluginBase.common.flavor.fixture.lazy.LazyServices.Reports;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlavorTest {
+    private static final String FIXTURES = "xyz.tomsoz.pluginBase.common.flavor.fixture.";
+
+    static Flavor flavor(String fixture) {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLevel(Level.OFF);
+        return Flavor.create(FlavorTest.class, new FlavorOptions(logger, FIXTURES + fixture));
+    }
+
+    @Service
+    public static class Late {
+        final AtomicInteger configured = new AtomicInteger();
+        final AtomicInteger closed = new AtomicInteger();
+
+        @Configure
+        void configure() {
+            configured.incrementAndGet();
+        }
+
+        @Close
+        void close() {
+            closed.incrementAndGet();
+        }
+    }
+
+    static class ReportReader {
+        @Inject
+        Reports reports;
+        @Inject
+        Lazy<ReportService> handle;
+    }
+
+    static class EagerReportReader {
+        @Inject
+        ReportService reports;
+    }
+
+    @Test
+    void injectingALateServiceTwiceConfiguresAndClosesItOnce() {
+        Flavor flavor = flavor("late");
+        Late late = new Late();
+
+        flavor.inject(late);
+        flavor.inject(late);
+        assertSame(late, flavor.service(Late.class));
+        flavor.close();
+
+        assertEquals(1, late.configured.get());
+        assertEquals(1, late.closed.get());
+    }
+
+    @Test
+    void anotherInstanceOfALateServiceIsRegisteredToo() {
+        Flavor flavor = flavor("late");
+        Late first = new Late();
+        Late second = new Late();
+
+        flavor.inject(first);
+        flavor.inject(second);
+        assertSame(second, flavor.service(Late.class));
+        flavor.close();
+
+        assertEquals(1, first.closed.get());
+        assertEquals(1, second.closed.get());
+    }
+
+    @Test
+    void reinjectingAStartedServiceDoesNotCloseItTwice() {
+        Flavor flavor = flavor("late");
+        LateServices.Registered registered = LateServices.Registered.INSTANCE;
+        int configured = registered.configured.get();
+        int closed = registered.closed.get();
+
+        flavor.startup();
+        flavor.inject(registered);
+        flavor.close();
+
+        assertEquals(configured + 1, registered.configured.get());
+        assertEquals(closed + 1, registered.closed.get());
+    }
+
+    @Test
+    void lazyServiceIsConfiguredOnTheFirstCallThroughItsProxy() {
+        Flavor flavor = flavor("lazy");
+        int configured = ReportService.INSTANCE.configured.get();
+        flavor.startup();
+        ReportReader reader = flavor.injected(ReportReader.class);
+
+        assertNotSame(ReportService.INSTANCE, reader.reports);
+        assertEquals("Lazy[ReportService]", reader.reports.toString());
+        assertEquals(configured, ReportService.INSTANCE.configured.get());
+
+        assertEquals("report", reader.reports.generate());
+        assertEquals("report", reader.reports.generate());
+        assertEquals(configured + 1, ReportService.INSTANCE.configured.get());
+        flavor.close();
+    }
+
+    @Test
+    void lazyHandleConfiguresTheServiceOnItsFirstRead() {
+        Flavor flavor = flavor("lazy");
+        int configured = ReportService.INSTANCE.configured.get();
+        flavor.startup();
+        ReportReader reader = flavor.injected(ReportReader.class);
+
+        assertFalse(reader.handle.isInitialized());
+        assertSame(ReportService.INSTANCE, reader.handle.get());
+        assertTrue(reader.handle.isInitialized());
+        assertSame(ReportService.INSTANCE, reader.handle.get());
+        assertEquals(configured + 1, ReportService.INSTANCE.configured.get());
+        flavor.close();
+    }
+
+    @Test
+    void lazyServiceInjectedByItsClassIsConfiguredAtStartup() {
+        Flavor flavor = flavor("lazy");
+        int configured = Archive.INSTANCE.configured.get();
+        flavor.startup();
+
+        assertEquals(configured + 1, Archive.INSTANCE.configured.get());
+        assertSame(Archive.INSTANCE, Archiver.INSTANCE.archive);
+        flavor.close();
+    }
+
+    @Test
+    void lazyServiceCannotBeInjectedByItsClassOutsideAService() {
+        Flavor flavor = flavor("lazy");
+        flavor.startup();
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> flavor.injected(EagerReportReader.class));
+        assertTrue(thrown.getMessage().contains("must be an interface or a Lazy<ReportService>"), thrown.getMessage());
+        flavor.close();
+    }
+}
@@ -0,0 +1,114 @@
+package xyz.tomsoz.pluginBase.common.flavor;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.inject.Inject;
+import xyz.tomsoz.pluginBase.common.flavor.binder.FlavorBinder;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Compares {@link Flavor#inject(Object)}, served from a cached {@link InjectionPlan}, with the reflective
+ * injection it replaced, which scanned the fields and binders and toggled access on every call.
+ * <p>
+ * Run the main method, or {@code org.openjdk.jmh.Main InjectionBenchmark} with the test classpath.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InjectionBenchmark {
+    private final List<FlavorBinder<?>> binders = new ArrayList<>();
+    private Flavor flavor;
+    private ExecutorService executor;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(InjectionBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void setup() {
+        flavor = Flavor.create(InjectionBenchmark.class, new FlavorOptions(Logger.getAnonymousLogger(), "xyz.tomsoz.pluginBase.benchmark"));
+        executor = Executors.newSingleThreadExecutor();
+
+        binders.add(flavor.bind(Clock.class).to(Clock.systemUTC()));
+        binders.add(flavor.bind(Random.class).to(new Random()));
+        binders.add(flavor.bind(Logger.class).to(Logger.getAnonymousLogger()));
+        binders.add(flavor.bind(ExecutorService.class).to(executor));
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public Target plan() {
+        Target target = new Target();
+        flavor.inject(target);
+        return target;
+    }
+
+    @Benchmark
+    public Target reflective() {
+        Target target = new Target();
+        reflectiveInject(target);
+        return target;
+    }
+
+    /**
+     * The injection as it was before injection plans.
+     */
+    private void reflectiveInject(Object target) {
+        for (Field field : target.getClass().getDeclaredFields()) {
+            if (!field.isAnnotationPresent(Inject.class)) continue;
+
+            List<FlavorBinder<?>> bindersOfType = binders.stream()
+                    .filter(it -> it.getClazz().isAssignableFrom(field.getType()))
+                    .collect(Collectors.toList());
+            for (FlavorBinder<?> binder : List.copyOf(bindersOfType)) {
+                for (Annotation annotation : field.getDeclaredAnnotations()) {
+                    Predicate<Annotation> predicate = binder.getAnnotationCheck(annotation.getClass());
+                    if (predicate != null && !predicate.test(annotation)) bindersOfType.remove(binder);
+                }
+            }
+
+            FlavorBinder<?> binder = bindersOfType.getFirst();
+            boolean accessibility = field.canAccess(target);
+            try {
+                field.setAccessible(true);
+                field.set(target, binder.instance);
+                field.setAccessible(accessibility);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    public static class Target {
+        @Inject
+        private Clock clock;
+        @Inject
+        private Random random;
+        @Inject
+        private Logger logger;
+        @Inject
+        private ExecutorService executor;
+    }
+}
@@ -0,0 +1,123 @@
+package xyz.tomsoz.pluginBase.common.flavor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstanceFactoryTest {
+    static final class Message {
+        final String chosen;
+
+        private Message() {
+            chosen = "none";
+        }
+
+        private Message(CharSequence text) {
+            chosen = "CharSequence";
+        }
+
+        private Message(String text) {
+            chosen = "String";
+        }
+
+        private Message(Object text, int count) {
+            chosen = "Object, int";
+        }
+
+        private Message(String text, Integer count) {
+            chosen = "String, Integer";
+        }
+    }
+
+    static final class Counter {
+        final String chosen;
+
+        Counter(int count) {
+            chosen = "int";
+        }
+
+        Counter(Integer count) {
+            chosen = "Integer";
+        }
+
+        Counter(long count) {
+            chosen = "long";
+        }
+    }
+
+    static final class Sized {
+        Sized(int size) {
+        }
+    }
+
+    static final class Either {
+        Either(String text) {
+        }
+
+        Either(Integer count) {
+        }
+    }
+
+    static final class Failing {
+        Failing(String reason) {
+            throw new IllegalStateException(reason);
+        }
+    }
+
+    private static String chosen(Object... args) {
+        return ((Message) InstanceFactory.of(Message.class).create(args)).chosen;
+    }
+
+    @Test
+    void mostSpecificConstructorWins() {
+        assertEquals("none", chosen());
+        assertEquals("String", chosen("text"));
+        assertEquals("CharSequence", chosen(new StringBuilder("text")));
+        assertEquals("String, Integer", chosen("text", 1));
+        assertEquals("Object, int", chosen(new Object(), 1));
+    }
+
+    @Test
+    void wrappersMatchPrimitivesAndTheBoxedParameterWins() {
+        assertEquals("Integer", ((Counter) InstanceFactory.of(Counter.class).create(1)).chosen);
+        assertEquals("long", ((Counter) InstanceFactory.of(Counter.class).create(1L)).chosen);
+    }
+
+    @Test
+    void nullMatchesAnyReferenceParameter() {
+        assertEquals("String", chosen((Object) null));
+        assertEquals("String, Integer", chosen(null, null));
+        // null never matches a primitive parameter
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> InstanceFactory.of(Sized.class).create((Object) null));
+        assertInstanceOf(NoSuchMethodException.class, thrown.getCause());
+    }
+
+    @Test
+    void ambiguousArgumentsAreRejected() {
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> InstanceFactory.of(Either.class).create((Object) null));
+        NoSuchMethodException cause = assertInstanceOf(NoSuchMethodException.class, thrown.getCause());
+        assertTrue(cause.getMessage().startsWith("Ambiguous"), cause.getMessage());
+    }
+
+    @Test
+    void unmatchedArgumentsAreRejected() {
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> InstanceFactory.of(Message.class).create(1, 2, 3));
+        NoSuchMethodException cause = assertInstanceOf(NoSuchMethodException.class, thrown.getCause());
+        assertTrue(cause.getMessage().startsWith("No"), cause.getMessage());
+    }
+
+    @Test
+    void constructorFailureIsWrapped() {
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> InstanceFactory.of(Failing.class).create("broken"));
+        assertInstanceOf(IllegalStateException.class, thrown.getCause());
+        assertEquals("broken", thrown.getCause().getMessage());
+    }
+
+    @Test
+    void factoryIsSharedPerClass() {
+        assertSame(InstanceFactory.of(Message.class), InstanceFactory.of(Message.class));
+        // the resolved constructor is reused for the same argument types
+        assertEquals("String", chosen("first"));
+        assertEquals("String", chosen("second"));
+    }
+}
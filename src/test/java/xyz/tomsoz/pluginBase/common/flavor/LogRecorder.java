@@ -0,0 +1,43 @@
+package xyz.tomsoz.pluginBase.common.flavor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Records what is logged to an anonymous logger, in place of printing it.
+ */
+final class LogRecorder extends Handler {
+    final Logger logger = Logger.getAnonymousLogger();
+    final List<LogRecord> records = Collections.synchronizedList(new ArrayList<>());
+
+    LogRecorder() {
+        logger.setUseParentHandlers(false);
+        logger.addHandler(this);
+    }
+
+    /**
+     * Returns the messages logged so far.
+     */
+    List<String> messages() {
+        synchronized (records) {
+            return records.stream().map(LogRecord::getMessage).toList();
+        }
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        records.add(record);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,107 @@
+package xyz.tomsoz.pluginBase.common.flavor;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import xyz.tomsoz.pluginBase.common.flavor.fixture.indexer.IndexedParts;
+import xyz.tomsoz.pluginBase.common.flavor.fixture.indexer.IndexedParts.*;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackageIndexerTest {
+    private static final String FIXTURE = "xyz.tomsoz.pluginBase.common.flavor.fixture.indexer";
+
+    private LogRecorder recorder;
+    private PackageIndexer indexer;
+
+    @BeforeEach
+    void setUp() {
+        recorder = new LogRecorder();
+        indexer = new PackageIndexer(PackageIndexerTest.class, new FlavorOptions(recorder.logger, FIXTURE));
+        IndexedParts.RELOADED.clear();
+    }
+
+    private List<String> warnings() {
+        synchronized (recorder.records) {
+            return recorder.records.stream()
+                    .filter(it -> it.getLevel().intValue() >= Level.WARNING.intValue())
+                    .map(LogRecord::getMessage)
+                    .toList();
+        }
+    }
+
+    @Test
+    void invokingReadsTheCurrentSingleton() {
+        Singleton original = Singleton.INSTANCE;
+        Singleton replacement = new Singleton();
+        try {
+            indexer.invokeMethodsAnnotatedWith(Reload.class);
+            Singleton.INSTANCE = replacement;
+            indexer.invokeMethodsAnnotatedWith(Reload.class);
+        } finally {
+            Singleton.INSTANCE = original;
+        }
+
+        assertEquals(4, IndexedParts.RELOADED.size());
+        assertEquals(2, IndexedParts.RELOADED.stream().filter(it -> it == Statics.class).count());
+        assertTrue(IndexedParts.RELOADED.contains(original));
+        assertTrue(IndexedParts.RELOADED.contains(replacement));
+        assertEquals(List.of(), warnings());
+    }
+
+    @Test
+    void unassignedSingletonFailsItsMethod() {
+        indexer.invokeMethodsAnnotatedWith(Unassigned.class);
+
+        LogRecord failure = recorder.records.stream()
+                .filter(it -> it.getMessage().equals("Failed to run container part Missing on Unassigned : run"))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError(recorder.messages()));
+        assertInstanceOf(IllegalStateException.class, failure.getThrown());
+        assertEquals("The singleton of %s is null".formatted(Missing.class.getName()), failure.getThrown().getMessage());
+    }
+
+    @Test
+    void independentMethodsRunConcurrently() {
+        indexer.invokeMethodsAnnotatedWith(Parallel.class);
+        assertEquals(List.of(), warnings());
+    }
+
+    @Test
+    void compactingKeepsTheRetainedMethods() {
+        assertFalse(indexer.isIndexed());
+        assertEquals(2, indexer.getMethodsAnnotatedWith(Reload.class).size());
+
+        indexer.compact(List.of(Reload.class));
+        indexer.compact(List.of(Parallel.class));
+
+        assertTrue(indexer.isCompacted());
+        assertNull(indexer.reflections);
+        List<Method> methods = indexer.getMethodsAnnotatedWith(Reload.class);
+        assertEquals(2, methods.size());
+        assertSame(methods.getFirst(), indexer.getMethodsAnnotatedWith(Reload.class).getFirst());
+
+        indexer.invokeMethodsAnnotatedWith(Reload.class);
+        assertEquals(2, IndexedParts.RELOADED.size());
+        assertEquals(List.of(), warnings());
+        assertTrue(recorder.messages().stream().anyMatch(it -> it.startsWith("[Indexer] Compacted the classpath scan")),
+                recorder.messages().toString());
+    }
+
+    @Test
+    void lookupWhichWasNotRetainedRebuildsOnce() {
+        indexer.compact(List.of(Reload.class));
+
+        assertEquals(List.of(Singleton.class), indexer.getTypesAnnotatedWith(Part.class));
+        assertEquals(2, indexer.getMethodsAnnotatedWith(Parallel.class).size());
+        indexer.invokeMethodsAnnotatedWith(Parallel.class);
+
+        assertEquals(List.of("[Indexer] Looked up a type or annotation which was not retained when compacting, rebuilding the index and keeping it."),
+                warnings());
+        assertTrue(indexer.isCompacted());
+    }
+}
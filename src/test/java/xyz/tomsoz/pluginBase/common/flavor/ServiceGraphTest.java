@@ -0,0 +1,181 @@
+package xyz.tomsoz.pluginBase.common.flavor;
+
+import org.junit.jupiter.api.Test;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.Close;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.Service;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServiceGraphTest {
+    @Service(priority = 10)
+    static class Database {
+    }
+
+    @Service(priority = 5)
+    static class Users {
+    }
+
+    @Service(priority = 5, dependsOn = Profiles.class)
+    static class Friends {
+    }
+
+    @Service(priority = 5)
+    static class Profiles {
+        @Inject
+        Settings settings;
+    }
+
+    @Service(priority = 5)
+    static class Settings {
+    }
+
+    @Service(dependsOn = Second.class)
+    static class First {
+    }
+
+    @Service(dependsOn = First.class)
+    static class Second {
+    }
+
+    @Service(async = true)
+    static class Storage {
+    }
+
+    @Service(async = true, closeTimeout = 50, dependsOn = Storage.class)
+    static class Hanging {
+    }
+
+    @Service(async = true, closeTimeout = 60_000)
+    static class Patient {
+    }
+
+    @Service(closeTimeout = 10)
+    static class Inline {
+        @Close
+        void close() throws InterruptedException {
+            Thread.sleep(50);
+        }
+    }
+
+    private static List<ServiceNode> nodes(Class<?>... types) {
+        List<ServiceNode> nodes = new ArrayList<>();
+        for (Class<?> type : types) nodes.add(new ServiceNode(type, InstanceFactory.of(type).create()));
+        return nodes;
+    }
+
+    private static List<Class<?>> types(List<ServiceNode> nodes) {
+        return nodes.stream().<Class<?>>map(it -> it.type).toList();
+    }
+
+    @Test
+    void servicesComeAfterHigherPrioritiesAndTheirDependencies() {
+        ServiceGraph graph = new ServiceGraph(nodes(Database.class, Users.class, Friends.class, Profiles.class, Settings.class),
+                Logger.getAnonymousLogger());
+
+        // ties keep the priority order, Friends waits for Profiles, which waits for the Settings it injects
+        assertEquals(List.of(Database.class, Users.class, Settings.class, Profiles.class, Friends.class), types(graph.order()));
+    }
+
+    @Test
+    void cycleFallsBackToPriorityOrder() {
+        LogRecorder recorder = new LogRecorder();
+        Logger logger = recorder.logger;
+        List<ServiceNode> nodes = nodes(Database.class, First.class, Second.class);
+        ServiceGraph graph = new ServiceGraph(nodes, logger);
+
+        assertEquals(nodes, graph.order());
+        assertTrue(recorder.messages().stream().anyMatch(it -> it.contains("Dependency cycle between [First, Second]")),
+                recorder.messages().toString());
+
+        List<ServiceNode> started = new ArrayList<>();
+        graph.startup(started::add);
+        assertEquals(nodes, started);
+    }
+
+    @Test
+    void startupRunsAsyncServicesAfterTheirDependencies() {
+        List<ServiceNode> nodes = nodes(Storage.class, Hanging.class);
+        ServiceGraph graph = new ServiceGraph(nodes, Logger.getAnonymousLogger());
+
+        List<ServiceNode> started = Collections.synchronizedList(new ArrayList<>());
+        graph.startup(started::add);
+        assertEquals(nodes, started);
+    }
+
+    @Test
+    void overrunningAsyncServiceIsInterruptedAndItsDependenciesStillClose() throws InterruptedException {
+        LogRecorder recorder = new LogRecorder();
+        Logger logger = recorder.logger;
+        ServiceGraph graph = new ServiceGraph(nodes(Storage.class, Hanging.class), logger);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        List<Class<?>> closed = Collections.synchronizedList(new ArrayList<>());
+
+        long start = System.nanoTime();
+        graph.shutdown(node -> {
+            closed.add(node.type);
+            if (node.type != Hanging.class) return;
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        }, 60_000, 60_000, logger);
+
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 10, "waited past the close timeout");
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS), "the overrunning service was not interrupted");
+        assertEquals(List.of(Hanging.class, Storage.class), closed);
+        assertTrue(recorder.messages().contains("[Services] [Hanging] Overran its shutdown deadline of 50ms, abandoning it."),
+                recorder.messages().toString());
+    }
+
+    @Test
+    void shutdownStopsWaitingAtTheGlobalDeadline() throws InterruptedException {
+        LogRecorder recorder = new LogRecorder();
+        Logger logger = recorder.logger;
+        ServiceGraph graph = new ServiceGraph(nodes(Patient.class), logger);
+        CountDownLatch release = new CountDownLatch(1);
+
+        long start = System.nanoTime();
+        try {
+            graph.shutdown(node -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, 100, 60_000, logger);
+        } finally {
+            release.countDown();
+        }
+
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 10, "waited past the global deadline");
+        assertTrue(recorder.messages().contains("[Services] Shutdown exceeded 100ms, stopped waiting for [Patient]."),
+                recorder.messages().toString());
+    }
+
+    @Test
+    void overrunningInlineServiceIsReported() {
+        LogRecorder recorder = new LogRecorder();
+        Logger logger = recorder.logger;
+        ServiceGraph graph = new ServiceGraph(nodes(Inline.class), logger);
+
+        graph.shutdown(node -> {
+            try {
+                node.close();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, 60_000, 60_000, logger);
+
+        assertTrue(recorder.messages().stream().anyMatch(it -> it.startsWith("[Services] [Inline] Overran its shutdown deadline of 10ms, took")),
+                recorder.messages().toString());
+    }
+}
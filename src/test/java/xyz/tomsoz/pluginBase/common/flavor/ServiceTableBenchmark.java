@@ -0,0 +1,117 @@
+package xyz.tomsoz.pluginBase.common.flavor;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares resolving services through the {@link ServiceTable} with the {@link HashMap} it replaced,
+ * and with a {@link ConcurrentHashMap} as the usual thread-safe alternative. Lookups run on four threads,
+ * as services are resolved from async callbacks and region threads.
+ * <p>
+ * The maps only answer exact classes, resolving by a supertype is compared with the scan it would need.
+ * Run the main method, or {@code org.openjdk.jmh.Main ServiceTableBenchmark} with the test classpath.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ServiceTableBenchmark {
+    private static final Class<?>[] SERVICES = {
+            Accounts.class, Bans.class, Chat.class, Economy.class,
+            Homes.class, Kits.class, Parties.class, Warps.class
+    };
+
+    private final Map<Class<?>, Object> hashMap = new HashMap<>();
+    private final Map<Class<?>, Object> concurrentMap = new ConcurrentHashMap<>();
+    private ServiceTable table;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ServiceTableBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        List<ServiceNode> nodes = new ArrayList<>();
+        for (Class<?> type : SERVICES) {
+            Object instance = type.getDeclaredConstructor().newInstance();
+            nodes.add(new ServiceNode(type, instance));
+            hashMap.put(type, instance);
+            concurrentMap.put(type, instance);
+        }
+        table = ServiceTable.EMPTY.withAll(nodes);
+    }
+
+    @Benchmark
+    public Object hashMapExact() {
+        return hashMap.get(Warps.class);
+    }
+
+    @Benchmark
+    public Object concurrentMapExact() {
+        return concurrentMap.get(Warps.class);
+    }
+
+    @Benchmark
+    public Object tableExact() {
+        return table.resolve(Warps.class).instance;
+    }
+
+    @Benchmark
+    public Object scanSupertype() {
+        for (Map.Entry<Class<?>, Object> entry : hashMap.entrySet()) {
+            if (Teleports.class.isAssignableFrom(entry.getKey())) return entry.getValue();
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Object tableSupertype() {
+        return table.resolve(Teleports.class).instance;
+    }
+
+    public interface Teleports {
+    }
+
+    @Service
+    public static class Accounts {
+    }
+
+    @Service
+    public static class Bans {
+    }
+
+    @Service
+    public static class Chat {
+    }
+
+    @Service
+    public static class Economy {
+    }
+
+    @Service
+    public static class Homes {
+    }
+
+    @Service
+    public static class Kits {
+    }
+
+    @Service
+    public static class Parties {
+    }
+
+    @Service
+    public static class Warps implements Teleports {
+    }
+}
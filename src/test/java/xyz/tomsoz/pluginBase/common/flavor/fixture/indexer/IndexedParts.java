@@ -0,0 +1,90 @@
+package xyz.tomsoz.pluginBase.common.flavor.fixture.indexer;
+
+import xyz.tomsoz.pluginBase.common.extensions.annotations.Independent;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lifecycle methods found by the scan of this package.
+ */
+public final class IndexedParts {
+    /**
+     * The targets of every {@link Reload} method invoked so far.
+     */
+    public static final List<Object> RELOADED = Collections.synchronizedList(new ArrayList<>());
+
+    private IndexedParts() {
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.METHOD)
+    public @interface Reload {
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.METHOD)
+    public @interface Parallel {
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.METHOD)
+    public @interface Unassigned {
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE)
+    public @interface Part {
+    }
+
+    @Part
+    public static class Singleton {
+        public static Singleton INSTANCE = new Singleton();
+
+        @Reload
+        void reload() {
+            RELOADED.add(this);
+        }
+    }
+
+    public static class Statics {
+        @Reload
+        static void reload() {
+            RELOADED.add(Statics.class);
+        }
+    }
+
+    public static class Missing {
+        public static Missing INSTANCE;
+
+        @Unassigned
+        void run() {
+        }
+    }
+
+    /**
+     * Two methods which only finish once both are running, so they fail unless run concurrently.
+     */
+    public static class Concurrent {
+        private static final CyclicBarrier BARRIER = new CyclicBarrier(2);
+
+        @Parallel
+        @Independent
+        static void first() throws Exception {
+            BARRIER.await(5, TimeUnit.SECONDS);
+        }
+
+        @Parallel
+        @Independent
+        static void second() throws Exception {
+            BARRIER.await(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package xyz.tomsoz.pluginBase.common.flavor.fixture.late;
+
+import xyz.tomsoz.pluginBase.common.flavor.annotations.Close;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.Configure;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.Service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Services found by the startup scan of this package.
+ */
+public final class LateServices {
+    private LateServices() {
+    }
+
+    @Service
+    public static class Registered {
+        public static final Registered INSTANCE = new Registered();
+
+        public final AtomicInteger configured = new AtomicInteger();
+        public final AtomicInteger closed = new AtomicInteger();
+
+        @Configure
+        void configure() {
+            configured.incrementAndGet();
+        }
+
+        @Close
+        void close() {
+            closed.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package xyz.tomsoz.pluginBase.common.flavor.fixture.lazy;
+
+import xyz.tomsoz.pluginBase.common.flavor.annotations.Configure;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.Service;
+import xyz.tomsoz.pluginBase.common.flavor.annotations.inject.Inject;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lazy services found by the startup scan of this package.
+ */
+public final class LazyServices {
+    private LazyServices() {
+    }
+
+    public interface Reports {
+        String generate();
+    }
+
+    @Service(lazy = true)
+    public static class ReportService implements Reports {
+        public static final ReportService INSTANCE = new ReportService();
+
+        public final AtomicInteger configured = new AtomicInteger();
+
+        @Configure
+        void configure() {
+            configured.incrementAndGet();
+        }
+
+        @Override
+        public String generate() {
+            return "report";
+        }
+    }
+
+    /**
+     * Lazy, but configured at startup anyway as the {@link Archiver} injects it by its class.
+     */
+    @Service(lazy = true)
+    public static class Archive {
+        public static final Archive INSTANCE = new Archive();
+
+        public final AtomicInteger configured = new AtomicInteger();
+
+        @Configure
+        void configure() {
+            configured.incrementAndGet();
+        }
+    }
+
+    @Service
+    public static class Archiver {
+        public static final Archiver INSTANCE = new Archiver();
+
+        @Inject
+        public Archive archive;
+    }
+}